@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jrobin.core.RrdException;
+import org.jrobin.data.DataProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures <code>DataProcessor.processData()</code> for one week of data, with four DEFs
+ * followed by a chain of CDEFs of the given length.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataProcessorBenchmark {
+	private static final int ROWS = 10000;
+	private static final long WEEK = 7 * 86400L;
+	// each CDEF uses the previous one, the DEFs and a mix of arithmetic and conditional operators
+	private static final String[] CDEF_TEMPLATES = {
+			"%s,8,*",
+			"%s,in,out,+,+",
+			"%s,UN,0,%s,IF",
+			"%s,load,GT,%s,load,IF",
+			"%s,users,/,100,*",
+			"%s,0,1000000000,LIMIT"
+	};
+
+	@Param({ "1", "10", "50" })
+	public int cdefs;
+
+	private String path;
+	private long end;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, RrdException {
+		path = Fixtures.getPath("processor");
+		end = Fixtures.createRrd(path, ROWS);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		new File(path).delete();
+	}
+
+	@Benchmark
+	public double[][] processData() throws IOException, RrdException {
+		final DataProcessor dataProcessor = new DataProcessor(end - WEEK, end);
+		for (final String dsName : Fixtures.DS_NAMES) {
+			dataProcessor.addDatasource(dsName, path, dsName, "AVERAGE");
+		}
+		String previous = "in";
+		for (int i = 0; i < cdefs; i++) {
+			final String name = "c" + i;
+			final String template = CDEF_TEMPLATES[i % CDEF_TEMPLATES.length];
+			dataProcessor.addDatasource(name, template.replace("%s", previous));
+			previous = name;
+		}
+		dataProcessor.processData();
+		return dataProcessor.getValues();
+	}
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jrobin.core.FetchData;
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures <code>FetchRequest.fetchData()</code> over a whole archive of the given number of rows,
+ * and over the last hour only, and <code>FetchRequest.fetchData(double[][])</code> over a whole
+ * archive, reusing the same arrays.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FetchBenchmark {
+	@Param({ "100", "1000", "10000", "100000" })
+	public int rows;
+
+	private RrdDb rrdDb;
+	private String path;
+	private long start, end;
+	private double[][] values;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, RrdException {
+		path = Fixtures.getPath("fetch-" + rows);
+		end = Fixtures.createRrd(path, rows);
+		start = end - (rows - 1) * Fixtures.STEP;
+		rrdDb = new RrdDb(path, true);
+		values = new double[rrdDb.getDsCount()][];
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		rrdDb.close();
+		new File(path).delete();
+	}
+
+	@Benchmark
+	public FetchData fetchAll() throws IOException, RrdException {
+		return rrdDb.createFetchRequest("AVERAGE", start, end).fetchData();
+	}
+
+	@Benchmark
+	public FetchData fetchAllIntoArrays() throws IOException, RrdException {
+		return rrdDb.createFetchRequest("AVERAGE", start, end).fetchData(values);
+	}
+
+	@Benchmark
+	public FetchData fetchLastHour() throws IOException, RrdException {
+		return rrdDb.createFetchRequest("AVERAGE", end - 3600, end).fetchData();
+	}
+}
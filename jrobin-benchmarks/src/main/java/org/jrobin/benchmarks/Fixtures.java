@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdDef;
+import org.jrobin.core.RrdException;
+
+/**
+ * Creates the RRD files used by the read side benchmarks.
+ */
+class Fixtures {
+	static final long START = 1000000000L;
+	static final long STEP = 300;
+	static final String[] DS_NAMES = { "in", "out", "load", "users" };
+
+	private Fixtures() {
+	}
+
+	static String getPath(final String name) {
+		return new File(System.getProperty("java.io.tmpdir"), "jrobin-bench-" + name + ".jrb").getPath();
+	}
+
+	/**
+	 * Creates a RRD with an AVERAGE and a MAX archive of the given number of rows, filled with data.
+	 *
+	 * @return Timestamp of the last update
+	 */
+	static long createRrd(final String path, final int rows) throws IOException, RrdException {
+		final RrdDef rrdDef = new RrdDef(path, START, STEP);
+		rrdDef.addDatasource(DS_NAMES[0], "COUNTER", 2 * STEP, 0, Double.NaN);
+		rrdDef.addDatasource(DS_NAMES[1], "COUNTER", 2 * STEP, 0, Double.NaN);
+		rrdDef.addDatasource(DS_NAMES[2], "GAUGE", 2 * STEP, 0, Double.NaN);
+		rrdDef.addDatasource(DS_NAMES[3], "GAUGE", 2 * STEP, 0, Double.NaN);
+		rrdDef.addArchive("AVERAGE", 0.5, 1, rows);
+		rrdDef.addArchive("MAX", 0.5, 1, rows);
+		final RrdDb rrdDb = new RrdDb(rrdDef);
+		try {
+			final long[] times = new long[rows];
+			final double[][] values = new double[rows][];
+			for (int i = 0; i < rows; i++) {
+				times[i] = START + (i + 1) * STEP;
+				values[i] = new double[] {
+						i * 1000.0 + (i % 17) * 300, i * 700.0 + (i % 13) * 200,
+						Math.abs(Math.sin(i / 50.0)) * 8, 100 + (i % 288)
+				};
+			}
+			rrdDb.storeBatch(times, values);
+			return rrdDb.getLastUpdateTime();
+		}
+		finally {
+			rrdDb.close();
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jrobin.core.RrdBackendFactory;
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdDef;
+import org.jrobin.core.RrdException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a single <code>Sample.update()</code> following an outage of the given number of
+ * steps (up to a week of 60 second steps), on a RRD with 20 datasources and archives of 1 minute,
+ * 5 minutes, 1 hour and 1 day. Beyond the rows to be written, the cost should not depend on the
+ * length of the outage.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GapUpdateBenchmark {
+	static final long START = 1000000000L;
+	static final long STEP = 60;
+	static final int DS_COUNT = 20;
+
+	@Param({ "1", "60", "1440", "10080" })
+	public int gapSteps;
+
+	private RrdDb rrdDb;
+	private long time;
+	private final double[] values = new double[DS_COUNT];
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, RrdException {
+		rrdDb = new RrdDb(createRrdDef("gap-" + gapSteps), RrdBackendFactory.getFactory("MEMORY"));
+		time = START;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		rrdDb.close();
+	}
+
+	@Benchmark
+	public void updateAfterGap() throws IOException, RrdException {
+		time += gapSteps * STEP;
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i + 1;
+		}
+		rrdDb.createSample(time).setValues(values).update();
+	}
+
+	static RrdDef createRrdDef(final String path) throws RrdException {
+		final RrdDef rrdDef = new RrdDef(path, START, STEP);
+		for (int i = 0; i < DS_COUNT; i++) {
+			// heartbeat longer than the longest gap, so that values stay known
+			rrdDef.addDatasource("ds" + i, "GAUGE", 20000 * STEP, 0, Double.NaN);
+		}
+		for (final int steps : new int[] { 1, 5, 60, 1440 }) {
+			rrdDef.addArchive("AVERAGE", 0.5, steps, 800);
+			rrdDef.addArchive("MAX", 0.5, steps, 800);
+		}
+		return rrdDef;
+	}
+}
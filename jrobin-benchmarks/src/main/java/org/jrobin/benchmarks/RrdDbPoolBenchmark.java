@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdDbPool;
+import org.jrobin.core.RrdException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures request/release round trips on the {@link RrdDbPool} from several threads,
+ * each of them walking over the same set of RRD files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class RrdDbPoolBenchmark {
+	private static final int FILE_COUNT = 50;
+
+	@Param({ "10", "100" })
+	public int capacity;
+
+	@Param({ "false", "true" })
+	public boolean idleCaching;
+
+	private RrdDbPool pool;
+	private final String[] paths = new String[FILE_COUNT];
+
+	@State(Scope.Thread)
+	public static class Cursor {
+		int index;
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, RrdException {
+		for (int i = 0; i < FILE_COUNT; i++) {
+			paths[i] = Fixtures.getPath("pool-" + i);
+			Fixtures.createRrd(paths[i], 100);
+		}
+		pool = RrdDbPool.getInstance();
+		pool.setCapacity(capacity);
+		pool.setIdleCaching(idleCaching);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException, RrdException {
+		pool.setIdleCaching(false);
+		pool.setCapacity(RrdDbPool.INITIAL_CAPACITY);
+		for (final String path : paths) {
+			new File(path).delete();
+		}
+	}
+
+	@Benchmark
+	public long requestRelease(final Cursor cursor) throws IOException, RrdException {
+		cursor.index = (cursor.index + 7) % FILE_COUNT;
+		final RrdDb rrdDb = pool.requestRrdDb(paths[cursor.index]);
+		try {
+			return rrdDb.getLastUpdateTime();
+		}
+		finally {
+			pool.release(rrdDb);
+		}
+	}
+}
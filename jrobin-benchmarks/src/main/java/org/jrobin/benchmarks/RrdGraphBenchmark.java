@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.benchmarks;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jrobin.core.RrdException;
+import org.jrobin.graph.RrdGraph;
+import org.jrobin.graph.RrdGraphDef;
+import org.jrobin.graph.RrdGraphInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures in-memory rendering of a typical traffic graph with <code>RrdGraph</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RrdGraphBenchmark {
+	private static final int ROWS = 10000;
+
+	@Param({ "86400", "2592000" })
+	public long span;
+
+	@Param({ "png", "gif" })
+	public String imageFormat;
+
+	private String path;
+	private long end;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, RrdException {
+		path = Fixtures.getPath("graph");
+		end = Fixtures.createRrd(path, ROWS);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		new File(path).delete();
+	}
+
+	@Benchmark
+	public RrdGraphInfo render() throws IOException, RrdException {
+		final RrdGraphDef graphDef = new RrdGraphDef();
+		graphDef.setTimeSpan(end - span, end);
+		graphDef.setWidth(600);
+		graphDef.setHeight(200);
+		graphDef.setImageFormat(imageFormat);
+		graphDef.setTitle("Traffic");
+		graphDef.setVerticalLabel("bits per second");
+		graphDef.datasource("in", path, "in", "AVERAGE");
+		graphDef.datasource("out", path, "out", "AVERAGE");
+		graphDef.datasource("inbits", "in,8,*");
+		graphDef.datasource("outbits", "out,8,*");
+		graphDef.area("inbits", Color.GREEN, "In");
+		graphDef.line("outbits", Color.BLUE, "Out", 2);
+		graphDef.gprint("inbits", "AVERAGE", "avg in %.2f %sbps");
+		graphDef.gprint("outbits", "MAX", "max out %.2f %sbps\\n");
+		graphDef.hrule(1000000, Color.RED, "Limit");
+		return new RrdGraph(graphDef).getRrdGraphInfo();
+	}
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jrobin.core.RrdBackendFactory;
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdDef;
+import org.jrobin.core.RrdException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures <code>Sample.update()</code> for each backend factory on a RRD with 20 datasources
+ * of mixed types and 8 archives with all consolidation functions. Each benchmark thread updates
+ * its own RRD: run with several threads (<code>-t</code>) to measure contention between backends
+ * which should not share locks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleUpdateBenchmark {
+	static final long START = 1000000000L;
+	static final long STEP = 60;
+	static final int DS_COUNT = 20;
+	static final String[] DS_TYPES = { "GAUGE", "COUNTER", "DERIVE", "ABSOLUTE" };
+	static final String[] CONSOL_FUNS = { "AVERAGE", "MIN", "MAX", "LAST" };
+
+	@Param({ "FILE", "SAFE", "NIO", "MEMORY", "MNIO" })
+	public String factory;
+
+	private RrdDb rrdDb;
+	private String path;
+	private long time;
+	private final double[] values = new double[DS_COUNT];
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, RrdException {
+		path = new File(System.getProperty("java.io.tmpdir"), "update-" + factory + "-" +
+				Thread.currentThread().getId() + ".jrb").getPath();
+		rrdDb = new RrdDb(createRrdDef(path), RrdBackendFactory.getFactory(factory));
+		time = START;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		rrdDb.close();
+		new File(path).delete();
+	}
+
+	@Benchmark
+	public void update() throws IOException, RrdException {
+		time += STEP;
+		for (int i = 0; i < DS_COUNT; i++) {
+			values[i] = time * (i + 1);
+		}
+		rrdDb.createSample(time).setValues(values).update();
+	}
+
+	static RrdDef createRrdDef(final String path) throws RrdException {
+		final RrdDef rrdDef = new RrdDef(path, START, STEP);
+		for (int i = 0; i < DS_COUNT; i++) {
+			rrdDef.addDatasource("ds" + i, DS_TYPES[i % DS_TYPES.length], 2 * STEP, 0, Double.NaN);
+		}
+		for (int i = 0; i < 8; i++) {
+			// 4 archives with 1 step, 4 with 12 steps
+			rrdDef.addArchive(CONSOL_FUNS[i % CONSOL_FUNS.length], 0.5, i < 4 ? 1 : 12, 800);
+		}
+		return rrdDef;
+	}
+}
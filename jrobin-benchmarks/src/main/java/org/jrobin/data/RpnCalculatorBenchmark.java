@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.data;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jrobin.core.RrdException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the column-wise evaluation of a CDEF with the slot by slot interpreter, for a single
+ * RPN expression of the given number of operations over two series of 100k points.
+ * The class lives in the <code>org.jrobin.data</code> package to reach the package-private calculator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RpnCalculatorBenchmark {
+	private static final long START = 1000000000L;
+	private static final int ROWS = 100000;
+	// each step applies one or two operators to the value on top of the stack
+	private static final String[] STEP_TEMPLATES = {
+			",8,*",
+			",b,+",
+			",0,1000000000,LIMIT",
+			",b,MAX",
+			",1024,1024,*,/",
+			",b,ADDNAN",
+			",DUP,UN,EXC,a,EXC,IF"
+	};
+
+	@Param({ "10", "50", "200" })
+	public int operations;
+
+	private DataProcessor dataProcessor;
+	private String expression;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, RrdException {
+		dataProcessor = new DataProcessor(START, START + ROWS);
+		dataProcessor.setStep(1);
+		dataProcessor.setPixelCount(ROWS);
+		dataProcessor.addDatasource("a", new Plottable() {
+			public double getValue(final long timestamp) {
+				return timestamp % 97 == 0 ? Double.NaN : Math.sin(timestamp / 100.0) * 1000;
+			}
+		});
+		dataProcessor.addDatasource("b", new Plottable() {
+			public double getValue(final long timestamp) {
+				return timestamp % 89 == 0 ? Double.NaN : timestamp % 1000;
+			}
+		});
+		dataProcessor.processData();
+		final StringBuilder rpn = new StringBuilder("a");
+		for (int i = 0; i < operations; i++) {
+			rpn.append(STEP_TEMPLATES[i % STEP_TEMPLATES.length]);
+		}
+		expression = rpn.toString();
+	}
+
+	@Benchmark
+	public double[] compiled() throws RrdException {
+		return new RpnCalculator(expression, "c", dataProcessor).calculateValues();
+	}
+
+	@Benchmark
+	public double[] interpreted() throws RrdException {
+		return new RpnCalculator(expression, "c", dataProcessor).interpretValues();
+	}
+}
@@ -29,20 +29,12 @@ import org.jrobin.core.RrdException;
 
 /**
  * Class to be used to execute various RRDTool commands (original syntax of RRDTool 1.0.x must be used).
- * Currently supported commands are CREATE, UPDATE, LAST, FETCH, DUMP, RESTORE, XPORT, GRAPH, TUNE, INFO
+ * Currently supported commands are CREATE, UPDATE, LAST, FETCH, DUMP, RESTORE, XPORT, GRAPH, TUNE, INFO<p>
+ * Commands may be executed concurrently from several threads.
  */
 public class RrdCommander {
-	private static final RrdToolCmd[] rrdCommands = {
-			new RrdCreateCmd(),
-			new RrdUpdateCmd(),
-			new RrdLastCmd(),
-			new RrdFetchCmd(),
-			new RrdDumpCmd(),
-			new RrdRestoreCmd(),
-			new RrdXportCmd(),
-			new RrdGraphCmd(),
-			new RrdTuneCmd(),
-			new RrdInfoCmd()
+	private static final String[] rrdCommandTypes = {
+			"create", "update", "last", "fetch", "dump", "restore", "xport", "graph", "tune", "info"
 	};
 
 	/**
@@ -119,19 +111,53 @@ public class RrdCommander {
 	 * @throws RrdException thrown for all other errors (parsing errors,
 	 *                      unknown RRDTool syntax/command/option, internal RRD errors...)
 	 */
-	public static synchronized Object execute(String command) throws IOException, RrdException,RrdException {
+	public static Object execute(String command) throws IOException, RrdException,RrdException {
 		String cmd = command.trim(), rrdtool = "rrdtool ";
 		if (cmd.startsWith(rrdtool)) {
 			cmd = cmd.substring(rrdtool.length());
 		}
-		for (RrdToolCmd rrdCommand : rrdCommands) {
-			if (cmd.startsWith(rrdCommand.getCmdType() + " ")) {
-				return rrdCommand.executeCommand(cmd);
+		for (String rrdCommandType : rrdCommandTypes) {
+			if (cmd.startsWith(rrdCommandType + " ")) {
+				return createCommand(rrdCommandType).executeCommand(cmd);
 			}
 		}
 		throw new RrdException("Unknown RRDTool command: " + command);
 	}
 
+	// commands keep the state of the parsed command, so a new one is created for each call
+	private static RrdToolCmd createCommand(String cmdType) {
+		if (cmdType.equals("create")) {
+			return new RrdCreateCmd();
+		}
+		else if (cmdType.equals("update")) {
+			return new RrdUpdateCmd();
+		}
+		else if (cmdType.equals("last")) {
+			return new RrdLastCmd();
+		}
+		else if (cmdType.equals("fetch")) {
+			return new RrdFetchCmd();
+		}
+		else if (cmdType.equals("dump")) {
+			return new RrdDumpCmd();
+		}
+		else if (cmdType.equals("restore")) {
+			return new RrdRestoreCmd();
+		}
+		else if (cmdType.equals("xport")) {
+			return new RrdXportCmd();
+		}
+		else if (cmdType.equals("graph")) {
+			return new RrdGraphCmd();
+		}
+		else if (cmdType.equals("tune")) {
+			return new RrdTuneCmd();
+		}
+		else {
+			return new RrdInfoCmd();
+		}
+	}
+
 	/**
 	 * A small demo which allows you to pass arbitrary RRDTool commands to JRobin
 	 *
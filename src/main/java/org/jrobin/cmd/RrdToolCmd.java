@@ -59,8 +59,8 @@ abstract class RrdToolCmd {
 		return cmdScanner.getRemainingWords();
 	}
 
-	static boolean rrdDbPoolUsed = true;
-	static boolean standardOutUsed = true;
+	static volatile boolean rrdDbPoolUsed = true;
+	static volatile boolean standardOutUsed = true;
 
 	static boolean isRrdDbPoolUsed() {
 		return rrdDbPoolUsed;
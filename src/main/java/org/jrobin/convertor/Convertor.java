@@ -19,108 +19,341 @@
 
 package org.jrobin.convertor;
 
+import org.jrobin.core.RrdBackendFactory;
 import org.jrobin.core.RrdDb;
 import org.jrobin.core.RrdException;
 
 import java.io.*;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Simple utility class to convert RRD files created with RRDTool 1.0.x to
- * JRobin's native RRD format. Conversion process is quite fast.
+ * Converts RRD files created with RRDTool to JRobin's native RRD format. Each RRDTool file
+ * <code>name.rrd</code> is converted to <code>name.rrd.jrb</code>, original files are not
+ * modified in any way.<p>
+ * <p/>
+ * Files are converted by a pool of worker threads. Archive rows are copied in blocks straight from
+ * the memory mapped RRDTool file, so that a worker never holds a whole archive in memory. A JRobin
+ * file is written under a temporary name and renamed once complete; when resuming, files whose
+ * JRobin file is newer than the RRDTool file are skipped. Progress is reported to an optional
+ * {@link ConvertorListener}:
+ * <pre>
+ * Convertor convertor = new Convertor();
+ * convertor.setThreadCount(8);
+ * convertor.setResume(true);
+ * convertor.setListener(listener);
+ * convertor.convertAll(paths);
+ * </pre>
+ * A convertor may be reused, but must not run several conversions at once.
  */
 public class Convertor {
 	private static final String FACTORY_NAME = "FILE";
 	private static final String SUFFIX = ".jrb";
+	private static final String TEMP_SUFFIX = ".tmp";
 	private static final DecimalFormat secondsFormatter = new DecimalFormat("##0.000");
 	private static final DecimalFormat countFormatter = new DecimalFormat("0000");
 
-	private String[] files;
-	private int totalCount, badCount, goodCount;
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+	private boolean resume = false;
+	private ConvertorListener listener;
 
-	private Convertor(final String[] files) throws RrdException {
-		RrdDb.setDefaultFactory(FACTORY_NAME);
-		this.files = files;
+	private final AtomicInteger goodCount = new AtomicInteger();
+	private final AtomicInteger badCount = new AtomicInteger();
+	private final AtomicInteger skippedCount = new AtomicInteger();
+
+	/**
+	 * Returns the number of worker threads.
+	 *
+	 * @return Number of worker threads (defaults to the number of processors)
+	 */
+	public int getThreadCount() {
+		return threadCount;
 	}
 
-	private void convertAll() {
-		Date t1 = new Date();
-		final String ruler = "=======================================================================";
-		println(ruler);
-		println("Converting RRDTool files to JRobin native format.");
-		println("Original RRDTool files will not be modified in any way");
-		println("JRobin files created during the process will have a " + SUFFIX + " suffix");
-		println(ruler);
-		for (String file : files) {
-			convertFile(file);
+	/**
+	 * Sets the number of worker threads converting files at the same time.
+	 *
+	 * @param threadCount Number of worker threads, at least 1
+	 */
+	public void setThreadCount(int threadCount) {
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("Invalid thread count: " + threadCount);
 		}
-		println(ruler);
-		println("Finished: " + totalCount + " total, " +
-				goodCount + " OK, " + badCount + " failed");
-		Date t2 = new Date();
-		double secs = (t2.getTime() - t1.getTime()) / 1000.0;
-		println("Conversion took " + secondsFormatter.format(secs) + " sec");
-		if (totalCount > 0) {
-			double avgSec = secs / totalCount;
-			println("Average per-file conversion time: " + secondsFormatter.format(avgSec) + " sec");
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Returns true if files with an up to date JRobin file are skipped.
+	 *
+	 * @return true if files with an up to date JRobin file are skipped
+	 */
+	public boolean isResume() {
+		return resume;
+	}
+
+	/**
+	 * Sets whether files whose JRobin file is newer than the RRDTool file should be skipped,
+	 * for example to resume an interrupted conversion.
+	 *
+	 * @param resume true to skip files converted earlier, false to convert all files (default)
+	 */
+	public void setResume(boolean resume) {
+		this.resume = resume;
+	}
+
+	/**
+	 * Sets the listener notified of each converted, skipped or failed file.
+	 *
+	 * @param listener Listener, or null
+	 */
+	public void setListener(ConvertorListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Returns the number of files converted by the last (or current) conversion.
+	 *
+	 * @return Number of converted files
+	 */
+	public int getGoodCount() {
+		return goodCount.get();
+	}
+
+	/**
+	 * Returns the number of files which could not be converted by the last (or current) conversion.
+	 *
+	 * @return Number of failed files
+	 */
+	public int getBadCount() {
+		return badCount.get();
+	}
+
+	/**
+	 * Returns the number of up to date files skipped by the last (or current) conversion.
+	 *
+	 * @return Number of skipped files
+	 */
+	public int getSkippedCount() {
+		return skippedCount.get();
+	}
+
+	/**
+	 * Converts all given RRDTool files, using the configured number of worker threads. A file
+	 * which cannot be converted is reported to the listener and counted, other files are still
+	 * converted.
+	 *
+	 * @param paths Paths of RRDTool files
+	 * @throws InterruptedException Thrown if the calling thread is interrupted; workers stop once
+	 *                              their current file is done
+	 */
+	public void convertAll(final String[] paths) throws InterruptedException {
+		goodCount.set(0);
+		badCount.set(0);
+		skippedCount.set(0);
+		final AtomicInteger nextIndex = new AtomicInteger();
+		final AtomicReference<Error> error = new AtomicReference<Error>();
+		final List<Thread> workers = new ArrayList<Thread>();
+		for (int i = 0; i < Math.min(threadCount, paths.length); i++) {
+			Thread worker = new Thread("jrobin-convertor-" + i) {
+				public void run() {
+					try {
+						for (int index = nextIndex.getAndIncrement(); index < paths.length && !isInterrupted();
+							 index = nextIndex.getAndIncrement()) {
+							convert(paths[index]);
+						}
+					}
+					catch (Error e) {
+						error.compareAndSet(null, e);
+					}
+				}
+			};
+			worker.start();
+			workers.add(worker);
+		}
+		try {
+			for (Thread worker : workers) {
+				worker.join();
+			}
+		}
+		catch (InterruptedException e) {
+			for (Thread worker : workers) {
+				worker.interrupt();
+			}
+			throw e;
+		}
+		if (error.get() != null) {
+			throw error.get();
 		}
 	}
 
-	private void convertFile(String path) {
+	private void convert(String path) {
 		long start = System.currentTimeMillis();
-		totalCount++;
+		String destPath = path + SUFFIX;
 		try {
-			File rrdFile = new File(path);
-			print(countFormatter.format(totalCount) + "/" + countFormatter.format(files.length) +
-					" " + rrdFile.getName() + " ");
-			String sourcePath = rrdFile.getCanonicalPath();
-			String destPath = sourcePath + SUFFIX;
-			RrdDb rrd = new RrdDb(destPath, RrdDb.PREFIX_RRDTool + sourcePath);
-			rrd.close();
-			goodCount++;
-			double seconds = (System.currentTimeMillis() - start) / 1000.0;
-			println("[OK, " + secondsFormatter.format(seconds) + " sec]");
+			destPath = getDestPath(path);
+			if (convertFile(path)) {
+				goodCount.incrementAndGet();
+				if (listener != null) {
+					listener.fileConverted(path, destPath, System.currentTimeMillis() - start);
+				}
+			}
+			else {
+				skippedCount.incrementAndGet();
+				if (listener != null) {
+					listener.fileSkipped(path, destPath);
+				}
+			}
 		}
 		catch (Exception e) {
-			badCount++;
-			println("[" + e + "]");
+			badCount.incrementAndGet();
+			if (listener != null) {
+				listener.fileFailed(path, e);
+			}
 		}
 	}
 
-	private static void println(String msg) {
-		System.out.println(msg);
+	/**
+	 * Returns the path of the JRobin file created for the given RRDTool file.
+	 *
+	 * @param path Path of the RRDTool file
+	 * @return Path of the JRobin file
+	 * @throws IOException Thrown in case of I/O error
+	 */
+	public static String getDestPath(String path) throws IOException {
+		return new File(path).getCanonicalPath() + SUFFIX;
+	}
+
+	/**
+	 * Converts a single RRDTool file in the calling thread.
+	 *
+	 * @param path Path of the RRDTool file
+	 * @return true if the file was converted, false if it was skipped because its JRobin file is
+	 *         up to date (only when resuming)
+	 * @throws IOException  Thrown in case of I/O error
+	 * @throws RrdException Thrown if the RRDTool file cannot be read
+	 */
+	public boolean convertFile(String path) throws IOException, RrdException {
+		File sourceFile = new File(path);
+		String sourcePath = sourceFile.getCanonicalPath();
+		File destFile = new File(sourcePath + SUFFIX);
+		if (!sourceFile.isFile()) {
+			throw new FileNotFoundException("RRDTool file not found: " + sourcePath);
+		}
+		if (resume && destFile.isFile() && destFile.lastModified() >= sourceFile.lastModified()) {
+			return false;
+		}
+		// an interrupted conversion never leaves a complete looking file behind
+		File tempFile = new File(destFile.getPath() + TEMP_SUFFIX);
+		RrdBackendFactory factory = RrdBackendFactory.getFactory(FACTORY_NAME);
+		try {
+			RrdDb rrd = new RrdDb(tempFile.getPath(), RrdDb.PREFIX_RRDTool + sourcePath, factory);
+			rrd.close();
+			if ((destFile.exists() && !destFile.delete()) || !tempFile.renameTo(destFile)) {
+				throw new IOException("Could not rename " + tempFile + " to " + destFile);
+			}
+		}
+		finally {
+			tempFile.delete();
+		}
+		return true;
 	}
 
-	private static void print(String msg) {
-		System.out.print(msg);
+	private static void println(String msg) {
+		System.out.println(msg);
 	}
 
 	/**
 	 * <p>To convert RRD files created with RRDTool use the following syntax:</p>
 	 * <pre>
-	 * java -cp jrobin-{version} org.jrobin.convertor.Convert [path to RRD file(s)]
+	 * java -cp jrobin-{version} org.jrobin.convertor.Convertor [-threads N] [-resume] [path to RRD file(s)]
 	 * <pre>
 	 * <p>For example:</p>
 	 * <pre>
-	 * java -cp jrobin-{version} org.jrobin.convertor.Convert rrdtool/files/*.rrd
+	 * java -cp jrobin-{version} org.jrobin.convertor.Convertor -resume rrdtool/files/*.rrd
 	 * </pre>
 	 * <p>...and enjoy the show.</p>
 	 *
 	 * @param args
 	 */
 	public static void main(String[] args) {
-		if (args.length == 0) {
-			println("Usage  : java -jar convertor.jar <RRD file pattern> ...");
-			println("Example: java -jar convertor.jar files/*.rrd");
+		final Convertor c = new Convertor();
+		int argIndex = 0;
+		try {
+			for (; argIndex < args.length && args[argIndex].startsWith("-"); argIndex++) {
+				if (args[argIndex].equals("-resume")) {
+					c.setResume(true);
+				}
+				else if (args[argIndex].equals("-threads") && argIndex + 1 < args.length) {
+					c.setThreadCount(Integer.parseInt(args[++argIndex]));
+				}
+				else {
+					throw new IllegalArgumentException("Unknown option: " + args[argIndex]);
+				}
+			}
+		}
+		catch (IllegalArgumentException e) {
+			println(e.getMessage());
+			argIndex = args.length;
+		}
+		if (argIndex == args.length) {
+			println("Usage  : java -jar convertor.jar [-threads N] [-resume] <RRD file pattern> ...");
+			println("Example: java -jar convertor.jar -resume files/*.rrd");
 			System.exit(1);
 		}
+		final String[] files = new String[args.length - argIndex];
+		System.arraycopy(args, argIndex, files, 0, files.length);
+
+		final Date t1 = new Date();
+		final String ruler = "=======================================================================";
+		println(ruler);
+		println("Converting RRDTool files to JRobin native format.");
+		println("Original RRDTool files will not be modified in any way");
+		println("JRobin files created during the process will have a " + SUFFIX + " suffix");
+		println(c.getThreadCount() + " worker thread(s)" + (c.isResume() ? ", up to date files are skipped" : ""));
+		println(ruler);
+		c.setListener(new ConvertorListener() {
+			private int doneCount = 0;
+
+			public void fileConverted(String sourcePath, String destPath, long millis) {
+				report(sourcePath, "OK, " + secondsFormatter.format(millis / 1000.0) + " sec");
+			}
+
+			public void fileSkipped(String sourcePath, String destPath) {
+				report(sourcePath, "skipped, up to date");
+			}
+
+			public void fileFailed(String sourcePath, Exception e) {
+				report(sourcePath, e.toString());
+			}
+
+			private synchronized void report(String sourcePath, String status) {
+				doneCount++;
+				double secs = (System.currentTimeMillis() - t1.getTime()) / 1000.0;
+				println(countFormatter.format(doneCount) + "/" + countFormatter.format(files.length) +
+						" " + new File(sourcePath).getName() + " [" + status + "] " +
+						(secs > 0 ? Math.round(doneCount / secs) + " files/sec" : ""));
+			}
+		});
 		try {
-			Convertor c = new Convertor(args);
-			c.convertAll();
-		} catch (final RrdException e) {
-			e.printStackTrace();
+			c.convertAll(files);
+		}
+		catch (InterruptedException e) {
+			println("Conversion interrupted");
 			System.exit(-1);
 		}
+		println(ruler);
+		println("Finished: " + files.length + " total, " + c.getGoodCount() + " OK, " +
+				c.getSkippedCount() + " skipped, " + c.getBadCount() + " failed");
+		Date t2 = new Date();
+		double secs = (t2.getTime() - t1.getTime()) / 1000.0;
+		println("Conversion took " + secondsFormatter.format(secs) + " sec");
+		if (files.length > 0) {
+			double avgSec = secs / files.length;
+			println("Average per-file conversion time: " + secondsFormatter.format(avgSec) + " sec");
+		}
 	}
 }
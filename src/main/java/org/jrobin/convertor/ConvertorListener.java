@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+
+package org.jrobin.convertor;
+
+/**
+ * Receives the outcome of each file handled by a {@link Convertor}. Methods are called from the
+ * worker threads of the convertor, as soon as a file is done.
+ */
+public interface ConvertorListener {
+	/**
+	 * Called when a RRDTool file was converted.
+	 *
+	 * @param sourcePath Path of the RRDTool file
+	 * @param destPath   Path of the JRobin file
+	 * @param millis     Conversion time in milliseconds
+	 */
+	void fileConverted(String sourcePath, String destPath, long millis);
+
+	/**
+	 * Called when a RRDTool file was skipped because its JRobin file is up to date.
+	 *
+	 * @param sourcePath Path of the RRDTool file
+	 * @param destPath   Path of the JRobin file
+	 */
+	void fileSkipped(String sourcePath, String destPath);
+
+	/**
+	 * Called when a RRDTool file could not be converted.
+	 *
+	 * @param sourcePath Path of the RRDTool file
+	 * @param e          Conversion error
+	 */
+	void fileFailed(String sourcePath, Exception e);
+}
@@ -82,6 +82,16 @@ public class ArcState implements RrdUpdater {
 		return accumValue.get();
 	}
 
+	void setWriteBack(boolean writeBack) throws IOException {
+		accumValue.setWriteBack(writeBack);
+		nanSteps.setWriteBack(writeBack);
+	}
+
+	void flush() throws IOException {
+		accumValue.flush();
+		nanSteps.flush();
+	}
+
 	/**
 	 * Returns the Archive object to which this ArcState object belongs.
 	 *
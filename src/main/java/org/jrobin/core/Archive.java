@@ -20,6 +20,7 @@
 package org.jrobin.core;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * Class to represent single RRD archive in a RRD with its internal state.
@@ -33,9 +34,24 @@ import java.io.IOException;
  * @author <a href="mailto:saxon@jrobin.org">Sasa Markovic</a>
  */
 public class Archive implements RrdUpdater, ConsolFuns {
+	// consolidation functions, resolved once so that updates do not compare strings
+	private static enum ConsolFun {
+		AVERAGE, MIN, MAX, LAST, FIRST, TOTAL;
+
+		static ConsolFun resolve(final String consolFun) {
+			for (final ConsolFun cf : values()) {
+				if (cf.name().equals(consolFun)) {
+					return cf;
+				}
+			}
+			return null;
+		}
+	}
+
 	private RrdDb parentDb;
 	// definition
 	private RrdString consolFun;
+	private ConsolFun m_consolFun;
 	private RrdDouble xff;
 	private RrdInt steps, rows;
 	// state
@@ -55,6 +71,7 @@ public class Archive implements RrdUpdater, ConsolFuns {
 			steps.set(arcDef.getSteps());
 			rows.set(arcDef.getRows());
 		}
+		m_consolFun = ConsolFun.resolve(consolFun.get());
 		final int dsCount = parentDb.getHeader().getDsCount();
 		states = new ArcState[dsCount];
 		robins = new Robin[dsCount];
@@ -75,10 +92,9 @@ public class Archive implements RrdUpdater, ConsolFuns {
 			// restore state
 			states[i].setAccumValue(reader.getStateAccumValue(arcIndex, i));
 			states[i].setNanSteps(reader.getStateNanSteps(arcIndex, i));
-			// restore robins
-			double[] values = reader.getValues(arcIndex, i);
-			robins[i].update(values);
 		}
+		// restore robins
+		reader.importValues(arcIndex, robins);
 	}
 
 	/**
@@ -109,74 +125,91 @@ public class Archive implements RrdUpdater, ConsolFuns {
 		return parentDb;
 	}
 
+	void setWriteBack(final boolean writeBack) throws IOException {
+		for (final ArcState state : states) {
+			state.setWriteBack(writeBack);
+		}
+	}
+
+	void flush() throws IOException {
+		for (final ArcState state : states) {
+			state.flush();
+		}
+	}
+
 	public void archive(final int dsIndex, final double value, final long numStepUpdates) throws IOException {
+		archive(dsIndex, value, numStepUpdates, parentDb.getHeader().getLastUpdateTime());
+	}
+
+	// lastUpdateTime is passed by the caller, the header is updated only once all datasources are processed
+	void archive(final int dsIndex, final double value, final long numStepUpdates, final long lastUpdateTime) throws IOException {
 	    final Robin robin = robins[dsIndex];
 		final ArcState state = states[dsIndex];
 		final long step = parentDb.getHeader().getStep();
-		final long lastUpdateTime = parentDb.getHeader().getLastUpdateTime();
-		long updateTime = Util.normalize(lastUpdateTime, step) + step;
+		final long updateTime = Util.normalize(lastUpdateTime, step) + step;
 		final long arcStep = getArcStep();
-        final String consolFunString = consolFun.get();
+        final ConsolFun cf = m_consolFun;
         final int numSteps = steps.get();
         final int numRows = rows.get();
         final double xffValue = xff.get();
 
-        // finish current step
-		long numUpdates = numStepUpdates;
-		while (numUpdates > 0) {
-			accumulate(state, value, consolFunString);
-			numUpdates--;
-			if (updateTime % arcStep == 0) {
-                finalizeStep(state, robin, consolFunString, numSteps, xffValue);
-				break;
-			}
-			else {
-				updateTime += step;
-			}
-		}
+        // finish current step; the same value is accumulated for every missed step,
+        // so the steps up to the next archive step boundary are accumulated at once
+        long numUpdates = numStepUpdates;
+        final long stepsToBoundary = ((arcStep - updateTime % arcStep) % arcStep) / step + 1;
+        if (numUpdates >= stepsToBoundary) {
+            accumulate(state, value, cf, stepsToBoundary);
+            finalizeStep(state, robin, cf, numSteps, xffValue);
+            numUpdates -= stepsToBoundary;
+        }
+        else {
+            accumulate(state, value, cf, numUpdates);
+            numUpdates = 0;
+        }
 		// update robin in bulk
 		final int bulkUpdateCount = (int) Math.min(numUpdates / numSteps, (long) numRows);
 		robin.bulkStore(value, bulkUpdateCount);
 		// update remaining steps
-		final long remainingUpdates = numUpdates % numSteps;
-		for (long i = 0; i < remainingUpdates; i++) {
-			accumulate(state, value, consolFunString);
-		}
+		accumulate(state, value, cf, numUpdates % numSteps);
 	}
 
-	private void accumulate(final ArcState state, final double value, String consolFunString) throws IOException {
+	// accumulates the same value count times
+	private void accumulate(final ArcState state, final double value, final ConsolFun cf, final long count) throws IOException {
+		if (count == 0) {
+			return;
+		}
 		if (Double.isNaN(value)) {
-			state.setNanSteps(state.getNanSteps() + 1);
+			state.setNanSteps(state.getNanSteps() + count);
 		}
 		else {
             final double accumValue = state.getAccumValue();
-            if (consolFunString.equals(CF_MIN)) {
+            if (cf == ConsolFun.MIN) {
 				final double minValue = Util.min(accumValue, value);
 				if (minValue != accumValue) {
 				    state.setAccumValue(minValue);
 				}
 			}
-			else if (consolFunString.equals(CF_MAX)) {
+			else if (cf == ConsolFun.MAX) {
 				final double maxValue = Util.max(accumValue, value);
 				if (maxValue != accumValue) {
 				    state.setAccumValue(maxValue);
 				}
 			}
-			else if (consolFunString.equals(CF_LAST)) {
+			else if (cf == ConsolFun.LAST) {
 				state.setAccumValue(value);
 			}
-			else if (consolFunString.equals(CF_AVERAGE)) {
-				state.setAccumValue(Util.sum(accumValue, value));
+			else if (cf == ConsolFun.AVERAGE) {
+				state.setAccumValue(Util.sum(accumValue, value * count));
 			}
 		}
 	}
 
-	private void finalizeStep(final ArcState state, final Robin robin, final String consolFunString, final long numSteps, final double xffValue) throws IOException {
+	private void finalizeStep(final ArcState state, final Robin robin, final ConsolFun cf, final long numSteps, final double xffValue) throws IOException {
 	    final long nanSteps = state.getNanSteps();
 		//double nanPct = (double) nanSteps / (double) arcSteps;
 		double accumValue = state.getAccumValue();
 		if (nanSteps <= xffValue * numSteps && !Double.isNaN(accumValue)) {
-			if (consolFunString.equals(CF_AVERAGE)) {
+			if (cf == ConsolFun.AVERAGE) {
 				accumValue /= (numSteps - nanSteps);
 			}
 			robin.store(accumValue);
@@ -276,53 +309,123 @@ public class Archive implements RrdUpdater, ConsolFuns {
 	}
 
 	FetchData fetchData(final FetchRequest request) throws IOException, RrdException {
-	    final long arcStep = getArcStep();
-		final long fetchStart = Util.normalize(request.getFetchStart(), arcStep);
+		return fetchData(request, null);
+	}
+
+	// values are read straight into the supplied arrays if they are long enough
+	FetchData fetchData(final FetchRequest request, final double[][] buffers) throws IOException, RrdException {
+		final long fetchStart = getFetchStart(request);
+		final int ptsCount = getFetchRowCount(request, fetchStart);
+		final int[] dsIndices = getFetchDsIndices(request);
+		final int dsCount = dsIndices.length;
+		if (buffers != null && buffers.length != dsCount) {
+			throw new RrdException("Invalid number of value arrays supplied (" + buffers.length +
+					"), exactly " + dsCount + " needed");
+		}
+		final double[][] values = buffers != null ? buffers : new double[dsCount][];
+		for (int i = 0; i < dsCount; i++) {
+			if (values[i] == null || values[i].length < ptsCount) {
+				values[i] = new double[ptsCount];
+			}
+		}
+		fetchValues(fetchStart, ptsCount, dsIndices, values);
+		final FetchData fetchData = new FetchData(this, request);
+		fetchData.setTimestamps(fetchStart, ptsCount);
+		fetchData.setValues(values);
+		return fetchData;
+	}
+
+	FetchCursor fetchCursor(final FetchRequest request, final int blockSize) throws IOException, RrdException {
+		final long fetchStart = getFetchStart(request);
+		return new FetchCursor(this, request, getFetchDsIndices(request), fetchStart,
+				getFetchRowCount(request, fetchStart), blockSize);
+	}
+
+	// the rows aggregated by FetchData.getAggregates(): those ending after the start of the request
+	FetchSummary fetchSummary(final FetchRequest request) throws IOException, RrdException {
+		final long arcStep = getArcStep();
+		final long fetchStart = getFetchStart(request);
+		final long firstTime = fetchStart < request.getFetchStart() ? fetchStart + arcStep : fetchStart;
+		final long lastTime = fetchStart + (getFetchRowCount(request, fetchStart) - 1) * arcStep;
+		// the last value is the one of the last row entirely within the request, if any
+		final long lastFullTime = Util.normalize(request.getFetchEnd(), arcStep);
+		final long lastValueTime = lastFullTime - arcStep >= request.getFetchStart() ? lastFullTime : firstTime;
+		final long startTime = getStartTime();
+		final long matchStartTime = Math.max(firstTime, startTime);
+		final long matchEndTime = Math.min(lastTime, getEndTime());
+		final int[] dsIndices = getFetchDsIndices(request);
+		final int dsCount = dsIndices.length;
+		final RobinSummary.Statistics[] statistics = new RobinSummary.Statistics[dsCount];
+		final double[] firstValues = new double[dsCount];
+		final double[] lastValues = new double[dsCount];
+		for (int i = 0; i < dsCount; i++) {
+			final Robin robin = robins[dsIndices[i]];
+			statistics[i] = new RobinSummary.Statistics();
+			if (matchStartTime <= matchEndTime) {
+				robin.summarize((int) ((matchStartTime - startTime) / arcStep),
+						(int) ((matchEndTime - matchStartTime) / arcStep + 1), statistics[i]);
+			}
+			firstValues[i] = getValue(robin, firstTime);
+			lastValues[i] = getValue(robin, lastValueTime);
+		}
+		final String[] dsNames = request.getFilter() != null ? request.getFilter() : parentDb.getDsNames();
+		return new FetchSummary(this, request, dsNames, firstTime, lastTime, statistics, firstValues, lastValues);
+	}
+
+	// value of the row at the given timestamp, unknown outside of the archive
+	private double getValue(final Robin robin, final long time) throws IOException {
+		final long startTime = getStartTime();
+		if (time < startTime || time > getEndTime()) {
+			return Double.NaN;
+		}
+		return robin.getValue((int) ((time - startTime) / getArcStep()));
+	}
+
+	private long getFetchStart(final FetchRequest request) throws IOException {
+		return Util.normalize(request.getFetchStart(), getArcStep());
+	}
+
+	private int getFetchRowCount(final FetchRequest request, final long fetchStart) throws IOException {
+		final long arcStep = getArcStep();
 		long fetchEnd = Util.normalize(request.getFetchEnd(), arcStep);
 		if (fetchEnd < request.getFetchEnd()) {
 			fetchEnd += arcStep;
 		}
-		final long startTime = getStartTime();
-		final long endTime = getEndTime();
+		return (int) ((fetchEnd - fetchStart) / arcStep + 1);
+	}
+
+	private int[] getFetchDsIndices(final FetchRequest request) throws IOException, RrdException {
 		String[] dsToFetch = request.getFilter();
 		if (dsToFetch == null) {
 			dsToFetch = parentDb.getDsNames();
 		}
-		final int dsCount = dsToFetch.length;
-		final int ptsCount = (int) ((fetchEnd - fetchStart) / arcStep + 1);
-		final long[] timestamps = new long[ptsCount];
-		final double[][] values = new double[dsCount][ptsCount];
-		final long matchStartTime = Math.max(fetchStart, startTime);
-		final long matchEndTime = Math.min(fetchEnd, endTime);
-		double[][] robinValues = null;
+		final int[] dsIndices = new int[dsToFetch.length];
+		for (int i = 0; i < dsToFetch.length; i++) {
+			dsIndices[i] = parentDb.getDsIndex(dsToFetch[i]);
+		}
+		return dsIndices;
+	}
+
+	// values of count rows from the given (normalized) timestamp on, unknown outside of the archive
+	void fetchValues(final long start, final int count, final int[] dsIndices, final double[][] values) throws IOException {
+		final long arcStep = getArcStep();
+		final long startTime = getStartTime();
+		final long matchStartTime = Math.max(start, startTime);
+		final long matchEndTime = Math.min(start + (count - 1) * arcStep, getEndTime());
+		int matchCount = 0, matchStartIndex = 0, matchOffset = 0;
 		if (matchStartTime <= matchEndTime) {
-			// preload robin values
-		    final int matchCount = (int) ((matchEndTime - matchStartTime) / arcStep + 1);
-			final int matchStartIndex = (int) ((matchStartTime - startTime) / arcStep);
-			robinValues = new double[dsCount][];
-			for (int i = 0; i < dsCount; i++) {
-			    final int dsIndex = parentDb.getDsIndex(dsToFetch[i]);
-				robinValues[i] = robins[dsIndex].getValues(matchStartIndex, matchCount);
-			}
+		    matchCount = (int) ((matchEndTime - matchStartTime) / arcStep + 1);
+			matchStartIndex = (int) ((matchStartTime - startTime) / arcStep);
+			matchOffset = (int) ((matchStartTime - start) / arcStep);
 		}
-		for (int ptIndex = 0; ptIndex < ptsCount; ptIndex++) {
-		    final long time = fetchStart + ptIndex * arcStep;
-		    timestamps[ptIndex] = time;
-			for (int i = 0; i < dsCount; i++) {
-				double value = Double.NaN;
-				if (time >= matchStartTime && time <= matchEndTime) {
-					// inbound time
-					final int robinValueIndex = (int) ((time - matchStartTime) / arcStep);
-					assert robinValues != null;
-					value = robinValues[i][robinValueIndex];
-				}
-				values[i][ptIndex] = value;
+		for (int i = 0; i < dsIndices.length; i++) {
+			// out of archive bounds values are unknown
+			Arrays.fill(values[i], 0, matchOffset, Double.NaN);
+			if (matchCount > 0) {
+				robins[dsIndices[i]].getValues(matchStartIndex, values[i], matchOffset, matchCount);
 			}
+			Arrays.fill(values[i], matchOffset + matchCount, count, Double.NaN);
 		}
-		final FetchData fetchData = new FetchData(this, request);
-		fetchData.setTimestamps(timestamps);
-		fetchData.setValues(values);
-		return fetchData;
 	}
 
 	void appendXml(final XmlWriter writer) throws IOException {
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.core;
+
+import java.util.Calendar;
+
+/**
+ * Compiled form of a {@link RrdDefTemplate}, created with {@link RrdDefTemplate#compile()}.
+ * Objects of this class are immutable and may be used by several threads at once:
+ * <pre>
+ * CompiledRrdDefTemplate template = new RrdDefTemplate(new File("template.xml")).compile();
+ * ...
+ * TemplateVariables variables = template.createVariables();
+ * variables.setVariable("path", "demo/test.rrd");
+ * RrdDef rrdDef = template.getRrdDef(variables);
+ * </pre>
+ */
+public final class CompiledRrdDefTemplate extends CompiledXmlTemplate {
+	private static final String[] ROOT_TAGS = {"path", "start", "step", "datasource*", "archive*"};
+	private static final String[] DATASOURCE_TAGS = {"name", "type", "heartbeat", "min", "max"};
+	private static final String[] ARCHIVE_TAGS = {"cf", "xff", "steps", "rows"};
+
+	CompiledRrdDefTemplate(final RrdDefTemplate template) {
+		super(template);
+	}
+
+	/**
+	 * Returns RrdDef object constructed from this template, with all placeholders replaced
+	 * with the given values.
+	 *
+	 * @param variables Variable values, created by {@link #createVariables()}
+	 * @return RrdDef object which can be passed to the constructor of the new RrdDb object.
+	 * @throws RrdException Thrown in case of invalid template
+	 * @throws IllegalArgumentException Thrown if the value for some placeholder was not supplied
+	 */
+	public RrdDef getRrdDef(final TemplateVariables variables) throws RrdException {
+		checkVariables(variables);
+		if (!root.getName().equals("rrd_def")) {
+			throw new RrdException("XML definition must start with <rrd_def>");
+		}
+		root.validateTagsOnlyOnce(ROOT_TAGS);
+		// PATH must be supplied or exception is thrown
+		final String path = root.getChildValue("path", variables);
+		final RrdDef rrdDef = new RrdDef(path);
+		try {
+			final String startStr = root.getChildValue("start", variables);
+			final Calendar startGc = Util.getCalendar(startStr);
+			rrdDef.setStartTime(startGc);
+		}
+		catch (final RrdException e) {
+			// START is not mandatory
+		}
+		try {
+			final long step = Long.parseLong(root.getChildValue("step", variables));
+			rrdDef.setStep(step);
+		}
+		catch (final RrdException e) {
+			// STEP is not mandatory
+		}
+		for (final TemplateNode node : root.getChildNodes()) {
+			if (node.getName().equals("datasource")) {
+				node.validateTagsOnlyOnce(DATASOURCE_TAGS);
+				final String name = node.getChildValue("name", variables);
+				final String type = node.getChildValue("type", variables);
+				final long heartbeat = Long.parseLong(node.getChildValue("heartbeat", variables));
+				final double min = Util.parseDouble(node.getChildValue("min", variables));
+				final double max = Util.parseDouble(node.getChildValue("max", variables));
+				rrdDef.addDatasource(name, type, heartbeat, min, max);
+			}
+		}
+		for (final TemplateNode node : root.getChildNodes()) {
+			if (node.getName().equals("archive")) {
+				node.validateTagsOnlyOnce(ARCHIVE_TAGS);
+				final String consolFun = node.getChildValue("cf", variables);
+				final double xff = Util.parseDouble(node.getChildValue("xff", variables));
+				final int steps = Integer.parseInt(node.getChildValue("steps", variables));
+				final int rows = Integer.parseInt(node.getChildValue("rows", variables));
+				rrdDef.addArchive(consolFun, xff, steps, rows);
+			}
+		}
+		return rrdDef;
+	}
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.core;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable form of an {@link XmlTemplate}, created once and shared between threads. The XML
+ * tree is copied into {@link TemplateNode} objects whose values are split into literal text and
+ * variable slots. Variable values are supplied separately for each definition through a
+ * {@link TemplateVariables} object.
+ */
+public abstract class CompiledXmlTemplate {
+	protected final TemplateNode root;
+	private final Map<String, Integer> m_slots;
+	private final String[] m_names;
+
+	protected CompiledXmlTemplate(final XmlTemplate template) {
+		final Map<String, Integer> slots = new LinkedHashMap<String, Integer>();
+		root = new TemplateNode(template.root, slots);
+		m_slots = Collections.unmodifiableMap(slots);
+		m_names = slots.keySet().toArray(new String[slots.size()]);
+	}
+
+	/**
+	 * Returns the list of variables that should be set in this template.
+	 *
+	 * @return List of variable names as an array of strings.
+	 */
+	public String[] getVariables() {
+		return m_names.clone();
+	}
+
+	/**
+	 * Creates an empty set of variable values for this template.
+	 *
+	 * @return Variable values, to be filled with {@link TemplateVariables#setVariable(String, String) setVariable()}
+	 */
+	public TemplateVariables createVariables() {
+		return new TemplateVariables(m_slots, m_names);
+	}
+
+	protected void checkVariables(final TemplateVariables variables) {
+		if (!variables.isCreatedBy(m_slots)) {
+			throw new IllegalArgumentException("Variables were not created by this template");
+		}
+	}
+}
@@ -70,6 +70,13 @@ abstract class DataImporter {
 
 	abstract double[] getValues(int arcIndex, int dsIndex) throws RrdException, IOException,RrdException;
 
+	// restores robin values of the archive, one datasource at a time unless overridden
+	void importValues(int arcIndex, Robin[] robins) throws RrdException, IOException {
+		for (int i = 0; i < robins.length; i++) {
+			robins[i].update(getValues(arcIndex, i));
+		}
+	}
+
 	long getEstimatedSize() throws RrdException, IOException {
 		int dsCount = getDsCount();
 		int arcCount = getArcCount();
@@ -36,6 +36,20 @@ public class Datasource implements RrdUpdater, DsTypes {
 	private static final double MAX_32_BIT = Math.pow(2, 32);
 	private static final double MAX_64_BIT = Math.pow(2, 64);
 
+	// datasource types, resolved once so that updates do not compare strings
+	private static enum DsType {
+		GAUGE, COUNTER, DERIVE, ABSOLUTE;
+
+		static DsType resolve(final String dsType) {
+			for (final DsType type : values()) {
+				if (type.name().equals(dsType)) {
+					return type;
+				}
+			}
+			return null;
+		}
+	}
+
 	private RrdDb parentDb;
 	// definition
 	private RrdString dsName, dsType;
@@ -45,6 +59,8 @@ public class Datasource implements RrdUpdater, DsTypes {
 	// cache
 	private String m_primitiveDsName = null;
 	private String m_primitiveDsType = null;
+	private DsType m_dsType = null;
+	private int m_dsIndex = -1;
 
 	// state variables
 	private RrdDouble lastValue;
@@ -67,6 +83,7 @@ public class Datasource implements RrdUpdater, DsTypes {
             m_primitiveDsName = null;
 			dsType.set(dsDef.getDsType());
 			m_primitiveDsType = null;
+			m_dsType = null;
 			heartbeat.set(dsDef.getHeartbeat());
 			minValue.set(dsDef.getMinValue());
 			maxValue.set(dsDef.getMaxValue());
@@ -83,6 +100,7 @@ public class Datasource implements RrdUpdater, DsTypes {
 		m_primitiveDsName = null;
 		dsType.set(reader.getDsType(dsIndex));
 		m_primitiveDsType = null;
+		m_dsType = null;
 		heartbeat.set(reader.getHeartbeat(dsIndex));
 		minValue.set(reader.getMinValue(dsIndex));
 		maxValue.set(reader.getMaxValue(dsIndex));
@@ -187,10 +205,8 @@ public class Datasource implements RrdUpdater, DsTypes {
 		return nanSeconds.get();
 	}
 
-	void process(final long newTime, final double newValue) throws IOException, RrdException {
-	    final Header header = parentDb.getHeader();
-	    final long step = header.getStep();
-		final long oldTime = header.getLastUpdateTime();
+	void process(final long oldTime, final long newTime, final double newValue) throws IOException, RrdException {
+	    final long step = parentDb.getHeader().getStep();
 		final long startTime = Util.normalize(oldTime, step);
 		final long endTime = startTime + step;
 		final double oldValue = lastValue.get();
@@ -206,7 +222,7 @@ public class Datasource implements RrdUpdater, DsTypes {
 			// how many updates?
 			final long numSteps = (boundaryTime - endTime) / step + 1L;
 			// ACTION!
-			parentDb.archive(this, value, numSteps);
+			parentDb.archive(getDsIndexOrFail(), value, numSteps, oldTime);
 			// cleanup
 			nanSeconds.set(0);
 			accumValue.set(0.0);
@@ -217,21 +233,24 @@ public class Datasource implements RrdUpdater, DsTypes {
 	private double calculateUpdateValue(final long oldTime, final double oldValue, final long newTime, final double newValue) throws IOException {
 		double updateValue = Double.NaN;
 		if (newTime - oldTime <= heartbeat.get()) {
-		    final String type = dsType.get();
-			if (type.equals(DT_GAUGE)) {
+		    if (m_dsType == null) {
+		        m_dsType = DsType.resolve(getDsType());
+		    }
+		    final DsType type = m_dsType;
+			if (type == DsType.GAUGE) {
 				updateValue = newValue;
 			}
-			else if (type.equals(DT_ABSOLUTE)) {
+			else if (type == DsType.ABSOLUTE) {
 				if (!Double.isNaN(newValue)) {
 					updateValue = newValue / (newTime - oldTime);
 				}
 			}
-			else if (type.equals(DT_DERIVE)) {
+			else if (type == DsType.DERIVE) {
 				if (!Double.isNaN(newValue) && !Double.isNaN(oldValue)) {
 					updateValue = (newValue - oldValue) / (newTime - oldTime);
 				}
 			}
-			else if (type.equals(DT_COUNTER)) {
+			else if (type == DsType.COUNTER) {
 				if (!Double.isNaN(newValue) && !Double.isNaN(oldValue)) {
 				    double diff = newValue - oldValue;
 					if (diff < 0) {
@@ -298,6 +317,18 @@ public class Datasource implements RrdUpdater, DsTypes {
 		writer.closeTag();  // ds
 	}
 
+	void setWriteBack(final boolean writeBack) throws IOException {
+		lastValue.setWriteBack(writeBack);
+		nanSeconds.setWriteBack(writeBack);
+		accumValue.setWriteBack(writeBack);
+	}
+
+	void flush() throws IOException {
+		lastValue.flush();
+		nanSeconds.flush();
+		accumValue.flush();
+	}
+
 	/**
 	 * Copies object's internal state to another Datasource object.
 	 *
@@ -329,13 +360,21 @@ public class Datasource implements RrdUpdater, DsTypes {
 	 */
 	public int getDsIndex() throws IOException {
 		try {
-			return parentDb.getDsIndex(dsName.get());
+			return getDsIndexOrFail();
 		}
 		catch (final RrdException e) {
 			return -1;
 		}
 	}
 
+	// the position of a datasource never changes, even if it gets renamed
+	private int getDsIndexOrFail() throws IOException, RrdException {
+		if (m_dsIndex < 0) {
+			m_dsIndex = parentDb.getDsIndex(getDsName());
+		}
+		return m_dsIndex;
+	}
+
 	/**
 	 * Sets datasource heartbeat to a new value.
 	 *
@@ -376,6 +415,7 @@ public class Datasource implements RrdUpdater, DsTypes {
 		// set datasource type
 		this.dsType.set(newDsType);
 		m_primitiveDsType = null;
+		m_dsType = null;
 		// reset datasource status
 		lastValue.set(Double.NaN);
 		accumValue.set(0.0);
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+
+package org.jrobin.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Reads the rows of a fetch request in time order, a block of rows at a time, so that large
+ * time spans can be exported without holding all values in memory. Object of this class is created
+ * when the method {@link FetchRequest#fetchCursor(int) fetchCursor()} is called on a
+ * {@link FetchRequest FetchRequest} object:
+ * <pre>
+ * FetchCursor cursor = rrdDb.createFetchRequest("AVERAGE", start, end).fetchCursor(1024);
+ * while (cursor.next()) {
+ *     double[] values = cursor.getValues(0);
+ *     for (int i = 0; i &lt; cursor.getRowCount(); i++) {
+ *         System.out.println(cursor.getTimestamp(i) + " " + values[i]);
+ *     }
+ * }
+ * </pre>
+ * Rows, timestamps and datasources are the same as in the {@link FetchData FetchData} object
+ * returned by {@link FetchRequest#fetchData() fetchData()} for the same request. Each block is read
+ * from the archive when {@link #next() next()} is called, into arrays which are reused for all
+ * blocks. The RRD is locked only while a block is read, values of a row updated between two blocks
+ * are read as they are when their block is read.<p>
+ * <p/>
+ * A cursor must not be shared by several threads, and can be used only while its RRD is open.
+ */
+public class FetchCursor {
+	/**
+	 * Number of rows read at a time by {@link FetchRequest#fetchCursor()}.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+	private final Archive m_archive;
+	private final FetchRequest m_request;
+	private final String[] m_dsNames;
+	private final int[] m_dsIndices;
+	private final long m_firstTimestamp;
+	private final long m_arcStep;
+	private final int m_totalRowCount;
+	private final double[][] m_values;
+	private int m_nextRow = 0;
+	private long m_blockTimestamp;
+	private int m_rowCount = 0;
+
+	FetchCursor(final Archive archive, final FetchRequest request, final int[] dsIndices, final long firstTimestamp,
+				final int totalRowCount, final int blockSize) throws IOException, RrdException {
+		if (blockSize <= 0) {
+			throw new RrdException("Invalid fetch block size: " + blockSize);
+		}
+		m_archive = archive;
+		m_request = request;
+		m_dsIndices = dsIndices;
+		m_dsNames = request.getFilter() != null ? request.getFilter() : archive.getParentDb().getDsNames();
+		m_firstTimestamp = firstTimestamp;
+		m_arcStep = archive.getArcStep();
+		m_totalRowCount = totalRowCount;
+		m_values = new double[dsIndices.length][Math.min(blockSize, totalRowCount)];
+	}
+
+	/**
+	 * Reads the next block of rows.
+	 *
+	 * @return true if a block was read, false if all rows have been read.
+	 * @throws IOException  Thrown in case of I/O error.
+	 * @throws RrdException Thrown if the RRD was closed.
+	 */
+	public boolean next() throws IOException, RrdException {
+		if (m_nextRow >= m_totalRowCount) {
+			m_rowCount = 0;
+			return false;
+		}
+		final int count = Math.min(m_totalRowCount - m_nextRow, getBlockSize());
+		final long timestamp = m_firstTimestamp + m_nextRow * m_arcStep;
+		final RrdDb parentDb = m_archive.getParentDb();
+		synchronized (parentDb) {
+			if (parentDb.isClosed()) {
+				throw new RrdException("RRD already closed, cannot fetch data");
+			}
+			m_archive.fetchValues(timestamp, count, m_dsIndices, m_values);
+		}
+		m_blockTimestamp = timestamp;
+		m_rowCount = count;
+		m_nextRow += count;
+		return true;
+	}
+
+	/**
+	 * Returns the number of rows of the current block.
+	 *
+	 * @return Number of rows read by the last call to {@link #next() next()}, 0 if none.
+	 */
+	public int getRowCount() {
+		return m_rowCount;
+	}
+
+	/**
+	 * Returns the timestamp of a row of the current block.
+	 *
+	 * @param row Row index in the current block.
+	 * @return Timestamp in seconds.
+	 */
+	public long getTimestamp(final int row) {
+		return m_blockTimestamp + row * m_arcStep;
+	}
+
+	/**
+	 * Returns the values of a datasource for the rows of the current block. The returned array is
+	 * reused for the next blocks and may be longer than the number of rows of the current block.
+	 *
+	 * @param dsIndex Datasource index, in the order of {@link #getDsNames() getDsNames()}.
+	 * @return Datasource values, valid until the next call to {@link #next() next()}.
+	 */
+	public double[] getValues(final int dsIndex) {
+		return m_values[dsIndex];
+	}
+
+	/**
+	 * Returns the value of a datasource for a row of the current block.
+	 *
+	 * @param dsIndex Datasource index, in the order of {@link #getDsNames() getDsNames()}.
+	 * @param row     Row index in the current block.
+	 * @return Datasource value.
+	 */
+	public double getValue(final int dsIndex, final int row) {
+		return m_values[dsIndex][row];
+	}
+
+	/**
+	 * Returns the names of the fetched datasources.
+	 *
+	 * @return Datasource names.
+	 */
+	public String[] getDsNames() {
+		return m_dsNames;
+	}
+
+	/**
+	 * Returns the number of fetched datasources.
+	 *
+	 * @return Number of columns (datasources).
+	 */
+	public int getColumnCount() {
+		return m_dsNames.length;
+	}
+
+	/**
+	 * Returns the maximum number of rows read at a time.
+	 *
+	 * @return Block size.
+	 */
+	public int getBlockSize() {
+		return m_values.length > 0 ? m_values[0].length : m_totalRowCount;
+	}
+
+	/**
+	 * Returns the number of rows of all blocks.
+	 *
+	 * @return Number of rows covering the whole time span of the request.
+	 */
+	public int getTotalRowCount() {
+		return m_totalRowCount;
+	}
+
+	/**
+	 * Returns the timestamp of the first row of the first block.
+	 *
+	 * @return Timestamp in seconds.
+	 */
+	public long getFirstTimestamp() {
+		return m_firstTimestamp;
+	}
+
+	/**
+	 * Returns the step between rows.
+	 *
+	 * @return Step in seconds.
+	 */
+	public long getStep() {
+		return m_arcStep;
+	}
+
+	/**
+	 * Returns the request this cursor reads.
+	 *
+	 * @return Fetch request.
+	 */
+	public FetchRequest getRequest() {
+		return m_request;
+	}
+
+	/**
+	 * Returns the archive the rows are read from.
+	 *
+	 * @return Matching archive.
+	 */
+	public Archive getMatchingArchive() {
+		return m_archive;
+	}
+
+	/**
+	 * Dumps the remaining rows to output stream in XML format, the same as
+	 * {@link FetchData#exportXml(OutputStream) FetchData.exportXml()}. Only one block of rows
+	 * is held in memory.
+	 *
+	 * @param outputStream Output stream to dump rows to
+	 * @throws IOException  Thrown in case of I/O error
+	 * @throws RrdException Thrown if the RRD was closed
+	 */
+	public void exportXml(final OutputStream outputStream) throws IOException, RrdException {
+		final XmlWriter writer = new XmlWriter(outputStream);
+		FetchData.startXml(writer, m_request, m_dsNames);
+		while (next()) {
+			for (int i = 0; i < m_rowCount; i++) {
+				FetchData.writeXmlRow(writer, getTimestamp(i), m_values, i);
+			}
+		}
+		FetchData.endXml(writer);
+	}
+}
@@ -48,6 +48,12 @@ import java.io.OutputStream;
  * the number of datasources and {@link #getValues(int) getValues(i)} method to obtain
  * all values for the i-th datasource. Returned datasource values correspond to
  * the values returned with {@link #getTimestamps() getTimestamps()} method.<p>
+ * <p/>
+ * Timestamps are not stored, they are given by {@link #getFirstTimestamp() getFirstTimestamp()}
+ * and {@link #getStep() getStep()}; the array returned by {@link #getTimestamps() getTimestamps()}
+ * is created on first use. When values are fetched into arrays supplied with
+ * {@link FetchRequest#fetchData(double[][]) fetchData(double[][])}, this object wraps these arrays,
+ * which may be longer than the number of rows.<p>
  */
 public class FetchData implements ConsolFuns {
 	// anything fuuny will do
@@ -55,6 +61,9 @@ public class FetchData implements ConsolFuns {
 
 	private FetchRequest request;
 	private String[] dsNames;
+	private long firstTimestamp;
+	private int rowCount;
+	// created on first use
 	private long[] timestamps;
 	private double[][] values;
 
@@ -73,8 +82,10 @@ public class FetchData implements ConsolFuns {
 		this.request = request;
 	}
 
-	void setTimestamps(long[] timestamps) {
-		this.timestamps = timestamps;
+	void setTimestamps(long firstTimestamp, int rowCount) {
+		this.firstTimestamp = firstTimestamp;
+		this.rowCount = rowCount;
+		this.timestamps = null;
 	}
 
 	void setValues(double[][] values) {
@@ -88,7 +99,7 @@ public class FetchData implements ConsolFuns {
 	 * @return Number of rows.
 	 */
 	public int getRowCount() {
-		return timestamps.length;
+		return rowCount;
 	}
 
 	/**
@@ -109,6 +120,13 @@ public class FetchData implements ConsolFuns {
 	 * @return Array of equidistant timestamps.
 	 */
 	public long[] getTimestamps() {
+		if (timestamps == null) {
+			long[] t = new long[rowCount];
+			for (int i = 0; i < rowCount; i++) {
+				t[i] = firstTimestamp + i * arcStep;
+			}
+			timestamps = t;
+		}
 		return timestamps;
 	}
 
@@ -118,13 +136,15 @@ public class FetchData implements ConsolFuns {
 	 * @return Step as long.
 	 */
 	public long getStep() {
-		return timestamps[1] - timestamps[0];
+		return arcStep;
 	}
 
 	/**
 	 * Returns all archived values for a single datasource.
 	 * Returned values correspond to timestamps
 	 * returned with {@link #getTimestamps() getTimestamps()} method.
+	 * If values were fetched into supplied arrays, the supplied array is returned, and only
+	 * its first {@link #getRowCount() getRowCount()} values are fetched values.
 	 *
 	 * @param dsIndex Datasource index.
 	 * @return Array of single datasource values.
@@ -192,7 +212,7 @@ public class FetchData implements ConsolFuns {
 	 * @return The smallest timestamp.
 	 */
 	public long getFirstTimestamp() {
-		return timestamps[0];
+		return firstTimestamp;
 	}
 
 	/**
@@ -201,7 +221,7 @@ public class FetchData implements ConsolFuns {
 	 * @return The biggest timestamp.
 	 */
 	public long getLastTimestamp() {
-		return timestamps[timestamps.length - 1];
+		return firstTimestamp + (rowCount - 1) * arcStep;
 	}
 
 	/**
@@ -248,7 +268,7 @@ public class FetchData implements ConsolFuns {
 	public String dump() {
 		StringBuffer buffer = new StringBuffer("");
 		for (int row = 0; row < getRowCount(); row++) {
-			buffer.append(timestamps[row]);
+			buffer.append(firstTimestamp + row * arcStep);
 			buffer.append(":  ");
 			for (int dsIndex = 0; dsIndex < getColumnCount(); dsIndex++) {
 				buffer.append(Util.formatDouble(values[dsIndex][row], true));
@@ -273,8 +293,8 @@ public class FetchData implements ConsolFuns {
 			buff.append(padWithBlanks(dsName, 18));
 		}
 		buff.append("\n \n");
-		for (int i = 0; i < timestamps.length; i++) {
-			buff.append(padWithBlanks("" + timestamps[i], 10));
+		for (int i = 0; i < rowCount; i++) {
+			buff.append(padWithBlanks("" + (firstTimestamp + i * arcStep), 10));
 			buff.append(":");
 			for (int j = 0; j < dsNames.length; j++) {
 				double value = values[j][i];
@@ -400,6 +420,20 @@ public class FetchData implements ConsolFuns {
 		return dataProcessor.get95Percentile(dsName);
 	}
 
+	/**
+	 * Returns several percentiles of the fetched values of a datasource at once, which is faster
+	 * than computing each percentile separately. See {@link #get95Percentile(String)}.
+	 *
+	 * @param dsName      Datasource name
+	 * @param percentiles Boundary percentiles, between zero and 100
+	 * @return Percentiles of fetched source values, in the order of the boundaries
+	 * @throws RrdException Thrown if invalid source name or percentile is supplied
+	 */
+	public double[] getPercentiles(String dsName, double[] percentiles) throws RrdException {
+		DataProcessor dataProcessor = createDataProcessor(null);
+		return dataProcessor.getPercentiles(dsName, percentiles);
+	}
+
 	/**
 	 * Same as {@link #get95Percentile(String)}, but for a set of values calculated with the given
 	 * RPN expression.
@@ -421,6 +455,15 @@ public class FetchData implements ConsolFuns {
 	 */
 	public void exportXml(OutputStream outputStream) throws IOException {
 		XmlWriter writer = new XmlWriter(outputStream);
+		startXml(writer, request, dsNames);
+		for (int i = 0; i < rowCount; i++) {
+			writeXmlRow(writer, firstTimestamp + i * arcStep, values, i);
+		}
+		endXml(writer);
+	}
+
+	// also used by FetchCursor, which writes the same document block by block
+	static void startXml(XmlWriter writer, FetchRequest request, String[] dsNames) throws IOException {
 		writer.startTag("fetch_data");
 		writer.startTag("request");
 		writer.writeTag("file", request.getParentDb().getPath());
@@ -437,17 +480,21 @@ public class FetchData implements ConsolFuns {
 		}
 		writer.closeTag(); // datasources
 		writer.startTag("data");
-		for (int i = 0; i < timestamps.length; i++) {
-			writer.startTag("row");
-			writer.writeComment(Util.getDate(timestamps[i]));
-			writer.writeTag("timestamp", timestamps[i]);
-			writer.startTag("values");
-			for (int j = 0; j < dsNames.length; j++) {
-				writer.writeTag("v", values[j][i]);
-			}
-			writer.closeTag(); // values
-			writer.closeTag(); // row
+	}
+
+	static void writeXmlRow(XmlWriter writer, long timestamp, double[][] values, int row) {
+		writer.startTag("row");
+		writer.writeComment(Util.getDate(timestamp));
+		writer.writeTag("timestamp", timestamp);
+		writer.startTag("values");
+		for (double[] dsValues : values) {
+			writer.writeTag("v", dsValues[row]);
 		}
+		writer.closeTag(); // values
+		writer.closeTag(); // row
+	}
+
+	static void endXml(XmlWriter writer) {
 		writer.closeTag(); // data
 		writer.closeTag(); // fetch_data
 		writer.flush();
@@ -184,6 +184,63 @@ public class FetchRequest {
 		return parentDb.fetchData(this);
 	}
 
+	/**
+	 * Returns data from the underlying RRD, reading datasource values straight into the supplied
+	 * arrays, one array per fetched datasource. An array which is <code>null</code> or shorter than
+	 * the number of fetched rows is replaced with a new array in <code>values</code>, so that the same
+	 * arrays can be reused for the next fetch. Values beyond the number of fetched rows are left
+	 * untouched. The returned {@link FetchData FetchData} object wraps the arrays without copying them.
+	 *
+	 * @param values Arrays receiving datasource values, in the order of the filter or of the
+	 *               datasources of the RRD if no filter is set.
+	 * @return FetchData object wrapping the supplied arrays.
+	 * @throws RrdException Thrown if the number of arrays does not match the number of fetched datasources.
+	 * @throws IOException  Thrown in case of I/O error.
+	 */
+	public FetchData fetchData(double[][] values) throws RrdException, IOException {
+		return parentDb.fetchData(this, values);
+	}
+
+	/**
+	 * Returns a cursor reading data from the underlying RRD in time order, in blocks of
+	 * {@link FetchCursor#DEFAULT_BLOCK_SIZE} rows. See {@link #fetchCursor(int)}.
+	 *
+	 * @return FetchCursor object positioned before the first block.
+	 * @throws RrdException Thrown in case of JRobin specific error.
+	 * @throws IOException  Thrown in case of I/O error.
+	 */
+	public FetchCursor fetchCursor() throws RrdException, IOException {
+		return fetchCursor(FetchCursor.DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Returns a cursor reading data from the underlying RRD in time order, a block of rows at a
+	 * time. Unlike {@link #fetchData() fetchData()}, memory used does not depend on the
+	 * requested time span, which makes cursors suitable for exporting large archives.
+	 *
+	 * @param blockSize Maximum number of rows read at a time.
+	 * @return FetchCursor object positioned before the first block.
+	 * @throws RrdException Thrown in case of JRobin specific error (invalid block size).
+	 * @throws IOException  Thrown in case of I/O error.
+	 */
+	public FetchCursor fetchCursor(int blockSize) throws RrdException, IOException {
+		return parentDb.fetchCursor(this, blockSize);
+	}
+
+	/**
+	 * Returns aggregated values of the data requested from the underlying RRD, the same as
+	 * {@link FetchData#getAggregates(String) getAggregates()} of the fetched data, without fetching
+	 * the rows. Long time spans are summarized from an index of the matching archive, see
+	 * {@link FetchSummary FetchSummary}.
+	 *
+	 * @return FetchSummary object with aggregated values of each fetched datasource.
+	 * @throws RrdException Thrown in case of JRobin specific error.
+	 * @throws IOException  Thrown in case of I/O error.
+	 */
+	public FetchSummary fetchSummary() throws RrdException, IOException {
+		return parentDb.fetchSummary(this);
+	}
+
 	/**
 	 * Returns the underlying RrdDb object.
 	 *
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+
+package org.jrobin.core;
+
+import java.io.IOException;
+
+/**
+ * Aggregated values of the rows of a fetch request, computed without fetching the rows. Object of
+ * this class is created when the method {@link FetchRequest#fetchSummary() fetchSummary()} is called
+ * on a {@link FetchRequest FetchRequest} object.<p>
+ * <p/>
+ * Aggregates are computed over the same rows as {@link FetchData#getAggregates(String)} for the
+ * same request. Minimum, maximum, average, total and standard deviation are taken from an index of
+ * the archive (statistics of blocks of rows, kept in memory with the open RRD and updated as values
+ * are archived), so that only the rows at the edges of the requested time span are read. The index
+ * of an archive is built on first use: summaries pay off when the RRD stays open, for example in a
+ * {@link RrdDbPool}. Backends which do not allow caching (see {@link RrdBackend#isCachingAllowed()}),
+ * such as backends sharing RRD bytes with other {@link RrdDb} objects, keep no index and all
+ * requested rows are read.<p>
+ * <p/>
+ * The standard deviation is computed from the means and squared deviations of the blocks, it may
+ * differ from the one computed by {@link FetchData} in the last digits.
+ */
+public class FetchSummary implements ConsolFuns {
+	private final FetchRequest request;
+	private final Archive matchingArchive;
+	private final String[] dsNames;
+	private final long firstTimestamp;
+	private final long lastTimestamp;
+	private final long step;
+	private final RobinSummary.Statistics[] statistics;
+	private final double[] firstValues;
+	private final double[] lastValues;
+
+	FetchSummary(Archive matchingArchive, FetchRequest request, String[] dsNames, long firstTimestamp,
+				 long lastTimestamp, RobinSummary.Statistics[] statistics, double[] firstValues,
+				 double[] lastValues) throws IOException {
+		this.request = request;
+		this.matchingArchive = matchingArchive;
+		this.dsNames = dsNames;
+		this.firstTimestamp = firstTimestamp;
+		this.lastTimestamp = lastTimestamp;
+		this.step = matchingArchive.getArcStep();
+		this.statistics = statistics;
+		this.firstValues = firstValues;
+		this.lastValues = lastValues;
+	}
+
+	/**
+	 * Returns the number of summarized rows.
+	 *
+	 * @return Number of rows.
+	 */
+	public int getRowCount() {
+		return (int) ((lastTimestamp - firstTimestamp) / step + 1);
+	}
+
+	/**
+	 * Returns the number of known (not NaN) values of a datasource.
+	 *
+	 * @param dsName Datasource name
+	 * @return Number of known values.
+	 * @throws RrdException Thrown if the datasource was not fetched
+	 */
+	public int getValueCount(String dsName) throws RrdException {
+		return statistics[getDsIndex(dsName)].count;
+	}
+
+	/**
+	 * Returns the number of summarized datasources.
+	 *
+	 * @return Number of columns (datasources).
+	 */
+	public int getColumnCount() {
+		return dsNames.length;
+	}
+
+	/**
+	 * Returns the names of the summarized datasources.
+	 *
+	 * @return Datasource names.
+	 */
+	public String[] getDsNames() {
+		return dsNames;
+	}
+
+	/**
+	 * Returns the index of a datasource.
+	 *
+	 * @param dsName Datasource name
+	 * @return Datasource index, in the order of {@link #getDsNames() getDsNames()}
+	 * @throws RrdException Thrown if the datasource was not fetched
+	 */
+	public int getDsIndex(String dsName) throws RrdException {
+		for (int i = 0; i < dsNames.length; i++) {
+			if (dsNames[i].equals(dsName)) {
+				return i;
+			}
+		}
+		throw new RrdException("Datasource [" + dsName + "] not found");
+	}
+
+	/**
+	 * Returns the timestamp of the first summarized row.
+	 *
+	 * @return Timestamp in seconds.
+	 */
+	public long getFirstTimestamp() {
+		return firstTimestamp;
+	}
+
+	/**
+	 * Returns the timestamp of the last summarized row.
+	 *
+	 * @return Timestamp in seconds.
+	 */
+	public long getLastTimestamp() {
+		return lastTimestamp;
+	}
+
+	/**
+	 * Returns the step between rows.
+	 *
+	 * @return Step in seconds.
+	 */
+	public long getStep() {
+		return step;
+	}
+
+	/**
+	 * Returns the request summarized by this object.
+	 *
+	 * @return Fetch request.
+	 */
+	public FetchRequest getRequest() {
+		return request;
+	}
+
+	/**
+	 * Returns the archive the rows are read from.
+	 *
+	 * @return Matching archive.
+	 */
+	public Archive getMatchingArchive() {
+		return matchingArchive;
+	}
+
+	/**
+	 * Returns the aggregated value of a datasource.
+	 *
+	 * @param dsName    Datasource name
+	 * @param consolFun Consolidation function: MIN, MAX, FIRST, LAST, AVERAGE, TOTAL (these constants
+	 *                  are conveniently defined in the {@link ConsolFuns} interface) or STDEV.
+	 * @return Aggregated value
+	 * @throws RrdException Thrown if the datasource was not fetched or if the consolidation function
+	 *                      is not supported
+	 */
+	public double getAggregate(String dsName, String consolFun) throws RrdException {
+		int dsIndex = getDsIndex(dsName);
+		RobinSummary.Statistics stats = statistics[dsIndex];
+		if (consolFun.equals(CF_AVERAGE)) {
+			return stats.getAverage();
+		}
+		else if (consolFun.equals(CF_FIRST)) {
+			return firstValues[dsIndex];
+		}
+		else if (consolFun.equals(CF_LAST)) {
+			return lastValues[dsIndex];
+		}
+		else if (consolFun.equals(CF_MAX)) {
+			return stats.max;
+		}
+		else if (consolFun.equals(CF_MIN)) {
+			return stats.min;
+		}
+		else if (consolFun.equals(CF_TOTAL)) {
+			return stats.sum * step;
+		}
+		else if (consolFun.equals("STDEV")) {
+			return stats.getStdev();
+		}
+		else {
+			throw new RrdException("Unknown consolidation function: " + consolFun);
+		}
+	}
+}
@@ -157,6 +157,14 @@ public class Header implements RrdUpdater {
 		this.lastUpdateTime.set(lastUpdateTime);
 	}
 
+	void setWriteBack(final boolean writeBack) throws IOException {
+		lastUpdateTime.setWriteBack(writeBack);
+	}
+
+	void flush() throws IOException {
+		lastUpdateTime.flush();
+	}
+
 	String dump() throws IOException {
 		return "== HEADER ==\n" +
 				"signature:" + getSignature() +
@@ -38,6 +38,8 @@ public class Robin implements RrdUpdater {
 	private RrdInt pointer;
 	private RrdDoubleArray values;
 	private int rows;
+	// created on first use, dropped with the RRD
+	private RobinSummary summary;
 
 	Robin(Archive parentArc, int rows, boolean shouldInitialize) throws IOException {
 		this.parentArc = parentArc;
@@ -64,6 +66,7 @@ public class Robin implements RrdUpdater {
 	void store(double newValue) throws IOException {
 		int position = pointer.get();
 		values.set(position, newValue);
+		changed(position, 1);
 		pointer.set((position + 1) % rows);
 	}
 
@@ -82,6 +85,7 @@ public class Robin implements RrdUpdater {
 			values.set(0, newValue, headUpdateCount);
 			pointer.set(headUpdateCount);
 		}
+		changed(position, bulkCount);
 	}
 
 	void update(double[] newValues) throws IOException {
@@ -89,6 +93,13 @@ public class Robin implements RrdUpdater {
 				"), exactly " + rows + " needed";
 		pointer.set(0);
 		values.writeDouble(0, newValues);
+		changed(0, rows);
+	}
+
+	// writes count values at the given position, leaving the pointer unchanged
+	void update(int index, double[] newValues, int valuesIndex, int count) throws IOException {
+		values.set(index, newValues, valuesIndex, count);
+		changed(index, count);
 	}
 
 	/**
@@ -114,11 +125,9 @@ public class Robin implements RrdUpdater {
 	 * @throws IOException Thrown in case of I/O error
 	 */
 	public void setValues(double newValue) throws IOException {
-		double[] values = new double[rows];
-		for (int i = 0; i < values.length; i++) {
-			values[i] = newValue;
-		}
-		update(values);
+		pointer.set(0);
+		values.set(0, newValue, rows);
+		changed(0, rows);
 	}
 
 	String dump() throws IOException {
@@ -153,28 +162,49 @@ public class Robin implements RrdUpdater {
 	public void setValue(int index, double value) throws IOException {
 		int arrayIndex = (pointer.get() + index) % rows;
 		values.set(arrayIndex, value);
+		changed(arrayIndex, 1);
 	}
 
 	double[] getValues(int index, int count) throws IOException {
+		double[] values = new double[count];
+		getValues(index, values, 0, count);
+		return values;
+	}
+
+	// reads count values starting from the given archive index into the supplied array
+	void getValues(int index, double[] dest, int destIndex, int count) throws IOException {
 		assert count <= rows: "Too many values requested: " + count + " rows=" + rows;
 		int startIndex = (pointer.get() + index) % rows;
 		int tailReadCount = Math.min(rows - startIndex, count);
-		double[] tailValues = values.get(startIndex, tailReadCount);
+		values.get(startIndex, dest, destIndex, tailReadCount);
 		if (tailReadCount < count) {
-			int headReadCount = count - tailReadCount;
-			double[] headValues = values.get(0, headReadCount);
-			double[] values = new double[count];
-			int k = 0;
-			for (double tailValue : tailValues) {
-				values[k++] = tailValue;
-			}
-			for (double headValue : headValues) {
-				values[k++] = headValue;
-			}
-			return values;
+			values.get(0, dest, destIndex + tailReadCount, count - tailReadCount);
 		}
-		else {
-			return tailValues;
+	}
+
+	// adds count values starting from the given archive index to the statistics
+	void summarize(int index, int count, RobinSummary.Statistics stats) throws IOException {
+		assert count <= rows: "Too many values requested: " + count + " rows=" + rows;
+		int startIndex = (pointer.get() + index) % rows;
+		int tailCount = Math.min(rows - startIndex, count);
+		if (!values.isCachingAllowed()) {
+			// values may be changed through other backends, no index is kept
+			RobinSummary.scanRows(values, startIndex, startIndex + tailCount, stats);
+			RobinSummary.scanRows(values, 0, count - tailCount, stats);
+			return;
+		}
+		if (summary == null) {
+			summary = new RobinSummary(rows);
+		}
+		summary.summarize(values, startIndex, startIndex + tailCount, stats);
+		if (tailCount < count) {
+			summary.summarize(values, 0, count - tailCount, stats);
+		}
+	}
+
+	private void changed(int index, int count) {
+		if (summary != null) {
+			summary.invalidate(index, count);
 		}
 	}
 
@@ -214,6 +244,7 @@ public class Robin implements RrdUpdater {
 			// Identical dimensions. Do copy in BULK to speed things up
 			robin.pointer.set(pointer.get());
 			robin.values.writeBytes(values.readBytes());
+			robin.changed(0, robin.rows);
 		}
 		else {
 			// different sizes
@@ -238,9 +269,11 @@ public class Robin implements RrdUpdater {
 			double value = values.get(i);
 			if (!Double.isNaN(minValue) && !Double.isNaN(value) && minValue > value) {
 				values.set(i, Double.NaN);
+				changed(i, 1);
 			}
 			if (!Double.isNaN(maxValue) && !Double.isNaN(value) && maxValue < value) {
 				values.set(i, Double.NaN);
+				changed(i, 1);
 			}
 		}
 	}
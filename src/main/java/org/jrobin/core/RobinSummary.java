@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+
+package org.jrobin.core;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * In-memory index of a {@link Robin}: count, sum, mean, sum of squared deviations from the mean,
+ * minimum and maximum of the known values of each block of {@link #BLOCK_ROWS} rows. Blocks are
+ * indexed by their position in the underlying array, so that storing a value changes a single
+ * block. Changed blocks are summarized again when they are next used, a range of rows is
+ * summarized from the blocks it covers entirely and by reading the rows at its edges.<p>
+ * <p/>
+ * Like any other RRD section cached by frontend classes, the index is only kept when the backend
+ * allows caching (see {@link RrdBackend#isCachingAllowed()}): backends which share RRD bytes
+ * with other {@link RrdDb} objects or processes are summarized by reading all requested rows.
+ */
+class RobinSummary {
+	static final int BLOCK_ROWS = 64;
+
+	private final int rows;
+	private final int[] counts;
+	private final double[] sums, means, deviations, mins, maxs;
+	private final boolean[] valid;
+	private final double[] buffer;
+
+	RobinSummary(int rows) {
+		int blocks = (rows + BLOCK_ROWS - 1) / BLOCK_ROWS;
+		this.rows = rows;
+		counts = new int[blocks];
+		sums = new double[blocks];
+		means = new double[blocks];
+		deviations = new double[blocks];
+		mins = new double[blocks];
+		maxs = new double[blocks];
+		valid = new boolean[blocks];
+		buffer = new double[Math.min(BLOCK_ROWS, rows)];
+	}
+
+	// marks the blocks of count rows from the given position on as changed, may wrap around
+	void invalidate(int index, int count) {
+		if (count >= rows) {
+			Arrays.fill(valid, false);
+		}
+		else if (count > 0) {
+			int end = index + count;
+			if (end <= rows) {
+				Arrays.fill(valid, index / BLOCK_ROWS, (end - 1) / BLOCK_ROWS + 1, false);
+			}
+			else {
+				Arrays.fill(valid, index / BLOCK_ROWS, valid.length, false);
+				Arrays.fill(valid, 0, (end - rows - 1) / BLOCK_ROWS + 1, false);
+			}
+		}
+	}
+
+	// adds the values of the rows at positions [from, to) to the statistics
+	void summarize(RrdDoubleArray values, int from, int to, Statistics stats) throws IOException {
+		int firstBlock = (from + BLOCK_ROWS - 1) / BLOCK_ROWS;
+		int lastBlock = to == rows ? valid.length : to / BLOCK_ROWS;
+		if (firstBlock >= lastBlock) {
+			scan(values, from, to - from, stats);
+			return;
+		}
+		scan(values, from, firstBlock * BLOCK_ROWS - from, stats);
+		for (int block = firstBlock; block < lastBlock; block++) {
+			if (!valid[block]) {
+				Statistics blockStats = new Statistics();
+				int start = block * BLOCK_ROWS;
+				scan(values, start, Math.min(BLOCK_ROWS, rows - start), blockStats);
+				counts[block] = blockStats.count;
+				sums[block] = blockStats.sum;
+				means[block] = blockStats.mean;
+				deviations[block] = blockStats.deviations;
+				mins[block] = blockStats.min;
+				maxs[block] = blockStats.max;
+				valid[block] = true;
+			}
+			stats.add(counts[block], sums[block], means[block], deviations[block], mins[block], maxs[block]);
+		}
+		if (lastBlock < valid.length) {
+			scan(values, lastBlock * BLOCK_ROWS, to - lastBlock * BLOCK_ROWS, stats);
+		}
+	}
+
+	// adds the values of the rows at positions [from, to) to the statistics, without an index
+	static void scanRows(RrdDoubleArray values, int from, int to, Statistics stats) throws IOException {
+		scan(values, from, to - from, new double[Math.min(BLOCK_ROWS, Math.max(to - from, 0))], stats);
+	}
+
+	private void scan(RrdDoubleArray values, int index, int count, Statistics stats) throws IOException {
+		scan(values, index, count, buffer, stats);
+	}
+
+	private static void scan(RrdDoubleArray values, int index, int count, double[] buffer, Statistics stats)
+			throws IOException {
+		while (count > 0) {
+			int n = Math.min(count, buffer.length);
+			values.get(index, buffer, 0, n);
+			for (int i = 0; i < n; i++) {
+				stats.add(buffer[i]);
+			}
+			index += n;
+			count -= n;
+		}
+	}
+
+	/**
+	 * Count, sum, mean, sum of squared deviations from the mean, minimum and maximum of known
+	 * (not NaN) values. The mean and deviations are updated with Welford's method and merged with
+	 * Chan's parallel formula, so that the standard deviation keeps its precision when values are
+	 * large compared to their spread.
+	 */
+	static final class Statistics {
+		int count;
+		double sum, mean, deviations;
+		double min = Double.NaN, max = Double.NaN;
+
+		void add(double value) {
+			if (!Double.isNaN(value)) {
+				count++;
+				sum += value;
+				double delta = value - mean;
+				mean += delta / count;
+				deviations += delta * (value - mean);
+				min = Util.min(min, value);
+				max = Util.max(max, value);
+			}
+		}
+
+		void add(int count, double sum, double mean, double deviations, double min, double max) {
+			if (count == 0) {
+				return;
+			}
+			int total = this.count + count;
+			double delta = mean - this.mean;
+			this.mean += delta * count / total;
+			this.deviations += deviations + delta * delta * ((double) this.count * count / total);
+			this.count = total;
+			this.sum += sum;
+			this.min = Util.min(this.min, min);
+			this.max = Util.max(this.max, max);
+		}
+
+		double getAverage() {
+			return count > 0 ? sum / count : Double.NaN;
+		}
+
+		double getStdev() {
+			return count > 0 ? Math.sqrt(deviations / count) : Double.NaN;
+		}
+	}
+}
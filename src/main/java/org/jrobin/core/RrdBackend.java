@@ -49,7 +49,9 @@ import java.io.IOException;
  * <ul>
  * <li>Create your custom RrdBackend class (RrdCustomBackend, for example)
  * by extending RrdBackend class. You have to implement all abstract methods defined
- * in the base class.
+ * in the base class. If your storage gives direct access to RRD bytes, you might also
+ * override primitive read/write methods (<code>readDouble()</code>, <code>writeDouble()</code>
+ * and friends) to avoid intermediate byte arrays.
  * <p/>
  * <li>Create your custom RrdBackendFactory class (RrdCustomBackendFactory,
  * for example) by extending RrdBackendFactory class. You have to implement all
@@ -168,93 +170,155 @@ public abstract class RrdBackend {
 		return b;
 	}
 
-	final void writeInt(final long offset, final int value) throws IOException {
-		write(offset, getIntBytes(value));
+	/**
+	 * Writes a single int value to the underlying storage. The default implementation encodes
+	 * the value into a temporary array and delegates to {@link #write(long, byte[])}. Backends
+	 * with direct access to RRD bytes should override this method.
+	 *
+	 * @param offset Storage offset.
+	 * @param value  Value to be written
+	 * @throws IOException Thrown in case of I/O error
+	 */
+	protected void writeInt(final long offset, final int value) throws IOException {
+		final byte[] b = new byte[4];
+		putInt(b, 0, value);
+		write(offset, b);
 	}
 
-	final void writeLong(final long offset, final long value) throws IOException {
-		write(offset, getLongBytes(value));
+	/**
+	 * Writes a single long value to the underlying storage.
+	 *
+	 * @param offset Storage offset.
+	 * @param value  Value to be written
+	 * @throws IOException Thrown in case of I/O error
+	 */
+	protected void writeLong(final long offset, final long value) throws IOException {
+		final byte[] b = new byte[8];
+		putLong(b, 0, value);
+		write(offset, b);
 	}
 
-	final void writeDouble(final long offset, final double value) throws IOException {
-		write(offset, getDoubleBytes(value));
+	/**
+	 * Writes a single double value to the underlying storage.
+	 *
+	 * @param offset Storage offset.
+	 * @param value  Value to be written
+	 * @throws IOException Thrown in case of I/O error
+	 */
+	protected void writeDouble(final long offset, final double value) throws IOException {
+		writeLong(offset, Double.doubleToLongBits(value));
 	}
 
-	final void writeDouble(final long offset, final double value, final int count) throws IOException {
-	    final byte[] b = getDoubleBytes(value);
+	/**
+	 * Writes the same double value <code>count</code> times, starting from the given storage offset.
+	 *
+	 * @param offset Storage offset.
+	 * @param value  Value to be written
+	 * @param count  Number of consecutive copies
+	 * @throws IOException Thrown in case of I/O error
+	 */
+	protected void writeDouble(final long offset, final double value, final int count) throws IOException {
+		final long bits = Double.doubleToLongBits(value);
 		final byte[] image = new byte[8 * count];
-		for (int i = 0, k = 0; i < count; i++) {
-			image[k++] = b[0];
-			image[k++] = b[1];
-			image[k++] = b[2];
-			image[k++] = b[3];
-			image[k++] = b[4];
-			image[k++] = b[5];
-			image[k++] = b[6];
-			image[k++] = b[7];
+		for (int i = 0, k = 0; i < count; i++, k += 8) {
+			putLong(image, k, bits);
 		}
 		write(offset, image);
 	}
 
-	final void writeDouble(final long offset, final double[] values) throws IOException {
-		final int count = values.length;
+	/**
+	 * Writes <code>count</code> values from the given array, starting with <code>values[index]</code>,
+	 * to consecutive storage locations starting from the given storage offset.
+	 *
+	 * @param offset Storage offset.
+	 * @param values Source array
+	 * @param index  Index of the first value in the source array
+	 * @param count  Number of values to write
+	 * @throws IOException Thrown in case of I/O error
+	 */
+	protected void writeDouble(final long offset, final double[] values, final int index, final int count) throws IOException {
 		final byte[] image = new byte[8 * count];
-		for (int i = 0, k = 0; i < count; i++) {
-			final byte[] b = getDoubleBytes(values[i]);
-			image[k++] = b[0];
-			image[k++] = b[1];
-			image[k++] = b[2];
-			image[k++] = b[3];
-			image[k++] = b[4];
-			image[k++] = b[5];
-			image[k++] = b[6];
-			image[k++] = b[7];
+		for (int i = 0, k = 0; i < count; i++, k += 8) {
+			putLong(image, k, Double.doubleToLongBits(values[index + i]));
 		}
 		write(offset, image);
 	}
 
+	final void writeDouble(final long offset, final double[] values) throws IOException {
+		writeDouble(offset, values, 0, values.length);
+	}
+
 	final void writeString(final long offset, final String rawValue) throws IOException {
 	    final String value = rawValue.trim();
 	    final byte[] b = new byte[RrdPrimitive.STRING_LENGTH * 2];
-		for (int i = 0, k = 0; i < RrdPrimitive.STRING_LENGTH; i++) {
+		for (int i = 0, k = 0; i < RrdPrimitive.STRING_LENGTH; i++, k += 2) {
 			final char c = (i < value.length()) ? value.charAt(i) : ' ';
-			final byte[] cb = getCharBytes(c);
-			b[k++] = cb[0];
-			b[k++] = cb[1];
+			b[k] = (byte) ((c >>> 8) & 0xFF);
+			b[k + 1] = (byte) (c & 0xFF);
 		}
 		write(offset, b);
 	}
 
-	final int readInt(final long offset) throws IOException {
+	/**
+	 * Reads a single int value from the underlying storage. The default implementation reads
+	 * bytes into a temporary array through {@link #read(long, byte[])}. Backends with direct
+	 * access to RRD bytes should override this method.
+	 *
+	 * @param offset Storage offset.
+	 * @return Value read from the storage
+	 * @throws IOException Thrown in case of I/O error
+	 */
+	protected int readInt(final long offset) throws IOException {
 	    final byte[] b = new byte[4];
 		read(offset, b);
-		return getInt(b);
+		return getInt(b, 0);
 	}
 
-	final long readLong(final long offset) throws IOException {
+	/**
+	 * Reads a single long value from the underlying storage.
+	 *
+	 * @param offset Storage offset.
+	 * @return Value read from the storage
+	 * @throws IOException Thrown in case of I/O error
+	 */
+	protected long readLong(final long offset) throws IOException {
 	    final byte[] b = new byte[8];
 		read(offset, b);
-		return getLong(b);
+		return getLong(b, 0);
 	}
 
-	final double readDouble(final long offset) throws IOException {
-	    final byte[] b = new byte[8];
-		read(offset, b);
-		return getDouble(b);
+	/**
+	 * Reads a single double value from the underlying storage.
+	 *
+	 * @param offset Storage offset.
+	 * @return Value read from the storage
+	 * @throws IOException Thrown in case of I/O error
+	 */
+	protected double readDouble(final long offset) throws IOException {
+		return Double.longBitsToDouble(readLong(offset));
 	}
 
-	final double[] readDouble(final long offset, final int count) throws IOException {
-	    final int byteCount = 8 * count;
-		final byte[] image = new byte[byteCount];
+	/**
+	 * Reads <code>count</code> consecutive double values from the underlying storage
+	 * into the caller-supplied array, starting with <code>values[index]</code>.
+	 *
+	 * @param offset Storage offset.
+	 * @param values Destination array
+	 * @param index  Index of the first destination slot
+	 * @param count  Number of values to read
+	 * @throws IOException Thrown in case of I/O error
+	 */
+	protected void readDouble(final long offset, final double[] values, final int index, final int count) throws IOException {
+		final byte[] image = new byte[8 * count];
 		read(offset, image);
-		final double[] values = new double[count];
-		for (int i = 0, k = -1; i < count; i++) {
-			final byte[] b = new byte[] {
-					image[++k], image[++k], image[++k], image[++k],
-					image[++k], image[++k], image[++k], image[++k]
-			};
-			values[i] = getDouble(b);
+		for (int i = 0, k = 0; i < count; i++, k += 8) {
+			values[index + i] = Double.longBitsToDouble(getLong(image, k));
 		}
+	}
+
+	final double[] readDouble(final long offset, final int count) throws IOException {
+		final double[] values = new double[count];
+		readDouble(offset, values, 0, count);
 		return values;
 	}
 
@@ -262,72 +326,37 @@ public abstract class RrdBackend {
 	    final byte[] b = new byte[RrdPrimitive.STRING_LENGTH * 2];
 		final char[] c = new char[RrdPrimitive.STRING_LENGTH];
 		read(offset, b);
-		for (int i = 0, k = -1; i < RrdPrimitive.STRING_LENGTH; i++) {
-			final byte[] cb = new byte[] {b[++k], b[++k]};
-			c[i] = getChar(cb);
+		for (int i = 0, k = 0; i < RrdPrimitive.STRING_LENGTH; i++, k += 2) {
+			c[i] = (char) (((b[k] << 8) & 0x0000FF00) + (b[k + 1] & 0x000000FF));
 		}
 		return new String(c).trim();
 	}
 
-	// static helper methods
-
-	private static byte[] getIntBytes(final int value) {
-	    final byte[] b = new byte[4];
-		b[0] = (byte) ((value >>> 24) & 0xFF);
-		b[1] = (byte) ((value >>> 16) & 0xFF);
-		b[2] = (byte) ((value >>> 8) & 0xFF);
-		b[3] = (byte) ((value) & 0xFF);
-		return b;
-	}
-
-	private static byte[] getLongBytes(final long value) {
-	    final byte[] b = new byte[8];
-		b[0] = (byte) ((int) (value >>> 56) & 0xFF);
-		b[1] = (byte) ((int) (value >>> 48) & 0xFF);
-		b[2] = (byte) ((int) (value >>> 40) & 0xFF);
-		b[3] = (byte) ((int) (value >>> 32) & 0xFF);
-		b[4] = (byte) ((int) (value >>> 24) & 0xFF);
-		b[5] = (byte) ((int) (value >>> 16) & 0xFF);
-		b[6] = (byte) ((int) (value >>> 8) & 0xFF);
-		b[7] = (byte) ((int) (value) & 0xFF);
-		return b;
-	}
+	// static helper methods, shared with backends holding RRD bytes in arrays
 
-	private static byte[] getCharBytes(final char value) {
-	    final byte[] b = new byte[2];
-		b[0] = (byte) ((value >>> 8) & 0xFF);
-		b[1] = (byte) ((value) & 0xFF);
-		return b;
+	static void putInt(final byte[] b, final int pos, final int value) {
+		b[pos] = (byte) ((value >>> 24) & 0xFF);
+		b[pos + 1] = (byte) ((value >>> 16) & 0xFF);
+		b[pos + 2] = (byte) ((value >>> 8) & 0xFF);
+		b[pos + 3] = (byte) ((value) & 0xFF);
 	}
 
-	private static byte[] getDoubleBytes(final double value) {
-		return getLongBytes(Double.doubleToLongBits(value));
+	static void putLong(final byte[] b, final int pos, final long value) {
+		putInt(b, pos, (int) (value >>> 32));
+		putInt(b, pos + 4, (int) value);
 	}
 
-	private static int getInt(final byte[] b) {
-		assert b.length == 4: "Invalid number of bytes for integer conversion";
-		return ((b[0] << 24) & 0xFF000000) + ((b[1] << 16) & 0x00FF0000) +
-				((b[2] << 8) & 0x0000FF00) + (b[3] & 0x000000FF);
+	static int getInt(final byte[] b, final int pos) {
+		return ((b[pos] << 24) & 0xFF000000) + ((b[pos + 1] << 16) & 0x00FF0000) +
+				((b[pos + 2] << 8) & 0x0000FF00) + (b[pos + 3] & 0x000000FF);
 	}
 
-	private static long getLong(final byte[] b) {
-		assert b.length == 8: "Invalid number of bytes for long conversion";
-		int high = getInt(new byte[] {b[0], b[1], b[2], b[3]});
-		int low = getInt(new byte[] {b[4], b[5], b[6], b[7]});
+	static long getLong(final byte[] b, final int pos) {
+		final int high = getInt(b, pos);
+		final int low = getInt(b, pos + 4);
 		return ((long) (high) << 32) + (low & 0xFFFFFFFFL);
 	}
 
-	private static char getChar(final byte[] b) {
-		assert b.length == 2: "Invalid number of bytes for char conversion";
-		return (char) (((b[0] << 8) & 0x0000FF00)
-				+ (b[1] & 0x000000FF));
-	}
-
-	private static double getDouble(final byte[] b) {
-		assert b.length == 8: "Invalid number of bytes for double conversion";
-		return Double.longBitsToDouble(getLong(b));
-	}
-
 	private static void setInstanceCreated() {
 		s_instanceCreated = true;
 	}
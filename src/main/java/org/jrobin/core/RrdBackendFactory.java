@@ -79,6 +79,8 @@ public abstract class RrdBackendFactory {
 			registerFactory(safeFactory);
 			RrdNioByteBufferBackendFactory nioByteBufferFactory = new RrdNioByteBufferBackendFactory();
 			registerFactory(nioByteBufferFactory);
+			RrdSharedNioBackendFactory sharedNioFactory = new RrdSharedNioBackendFactory();
+			registerFactory(sharedNioFactory);
 			selectDefaultFactory();
 		}
 		catch (RrdException e) {
@@ -103,6 +105,8 @@ public abstract class RrdBackendFactory {
 	 *             several JVM's.
 	 *             <li><b>NIO</b>: Factory which creates backends based on the
 	 *             java.nio.* package. RRD data is stored in files on the disk
+	 *             <li><b>SNIO</b>: Same as NIO, but all backends open on the same file
+	 *             share a single memory mapping and never lock.
 	 *             <li><b>MEMORY</b>: Factory which creates memory-oriented backends.
 	 *             RRD data is stored in memory, it gets lost as soon as JVM exits.
 	 *             </ul>
@@ -84,6 +84,11 @@ public class RrdDb implements RrdUpdater {
 
 	private boolean closed = false;
 
+	// state write-back, see setWriteBack()
+	private boolean writeBack = false;
+	private long writeBackInterval = 0;
+	private long lastFlushTime;
+
 	/**
 	 * <p>Constructor used to create new RRD object from the definition. This RRD object will be backed
 	 * with a storage (backend) of the default type. Initially, storage type defaults to "NIO"
@@ -399,10 +404,10 @@ public class RrdDb implements RrdUpdater {
 		}
 		else if (externalPath.startsWith(PREFIX_XML)) {
 			externalPath = externalPath.substring(PREFIX_XML.length());
-			reader = new XmlReader(externalPath);
+			reader = new StaxXmlReader(externalPath);
 		}
 		else {
-			reader = new XmlReader(externalPath);
+			reader = new StaxXmlReader(externalPath);
 		}
 		backend = factory.open(rrdPath, false);
 		try {
@@ -419,7 +424,6 @@ public class RrdDb implements RrdUpdater {
 			for (int i = 0; i < archives.length; i++) {
 				archives[i] = new Archive(this, reader, i);
 			}
-			reader.release();
 		}
 		catch (RrdException e) {
 			backend.close();
@@ -429,6 +433,9 @@ public class RrdDb implements RrdUpdater {
 			backend.close();
 			throw e;
 		}
+		finally {
+			reader.release();
+		}
 	}
 
 	public RrdDb(final File file) throws IOException, RrdException {
@@ -447,7 +454,103 @@ public class RrdDb implements RrdUpdater {
 	public synchronized void close() throws IOException {
 		if (!closed) {
 			closed = true;
-			backend.close();
+			try {
+				flushState();
+			}
+			finally {
+				backend.close();
+			}
+		}
+	}
+
+	/**
+	 * <p>Enables or disables write-back of the update state. With write-back enabled, the state
+	 * which changes with every update (last update time, last datasource values and values
+	 * accumulated by datasources and archives) is kept in memory and written to the backend
+	 * only by {@link #sync()}, {@link #close()}, or every {@link #setWriteBackInterval(long) interval}.
+	 * Only archived values are still written with each update.</p>
+	 * <p/>
+	 * <p>Until the state is written, the backend (and {@link #getBytes()} of a different RrdDb
+	 * object open on the same file) does not reflect the latest updates.</p>
+	 *
+	 * @param writeBack <code>true</code> to enable write-back, <code>false</code> to write the
+	 *                  pending state and go back to writing it with each update.
+	 * @throws IOException Thrown in case of I/O error.
+	 */
+	public synchronized void setWriteBack(boolean writeBack) throws IOException {
+		if (writeBack == this.writeBack) {
+			return;
+		}
+		header.setWriteBack(writeBack);
+		for (Datasource datasource : datasources) {
+			datasource.setWriteBack(writeBack);
+		}
+		for (Archive archive : archives) {
+			archive.setWriteBack(writeBack);
+		}
+		this.writeBack = writeBack;
+		lastFlushTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns <code>true</code> if the update state is written back to the backend lazily.
+	 *
+	 * @return <code>true</code> if write-back is enabled
+	 */
+	public synchronized boolean isWriteBack() {
+		return writeBack;
+	}
+
+	/**
+	 * Sets how often the update state is written to the backend when write-back is enabled.
+	 * The state is written by the first update after the interval has elapsed.
+	 *
+	 * @param writeBackInterval Interval in milliseconds, zero (default) writes the state
+	 *                          only on {@link #sync()} and {@link #close()}.
+	 */
+	public synchronized void setWriteBackInterval(long writeBackInterval) {
+		this.writeBackInterval = writeBackInterval;
+	}
+
+	/**
+	 * Returns the interval at which the update state is written to the backend when
+	 * write-back is enabled.
+	 *
+	 * @return Interval in milliseconds, or zero if the state is written only on demand.
+	 */
+	public synchronized long getWriteBackInterval() {
+		return writeBackInterval;
+	}
+
+	/**
+	 * Writes the update state kept in memory to the backend. Does nothing if write-back is not enabled.
+	 *
+	 * @throws IOException Thrown in case of I/O error.
+	 */
+	public synchronized void sync() throws IOException {
+		if (closed) {
+			throw new IOException("RRD already closed");
+		}
+		flushState();
+	}
+
+	private void flushState() throws IOException {
+		if (writeBack) {
+			header.flush();
+			for (Datasource datasource : datasources) {
+				datasource.flush();
+			}
+			for (Archive archive : archives) {
+				archive.flush();
+			}
+			lastFlushTime = System.currentTimeMillis();
+		}
+	}
+
+	private void flushStateIfDue() throws IOException {
+		if (writeBack && writeBackInterval > 0 &&
+				System.currentTimeMillis() - lastFlushTime >= writeBackInterval) {
+			flushState();
 		}
 	}
 
@@ -597,17 +700,86 @@ public class RrdDb implements RrdUpdater {
 		double[] newValues = sample.getValues();
 		for (int i = 0; i < datasources.length; i++) {
 			double newValue = newValues[i];
-			datasources[i].process(newTime, newValue);
+			datasources[i].process(lastTime, newTime, newValue);
 		}
 		header.setLastUpdateTime(newTime);
+		flushStateIfDue();
+	}
+
+	/**
+	 * <p>Stores several samples at once, which is much faster than updating samples one by one
+	 * when a backlog of buffered samples has to be replayed. Timestamps and values are validated
+	 * before anything is stored, so that an invalid batch leaves the RRD untouched.</p>
+	 *
+	 * @param times  Sample timestamps (in seconds, without milliseconds), in strictly increasing order
+	 *               and all after the last update time of this RRD.
+	 * @param values Datasource values, <code>values[i]</code> holds the values for <code>times[i]</code>
+	 *               in the order of datasource definitions.
+	 * @throws IOException  Thrown in case of I/O error.
+	 * @throws RrdException Thrown if the RRD is closed or the batch is invalid.
+	 */
+	public synchronized void storeBatch(long[] times, double[][] values) throws IOException, RrdException {
+		if (closed) {
+			throw new RrdException("RRD already closed, cannot store this batch");
+		}
+		if (times.length != values.length) {
+			throw new RrdException("Invalid batch: " + times.length + " timestamps but " +
+					values.length + " value rows");
+		}
+		long lastTime = header.getLastUpdateTime();
+		for (int i = 0; i < times.length; i++) {
+			if (lastTime >= times[i]) {
+				throw new RrdException("Bad sample timestamp " + times[i] +
+						". Last update time was " + lastTime + ", at least one second step is required");
+			}
+			if (values[i].length != datasources.length) {
+				throw new RrdException("Invalid number of values at batch row " + i + ": " +
+						values[i].length + " (expected " + datasources.length + ")");
+			}
+			lastTime = times[i];
+		}
+		if (times.length == 0) {
+			return;
+		}
+		lastTime = header.getLastUpdateTime();
+		for (int i = 0; i < times.length; i++) {
+			long newTime = times[i];
+			double[] newValues = values[i];
+			for (int j = 0; j < datasources.length; j++) {
+				datasources[j].process(lastTime, newTime, newValues[j]);
+			}
+			lastTime = newTime;
+		}
+		header.setLastUpdateTime(lastTime);
+		flushStateIfDue();
 	}
 
 	synchronized FetchData fetchData(FetchRequest request) throws IOException, RrdException {
+		return fetchData(request, null);
+	}
+
+	synchronized FetchData fetchData(FetchRequest request, double[][] values) throws IOException, RrdException {
+		if (closed) {
+			throw new RrdException("RRD already closed, cannot fetch data");
+		}
+		Archive archive = findMatchingArchive(request);
+		return archive.fetchData(request, values);
+	}
+
+	synchronized FetchCursor fetchCursor(FetchRequest request, int blockSize) throws IOException, RrdException {
+		if (closed) {
+			throw new RrdException("RRD already closed, cannot fetch data");
+		}
+		Archive archive = findMatchingArchive(request);
+		return archive.fetchCursor(request, blockSize);
+	}
+
+	synchronized FetchSummary fetchSummary(FetchRequest request) throws IOException, RrdException {
 		if (closed) {
 			throw new RrdException("RRD already closed, cannot fetch data");
 		}
 		Archive archive = findMatchingArchive(request);
-		return archive.fetchData(request);
+		return archive.fetchSummary(request);
 	}
 
 	public Archive findMatchingArchive(FetchRequest request) throws RrdException, IOException {
@@ -720,11 +892,10 @@ public class RrdDb implements RrdUpdater {
 		return buffer.toString();
 	}
 
-	void archive(Datasource datasource, double value, long numUpdates)
+	void archive(int dsIndex, double value, long numUpdates, long lastUpdateTime)
 			throws IOException, RrdException {
-		int dsIndex = getDsIndex(datasource.getDsName());
 		for (Archive archive : archives) {
-			archive.archive(dsIndex, value, numUpdates);
+			archive.archive(dsIndex, value, numUpdates, lastUpdateTime);
 		}
 	}
 
@@ -1061,6 +1232,7 @@ public class RrdDb implements RrdUpdater {
 	 * @throws IOException Thrown in case of I/O related error.
 	 */
 	public synchronized byte[] getBytes() throws IOException {
+		flushState();
 		return backend.readAll();
 	}
 
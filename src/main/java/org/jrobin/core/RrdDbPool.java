@@ -16,18 +16,37 @@
  * License along with this library; if not, write to the Free Software
  * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
  *******************************************************************************/
-
 package org.jrobin.core;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jrobin.core.RrdException;
 
 /**
  * This class should be used to synchronize access to RRD files
  * in a multithreaded environment. This class should be also used to prevent openning of
- * too many RRD files at the same time (thus avoiding operating system limits)
+ * too many RRD files at the same time (thus avoiding operating system limits)<p>
+ * <p/>
+ * The pool never holds a global lock while RRD files are opened or closed. Requests for
+ * already open files are served without locking, files with different paths are opened
+ * in parallel, and threads waiting for a free slot (see {@link #getCapacity()}) are
+ * served in FIFO order.<p>
+ * <p/>
+ * By default a file is closed as soon as its last reference is released. With
+ * {@link #setIdleCaching(boolean) idle caching} enabled, released files are kept open
+ * and reused by later requests. When the pool is full, the least recently released
+ * idle file is closed to make room instead of blocking the request.
  */
 
 public class RrdDbPool {
@@ -36,10 +55,23 @@ public class RrdDbPool {
 	 * never open too many RRD files at the same time.
 	 */
 	public static final int INITIAL_CAPACITY = 200;
-	private static RrdDbPool instance;
+	private static volatile RrdDbPool instance;
+
+	private volatile int capacity = INITIAL_CAPACITY;
+	private final CapacitySemaphore capacitySemaphore = new CapacitySemaphore(INITIAL_CAPACITY);
+	private final ConcurrentHashMap<String, RrdEntry> rrdMap = new ConcurrentHashMap<String, RrdEntry>(INITIAL_CAPACITY);
+
+	// how long a full pool waits for a free slot before looking for idle files again
+	private static final long IDLE_POLL_MILLIS = 100;
+	private volatile boolean idleCaching = false;
+	// released but still open files, least recently released first; guarded by itself
+	private final LinkedHashMap<String, RrdEntry> rrdIdleMap = new LinkedHashMap<String, RrdEntry>(INITIAL_CAPACITY);
 
-	private int capacity = INITIAL_CAPACITY;
-	private HashMap<String, RrdEntry> rrdMap = new HashMap<String, RrdEntry>(INITIAL_CAPACITY);
+	private final AtomicLong poolRequestsCount = new AtomicLong();
+	private final AtomicLong poolHitsCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+	private final AtomicLong openCount = new AtomicLong();
+	private final AtomicLong openTimeNanos = new AtomicLong();
 
 	/**
 	 * Creates a single instance of the class on the first call, or returns already existing one.
@@ -47,9 +79,13 @@ public class RrdDbPool {
 	 * @return Single instance of this class
 	 * @throws RrdException Thrown if the default RRD backend is not derived from the {@link RrdFileBackendFactory}
 	 */
-	public synchronized static RrdDbPool getInstance() throws RrdException {
+	public static RrdDbPool getInstance() throws RrdException {
 		if (instance == null) {
-			instance = new RrdDbPool();
+			synchronized (RrdDbPool.class) {
+				if (instance == null) {
+					instance = new RrdDbPool();
+				}
+			}
 		}
 		return instance;
 	}
@@ -70,7 +106,8 @@ public class RrdDbPool {
 	 * <li>If the file is not already open and the number of already open RRD files is less than
 	 * {@link #INITIAL_CAPACITY}, the file will be open and a new RrdDb reference will be returned.
 	 * If the file is not already open and the number of already open RRD files is equal to
-	 * {@link #INITIAL_CAPACITY}, the method blocks until some RRD file is closed.
+	 * {@link #INITIAL_CAPACITY}, the method blocks until some RRD file is closed, or closes
+	 * the least recently released idle file if idle caching is enabled.
 	 * </ul>
 	 *
 	 * @param path Path to existing RRD file
@@ -78,27 +115,35 @@ public class RrdDbPool {
 	 * @throws IOException  Thrown in case of I/O error
 	 * @throws RrdException Thrown in case of JRobin specific error
 	 */
-	public synchronized RrdDb requestRrdDb(String path) throws IOException, RrdException {
-		String canonicalPath = Util.getCanonicalPath(path);
-		while (!rrdMap.containsKey(canonicalPath) && rrdMap.size() >= capacity) {
-			try {
-				wait();
-			}
-			catch (InterruptedException e) {
-				throw new RrdException(e);
-			}
-		}
-		if (rrdMap.containsKey(canonicalPath)) {
-			// already open, just increase usage count
+	public RrdDb requestRrdDb(String path) throws IOException, RrdException {
+		final String canonicalPath = Util.getCanonicalPath(path);
+		poolRequestsCount.incrementAndGet();
+		for (;;) {
 			RrdEntry entry = rrdMap.get(canonicalPath);
-			entry.count++;
-			return entry.rrdDb;
-		}
-		else {
+			if (entry != null) {
+				int previousCount = entry.reportUsage();
+				if (previousCount >= 0) {
+					if (previousCount == 0) {
+						// revived from the idle list
+						removeIdle(entry);
+					}
+					poolHitsCount.incrementAndGet();
+					// already open (or being opened by another thread), just wait for it
+					return entry.getRrdDb();
+				}
+				// being closed, try again once it is gone
+				entry.awaitClosed();
+				continue;
+			}
 			// not open, open it now and add to the map
-			RrdDb rrdDb = new RrdDb(canonicalPath);
-			rrdMap.put(canonicalPath, new RrdEntry(rrdDb));
-			return rrdDb;
+			entry = new RrdEntry(canonicalPath, new Callable<RrdDb>() {
+				public RrdDb call() throws IOException, RrdException {
+					return new RrdDb(canonicalPath);
+				}
+			});
+			if (addRrdEntry(entry)) {
+				return entry.getRrdDb();
+			}
 		}
 	}
 
@@ -118,19 +163,13 @@ public class RrdDbPool {
 	 * @throws IOException  Thrown in case of I/O error
 	 * @throws RrdException Thrown in case of JRobin specific error
 	 */
-	public synchronized RrdDb requestRrdDb(RrdDef rrdDef) throws IOException, RrdException {
+	public RrdDb requestRrdDb(final RrdDef rrdDef) throws IOException, RrdException {
 		String canonicalPath = Util.getCanonicalPath(rrdDef.getPath());
-		while (rrdMap.containsKey(canonicalPath) || rrdMap.size() >= capacity) {
-			try {
-				wait();
+		return requestNewRrdDb(canonicalPath, new Callable<RrdDb>() {
+			public RrdDb call() throws IOException, RrdException {
+				return new RrdDb(rrdDef);
 			}
-			catch (InterruptedException e) {
-				throw new RrdException(e);
-			}
-		}
-		RrdDb rrdDb = new RrdDb(rrdDef);
-		rrdMap.put(canonicalPath, new RrdEntry(rrdDb));
-		return rrdDb;
+		});
 	}
 
 	/**
@@ -151,45 +190,168 @@ public class RrdDbPool {
 	 * @throws IOException  Thrown in case of I/O error
 	 * @throws RrdException Thrown in case of JRobin specific error
 	 */
-	public synchronized RrdDb requestRrdDb(String path, String sourcePath)
+	public RrdDb requestRrdDb(String path, final String sourcePath)
 			throws IOException, RrdException,RrdException {
-		String canonicalPath = Util.getCanonicalPath(path);
-		while (rrdMap.containsKey(canonicalPath) || rrdMap.size() >= capacity) {
-			try {
-				wait();
+		final String canonicalPath = Util.getCanonicalPath(path);
+		return requestNewRrdDb(canonicalPath, new Callable<RrdDb>() {
+			public RrdDb call() throws IOException, RrdException {
+				return new RrdDb(canonicalPath, sourcePath);
 			}
-			catch (InterruptedException e) {
-				throw new RrdException(e);
+		});
+	}
+
+	private RrdDb requestNewRrdDb(String canonicalPath, Callable<RrdDb> creator) throws IOException, RrdException {
+		for (;;) {
+			RrdEntry entry = rrdMap.get(canonicalPath);
+			if (entry != null) {
+				if (entry.markClosed()) {
+					// idle, close it right away
+					closeRrdEntry(entry);
+				}
+				else {
+					// already open, wait until it gets closed
+					entry.awaitClosed();
+				}
+			}
+			else {
+				entry = new RrdEntry(canonicalPath, creator);
+				if (addRrdEntry(entry)) {
+					return entry.getRrdDb();
+				}
+			}
+		}
+	}
+
+	// reserves a slot for the entry and opens its file; returns false if some other
+	// thread registered the same path first
+	private boolean addRrdEntry(RrdEntry entry) throws IOException, RrdException {
+		acquireSlot();
+		if (rrdMap.putIfAbsent(entry.canonicalPath, entry) != null) {
+			capacitySemaphore.release();
+			return false;
+		}
+		long start = System.nanoTime();
+		entry.open();
+		if (entry.isFailed()) {
+			removeRrdEntry(entry);
+		}
+		else {
+			openTimeNanos.addAndGet(System.nanoTime() - start);
+			openCount.incrementAndGet();
+		}
+		return true;
+	}
+
+	private void acquireSlot() throws IOException, RrdException {
+		try {
+			if (!idleCaching) {
+				capacitySemaphore.acquire();
+				return;
+			}
+			while (!capacitySemaphore.tryAcquire()) {
+				if (evictIdle()) {
+					evictionCount.incrementAndGet();
+				}
+				else if (capacitySemaphore.tryAcquire(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+					// while somebody is waiting here, released files are closed instead of cached
+					return;
+				}
 			}
 		}
-		RrdDb rrdDb = new RrdDb(canonicalPath, sourcePath);
-		rrdMap.put(canonicalPath, new RrdEntry(rrdDb));
-		return rrdDb;
+		catch (InterruptedException e) {
+			throw new RrdException(e);
+		}
+	}
+
+	// closes the least recently released idle file; returns false if there was none
+	private boolean evictIdle() throws IOException, RrdException {
+		for (;;) {
+			RrdEntry entry;
+			synchronized (rrdIdleMap) {
+				Iterator<RrdEntry> it = rrdIdleMap.values().iterator();
+				if (!it.hasNext()) {
+					return false;
+				}
+				entry = it.next();
+				it.remove();
+			}
+			// the entry might have been requested again in the meantime
+			if (entry.markClosed()) {
+				closeRrdEntry(entry);
+				return true;
+			}
+		}
+	}
+
+	private void addIdle(RrdEntry entry) throws IOException, RrdException {
+		synchronized (rrdIdleMap) {
+			if (idleCaching && !capacitySemaphore.hasQueuedThreads()) {
+				// move to the end of the list
+				rrdIdleMap.remove(entry.canonicalPath);
+				rrdIdleMap.put(entry.canonicalPath, entry);
+				return;
+			}
+		}
+		if (entry.markClosed()) {
+			closeRrdEntry(entry);
+		}
+	}
+
+	private void removeIdle(RrdEntry entry) {
+		synchronized (rrdIdleMap) {
+			if (rrdIdleMap.get(entry.canonicalPath) == entry) {
+				rrdIdleMap.remove(entry.canonicalPath);
+			}
+		}
+	}
+
+	private void closeRrdEntry(RrdEntry entry) throws IOException, RrdException {
+		removeIdle(entry);
+		try {
+			entry.getRrdDb().close();
+		}
+		finally {
+			removeRrdEntry(entry);
+		}
+	}
+
+	private void removeRrdEntry(RrdEntry entry) {
+		rrdMap.remove(entry.canonicalPath, entry);
+		entry.closedSignal.countDown();
+		capacitySemaphore.release();
 	}
 
 	/**
 	 * Releases RrdDb reference previously obtained from the pool. When a reference is released, its usage
-	 * count is decremented by one. If usage count drops to zero, the underlying RRD file will be closed.
+	 * count is decremented by one. If usage count drops to zero, the underlying RRD file will be closed,
+	 * unless idle caching is enabled.
 	 *
 	 * @param rrdDb RrdDb reference to be returned to the pool
 	 * @throws IOException  Thrown in case of I/O error
 	 * @throws RrdException Thrown in case of JRobin specific error
 	 */
-	public synchronized void release(RrdDb rrdDb) throws IOException, RrdException {
+	public void release(RrdDb rrdDb) throws IOException, RrdException {
 		// null pointer should not kill the thread, just ignore it
 		if (rrdDb == null) {
 			return;
 		}
 		String canonicalPath = Util.getCanonicalPath(rrdDb.getPath());
-		if (!rrdMap.containsKey(canonicalPath)) {
+		RrdEntry entry = rrdMap.get(canonicalPath);
+		if (entry == null) {
 			throw new RrdException("Could not release [" + canonicalPath + "], the file was never requested");
 		}
-		RrdEntry entry = rrdMap.get(canonicalPath);
-		if (--entry.count <= 0) {
+		int count = entry.reportRelease();
+		if (count < 0) {
+			throw new RrdException("Could not release [" + canonicalPath + "], the file was never requested");
+		}
+		if (count == 0) {
 			// no longer used
-			rrdMap.remove(canonicalPath);
-			notifyAll();
-			entry.rrdDb.close();
+			if (idleCaching) {
+				addIdle(entry);
+			}
+			else if (entry.markClosed()) {
+				closeRrdEntry(entry);
+			}
 		}
 	}
 
@@ -198,7 +360,7 @@ public class RrdDbPool {
 	 *
 	 * @return maximum number of simultaneously open RRD files
 	 */
-	public synchronized int getCapacity() {
+	public int getCapacity() {
 		return capacity;
 	}
 
@@ -208,15 +370,130 @@ public class RrdDbPool {
 	 * @param capacity Maximum number of simultaneously open RRD files.
 	 */
 	public synchronized void setCapacity(int capacity) {
+		int diff = capacity - this.capacity;
+		if (diff > 0) {
+			capacitySemaphore.release(diff);
+		}
+		else if (diff < 0) {
+			capacitySemaphore.reducePermits(-diff);
+		}
 		this.capacity = capacity;
 	}
 
+	/**
+	 * Returns <code>true</code> if released RRD files are kept open for later requests.
+	 *
+	 * @return <code>true</code> if idle caching is enabled
+	 */
+	public boolean isIdleCaching() {
+		return idleCaching;
+	}
+
+	/**
+	 * Enables or disables idle caching. With idle caching enabled, RRD files whose usage count
+	 * drops to zero are kept open until the pool needs room for another file, in which case the
+	 * least recently released file is closed. Disabling idle caching closes all idle files.
+	 *
+	 * @param idleCaching <code>true</code> to keep released RRD files open
+	 * @throws IOException  Thrown in case of I/O error
+	 * @throws RrdException Thrown in case of JRobin specific error
+	 */
+	public void setIdleCaching(boolean idleCaching) throws IOException, RrdException {
+		synchronized (rrdIdleMap) {
+			this.idleCaching = idleCaching;
+		}
+		if (!idleCaching) {
+			closeIdleFiles();
+		}
+	}
+
+	/**
+	 * Closes all RRD files which are open but no longer used.
+	 *
+	 * @throws IOException  Thrown in case of I/O error
+	 * @throws RrdException Thrown in case of JRobin specific error
+	 */
+	public void closeIdleFiles() throws IOException, RrdException {
+		while (evictIdle()) {
+			// keep going
+		}
+	}
+
+	/**
+	 * Returns the number of RRD files which are open but no longer used.
+	 *
+	 * @return Number of idle RRD files held in the pool.
+	 */
+	public int getIdleFileCount() {
+		synchronized (rrdIdleMap) {
+			return rrdIdleMap.size();
+		}
+	}
+
+	/**
+	 * Calculates pool's efficency ratio. The ratio is obtained by dividing the number of
+	 * RrdDb requests served from the internal pool of open RRD files
+	 * with the number of total RrdDb requests.
+	 *
+	 * @return Pool's efficiency ratio as a double between 1 (best) and 0 (worst).
+	 * If no RrdDb reference was ever requested, 1 would be returned.
+	 */
+	public double getPoolEfficiency() {
+		long requests = poolRequestsCount.get();
+		if (requests == 0) {
+			return 1.0;
+		}
+		double ratio = (double) poolHitsCount.get() / (double) requests;
+		// round to 3 decimal digits
+		return Math.round(ratio * 1000.0) / 1000.0;
+	}
+
+	/**
+	 * Returns the number of RRD requests served from the internal pool of open RRD files
+	 *
+	 * @return The number of pool "hits".
+	 */
+	public long getPoolHitsCount() {
+		return poolHitsCount.get();
+	}
+
+	/**
+	 * Returns the total number of requests for existing RRD files.
+	 *
+	 * @return Total number of RRD requests
+	 */
+	public long getPoolRequestsCount() {
+		return poolRequestsCount.get();
+	}
+
+	/**
+	 * Returns the number of idle RRD files closed to make room for other files.
+	 *
+	 * @return The number of evictions.
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * Returns the average time needed to open or create an RRD file in the pool.
+	 *
+	 * @return Average open time in milliseconds, or 0 if no file was opened yet.
+	 */
+	public double getAverageOpenTime() {
+		long opens = openCount.get();
+		if (opens == 0) {
+			return 0;
+		}
+		return openTimeNanos.get() / 1000000.0 / opens;
+	}
+
 	/**
 	 * Returns an array of open file names.
 	 *
 	 * @return Array with canonical paths to open RRD files held in the pool.
 	 */
-	public synchronized String[] getOpenFiles() {
+	public String[] getOpenFiles() {
 		return rrdMap.keySet().toArray(new String[0]);
 	}
 
@@ -225,17 +502,113 @@ public class RrdDbPool {
 	 *
 	 * @return Number of currently open RRD files held in the pool.
 	 */
-	public synchronized int getOpenFileCount() {
+	public int getOpenFileCount() {
 		return rrdMap.size();
 	}
 
 	private final static class RrdEntry {
-		RrdDb rrdDb;
-		int count;
+		final String canonicalPath;
+		final FutureTask<RrdDb> rrdDb;
+		// number of unreleased references; zero means the entry is idle, CLOSED that it cannot be reused
+		static final int CLOSED = -1;
+		final AtomicInteger count = new AtomicInteger(1);
+		final CountDownLatch closedSignal = new CountDownLatch(1);
+
+		RrdEntry(final String canonicalPath, final Callable<RrdDb> creator) {
+			this.canonicalPath = canonicalPath;
+			this.rrdDb = new FutureTask<RrdDb>(creator);
+		}
+
+		void open() {
+			rrdDb.run();
+		}
+
+		boolean isFailed() {
+			try {
+				rrdDb.get();
+				return false;
+			}
+			catch (Exception e) {
+				return true;
+			}
+		}
+
+		// returns the previous count, or CLOSED
+		int reportUsage() {
+			for (;;) {
+				int current = count.get();
+				if (current == CLOSED) {
+					return CLOSED;
+				}
+				if (count.compareAndSet(current, current + 1)) {
+					return current;
+				}
+			}
+		}
+
+		// returns the new count, or CLOSED if there was nothing to release
+		int reportRelease() {
+			for (;;) {
+				int current = count.get();
+				if (current <= 0) {
+					return CLOSED;
+				}
+				if (count.compareAndSet(current, current - 1)) {
+					return current - 1;
+				}
+			}
+		}
+
+		// succeeds only for unused entries, which can then be closed by the caller
+		boolean markClosed() {
+			return count.compareAndSet(0, CLOSED);
+		}
+
+		RrdDb getRrdDb() throws IOException, RrdException {
+			try {
+				return rrdDb.get();
+			}
+			catch (InterruptedException e) {
+				throw new RrdException(e);
+			}
+			catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				if (cause instanceof RrdException) {
+					throw (RrdException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new RrdException(cause);
+			}
+		}
+
+		void awaitClosed() throws RrdException {
+			try {
+				closedSignal.await();
+			}
+			catch (InterruptedException e) {
+				throw new RrdException(e);
+			}
+		}
+	}
+
+	// fair semaphore whose number of permits can also be reduced
+	private final static class CapacitySemaphore extends Semaphore {
+		private static final long serialVersionUID = 1L;
+
+		CapacitySemaphore(int permits) {
+			super(permits, true);
+		}
 
-		RrdEntry(final RrdDb rrdDb) {
-			this.rrdDb = rrdDb;
-			this.count = 1;
+		protected void reducePermits(int reduction) {
+			super.reducePermits(reduction);
 		}
 	}
 }
@@ -18,12 +18,10 @@
  *******************************************************************************/
 package org.jrobin.core;
 
-import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Calendar;
 
 /**
  * Class used to create an arbitrary number of {@link RrdDef} (RRD definition) objects
@@ -120,9 +118,15 @@ import java.util.Calendar;
  * You should create new RrdDefTemplate object only once for each XML template. Single template
  * object can be reused to create as many RrdDef objects as needed, with different values
  * specified for template variables. XML synatax check is performed only once - the first
- * definition object gets created relatively slowly, but it will be created much faster next time.
+ * definition object gets created relatively slowly, but it will be created much faster next time.<p>
+ * <p/>
+ * To create definitions from several threads, use {@link #compile()} once and pass a new
+ * {@link TemplateVariables} object to {@link CompiledRrdDefTemplate#getRrdDef(TemplateVariables)}
+ * for each definition.
  */
 public class RrdDefTemplate extends XmlTemplate {
+	private CompiledRrdDefTemplate compiled;
+
 	/**
 	 * Creates RrdDefTemplate object from any parsable XML input source. Read general information
 	 * for this class to find an example of a properly formatted RrdDef XML source.
@@ -175,55 +179,21 @@ public class RrdDefTemplate extends XmlTemplate {
 	 *                      method call
 	 */
 	public RrdDef getRrdDef() throws RrdException {
-		if (!root.getTagName().equals("rrd_def")) {
-			throw new RrdException("XML definition must start with <rrd_def>");
-		}
-		validateTagsOnlyOnce(root, new String[] {
-				"path", "start", "step", "datasource*", "archive*"
-		});
-		// PATH must be supplied or exception is thrown
-		String path = getChildValue(root, "path");
-		RrdDef rrdDef = new RrdDef(path);
-		try {
-			String startStr = getChildValue(root, "start");
-			Calendar startGc = Util.getCalendar(startStr);
-			rrdDef.setStartTime(startGc);
-		}
-		catch (RrdException e) {
-			// START is not mandatory
-		}
-		try {
-			long step = getChildValueAsLong(root, "step");
-			rrdDef.setStep(step);
-		}
-		catch (RrdException e) {
-			// STEP is not mandatory
-		}
-		// datsources
-		Node[] dsNodes = getChildNodes(root, "datasource");
-		for (Node dsNode : dsNodes) {
-			validateTagsOnlyOnce(dsNode, new String[] {
-					"name", "type", "heartbeat", "min", "max"
-			});
-			String name = getChildValue(dsNode, "name");
-			String type = getChildValue(dsNode, "type");
-			long heartbeat = getChildValueAsLong(dsNode, "heartbeat");
-			double min = getChildValueAsDouble(dsNode, "min");
-			double max = getChildValueAsDouble(dsNode, "max");
-			rrdDef.addDatasource(name, type, heartbeat, min, max);
-		}
-		// archives
-		Node[] arcNodes = getChildNodes(root, "archive");
-		for (Node arcNode : arcNodes) {
-			validateTagsOnlyOnce(arcNode, new String[] {
-					"cf", "xff", "steps", "rows"
-			});
-			String consolFun = getChildValue(arcNode, "cf");
-			double xff = getChildValueAsDouble(arcNode, "xff");
-			int steps = getChildValueAsInt(arcNode, "steps");
-			int rows = getChildValueAsInt(arcNode, "rows");
-			rrdDef.addArchive(consolFun, xff, steps, rows);
+		CompiledRrdDefTemplate compiled = compile();
+		return compiled.getRrdDef(createVariables(compiled));
+	}
+
+	/**
+	 * Compiles this template into an immutable object which can be shared between threads and
+	 * creates RrdDef objects without parsing the XML tree again. Variable values set on this
+	 * template are not part of the compiled template.
+	 *
+	 * @return Compiled template
+	 */
+	public synchronized CompiledRrdDefTemplate compile() {
+		if (compiled == null) {
+			compiled = new CompiledRrdDefTemplate(this);
 		}
-		return rrdDef;
+		return compiled;
 	}
 }
@@ -24,6 +24,9 @@ import java.io.IOException;
 class RrdDouble extends RrdPrimitive {
 	private double cache;
 	private boolean cached = false;
+	// in write-back mode the value is written to the backend only on flush()
+	private boolean writeBack = false;
+	private boolean dirty = false;
 
 	RrdDouble(final RrdUpdater updater, final boolean isConstant) throws IOException {
 		super(updater, RrdDouble.RRD_DOUBLE, isConstant);
@@ -34,7 +37,11 @@ class RrdDouble extends RrdPrimitive {
 	}
 
 	void set(final double value) throws IOException {
-		if (!isCachingAllowed()) {
+		if (writeBack) {
+			dirty = dirty || !Util.equal(cache, value);
+			cache = value;
+		}
+		else if (!isCachingAllowed()) {
 			writeDouble(value);
 		}
 		// caching allowed
@@ -48,4 +55,23 @@ class RrdDouble extends RrdPrimitive {
 	double get() throws IOException {
 		return cached ? cache : readDouble();
 	}
+
+	void setWriteBack(final boolean writeBack) throws IOException {
+		if (writeBack && !this.writeBack) {
+			cache = get();
+			cached = true;
+		}
+		else if (!writeBack && this.writeBack) {
+			flush();
+			cached = isCachingAllowed();
+		}
+		this.writeBack = writeBack;
+	}
+
+	void flush() throws IOException {
+		if (dirty) {
+			writeDouble(cache);
+			dirty = false;
+		}
+	}
 }
@@ -39,6 +39,11 @@ class RrdDoubleArray extends RrdPrimitive {
 		writeDouble(index, value, count);
 	}
 
+	void set(final int index, final double[] values, final int valuesIndex, final int count) throws IOException {
+		assert index + count <= length:	"Invalid robin index supplied: index=" + index +", count=" + count + ", length=" + length;
+		writeDouble(index, values, valuesIndex, count);
+	}
+
 	double get(final int index) throws IOException {
 		assert index < length: "Invalid index supplied: " + index + ", length=" + length;
 		return readDouble(index);
@@ -49,4 +54,9 @@ class RrdDoubleArray extends RrdPrimitive {
 		return readDouble(index, count);
 	}
 
+	void get(final int index, final double[] values, final int valuesIndex, final int count) throws IOException {
+		assert index + count <= length: "Invalid index/count supplied: " + index + "/" + count + " (length=" + length + ")";
+		readDouble(index, values, valuesIndex, count);
+	}
+
 }
@@ -29,11 +29,16 @@ import java.io.RandomAccessFile;
  * This backend is based on the RandomAccessFile class (java.io.* package).
  */
 public class RrdFileBackend extends RrdBackend {
+	private static final int MAX_BUFFER_SIZE = 8192; // bytes
+
 	/**
 	 * radnom access file handle
 	 */
 	protected RandomAccessFile file;
 
+	// reusable buffer for primitive I/O, grows up to MAX_BUFFER_SIZE bytes
+	private byte[] buffer = new byte[8];
+
 	/**
 	 * Creates RrdFileBackend object for the given file path, backed by RandomAccessFile object.
 	 *
@@ -102,6 +107,80 @@ public class RrdFileBackend extends RrdBackend {
 		}
 	}
 
+	protected void writeInt(final long offset, final int value) throws IOException {
+		putInt(buffer, 0, value);
+		file.seek(offset);
+		file.write(buffer, 0, 4);
+	}
+
+	protected void writeLong(final long offset, final long value) throws IOException {
+		putLong(buffer, 0, value);
+		file.seek(offset);
+		file.write(buffer, 0, 8);
+	}
+
+	protected void writeDouble(final long offset, final double value, final int count) throws IOException {
+		final long bits = Double.doubleToLongBits(value);
+		final byte[] b = getBuffer(8 * count);
+		final int chunkSize = b.length / 8;
+		for (int k = 0; k < chunkSize && k < count; k++) {
+			putLong(b, 8 * k, bits);
+		}
+		file.seek(offset);
+		for (int done = 0; done < count; done += chunkSize) {
+			file.write(b, 0, 8 * Math.min(chunkSize, count - done));
+		}
+	}
+
+	protected void writeDouble(final long offset, final double[] values, final int index, final int count) throws IOException {
+		final byte[] b = getBuffer(8 * count);
+		final int chunkSize = b.length / 8;
+		file.seek(offset);
+		for (int done = 0; done < count; done += chunkSize) {
+			final int n = Math.min(chunkSize, count - done);
+			for (int k = 0; k < n; k++) {
+				putLong(b, 8 * k, Double.doubleToLongBits(values[index + done + k]));
+			}
+			file.write(b, 0, 8 * n);
+		}
+	}
+
+	protected int readInt(final long offset) throws IOException {
+		readBuffer(offset, 4);
+		return getInt(buffer, 0);
+	}
+
+	protected long readLong(final long offset) throws IOException {
+		readBuffer(offset, 8);
+		return getLong(buffer, 0);
+	}
+
+	protected void readDouble(final long offset, final double[] values, final int index, final int count) throws IOException {
+		final byte[] b = getBuffer(8 * count);
+		final int chunkSize = b.length / 8;
+		for (int done = 0; done < count; done += chunkSize) {
+			final int n = Math.min(chunkSize, count - done);
+			readBuffer(offset + 8L * done, 8 * n);
+			for (int k = 0; k < n; k++) {
+				values[index + done + k] = Double.longBitsToDouble(getLong(b, 8 * k));
+			}
+		}
+	}
+
+	private void readBuffer(final long offset, final int length) throws IOException {
+		file.seek(offset);
+		if (file.read(buffer, 0, length) != length) {
+			throw new IOException("Not enough bytes available in file " + getPath());
+		}
+	}
+
+	private byte[] getBuffer(final int length) {
+		if (buffer.length < length && buffer.length < MAX_BUFFER_SIZE) {
+			buffer = new byte[Math.min(length, MAX_BUFFER_SIZE)];
+		}
+		return buffer;
+	}
+
 	/**
 	 * Returns RRD file length.
 	 *
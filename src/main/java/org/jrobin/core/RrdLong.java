@@ -24,6 +24,9 @@ import java.io.IOException;
 class RrdLong extends RrdPrimitive {
 	private long cache;
 	private boolean cached = false;
+	// in write-back mode the value is written to the backend only on flush()
+	private boolean writeBack = false;
+	private boolean dirty = false;
 
 	RrdLong(final RrdUpdater updater, final boolean isConstant) throws IOException {
 		super(updater, RrdPrimitive.RRD_LONG, isConstant);
@@ -34,7 +37,11 @@ class RrdLong extends RrdPrimitive {
 	}
 
 	void set(final long value) throws IOException {
-		if (!isCachingAllowed()) {
+		if (writeBack) {
+			dirty = dirty || cache != value;
+			cache = value;
+		}
+		else if (!isCachingAllowed()) {
 			writeLong(value);
 		}
 		// caching allowed
@@ -48,4 +55,23 @@ class RrdLong extends RrdPrimitive {
 	long get() throws IOException {
 		return cached ? cache : readLong();
 	}
+
+	void setWriteBack(final boolean writeBack) throws IOException {
+		if (writeBack && !this.writeBack) {
+			cache = get();
+			cached = true;
+		}
+		else if (!writeBack && this.writeBack) {
+			flush();
+			cached = isCachingAllowed();
+		}
+		this.writeBack = writeBack;
+	}
+
+	void flush() throws IOException {
+		if (dirty) {
+			writeLong(cache);
+			dirty = false;
+		}
+	}
 }
@@ -28,9 +28,10 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * Backend to be used to store all RRD bytes in memory.<p>
  */
 public class RrdMemoryBackend extends RrdBackend {
-	private static final ReadWriteLock m_readWritelock = new ReentrantReadWriteLock();
-	private static final Lock m_readLock = m_readWritelock.readLock();
-	private static final Lock m_writeLock = m_readWritelock.writeLock();
+	// each backend guards its own buffer, so updates of different RRDs never contend
+	private final ReadWriteLock m_readWritelock = new ReentrantReadWriteLock();
+	private final Lock m_readLock = m_readWritelock.readLock();
+	private final Lock m_writeLock = m_readWritelock.writeLock();
 
 	private byte[] buffer = new byte[0];
 
@@ -41,10 +42,7 @@ public class RrdMemoryBackend extends RrdBackend {
 	protected void write(final long offset, final byte[] b) {
 		m_writeLock.lock();
 		try {
-		    int pos = (int) offset;
-			for (final byte singleByte : b) {
-				buffer[pos++] = singleByte;
-			}
+			System.arraycopy(b, 0, buffer, (int) offset, b.length);
 		} finally {
 			m_writeLock.unlock();
 		}
@@ -53,20 +51,100 @@ public class RrdMemoryBackend extends RrdBackend {
 	protected void read(final long offset, final byte[] b) throws IOException {
 		m_readLock.lock();
 		try {
-			int pos = (int) offset;
-			if (pos + b.length <= buffer.length) {
-				for (int i = 0; i < b.length; i++) {
-					b[i] = buffer[pos++];
-				}
+			checkBounds(offset, b.length);
+			System.arraycopy(buffer, (int) offset, b, 0, b.length);
+		} finally {
+			m_readLock.unlock();
+		}
+	}
+
+	protected void writeInt(final long offset, final int value) {
+		m_writeLock.lock();
+		try {
+			putInt(buffer, (int) offset, value);
+		} finally {
+			m_writeLock.unlock();
+		}
+	}
+
+	protected void writeLong(final long offset, final long value) {
+		m_writeLock.lock();
+		try {
+			putLong(buffer, (int) offset, value);
+		} finally {
+			m_writeLock.unlock();
+		}
+	}
+
+	protected void writeDouble(final long offset, final double value) {
+		writeLong(offset, Double.doubleToLongBits(value));
+	}
+
+	protected void writeDouble(final long offset, final double value, final int count) {
+		final long bits = Double.doubleToLongBits(value);
+		m_writeLock.lock();
+		try {
+			for (int i = 0, pos = (int) offset; i < count; i++, pos += 8) {
+				putLong(buffer, pos, bits);
+			}
+		} finally {
+			m_writeLock.unlock();
+		}
+	}
+
+	protected void writeDouble(final long offset, final double[] values, final int index, final int count) {
+		m_writeLock.lock();
+		try {
+			for (int i = 0, pos = (int) offset; i < count; i++, pos += 8) {
+				putLong(buffer, pos, Double.doubleToLongBits(values[index + i]));
 			}
-			else {
-				throw new IOException("Not enough bytes available in memory " + getPath());
+		} finally {
+			m_writeLock.unlock();
+		}
+	}
+
+	protected int readInt(final long offset) throws IOException {
+		m_readLock.lock();
+		try {
+			checkBounds(offset, 4);
+			return getInt(buffer, (int) offset);
+		} finally {
+			m_readLock.unlock();
+		}
+	}
+
+	protected long readLong(final long offset) throws IOException {
+		m_readLock.lock();
+		try {
+			checkBounds(offset, 8);
+			return getLong(buffer, (int) offset);
+		} finally {
+			m_readLock.unlock();
+		}
+	}
+
+	protected double readDouble(final long offset) throws IOException {
+		return Double.longBitsToDouble(readLong(offset));
+	}
+
+	protected void readDouble(final long offset, final double[] values, final int index, final int count) throws IOException {
+		m_readLock.lock();
+		try {
+			checkBounds(offset, 8 * count);
+			for (int i = 0, pos = (int) offset; i < count; i++, pos += 8) {
+				values[index + i] = Double.longBitsToDouble(getLong(buffer, pos));
 			}
 		} finally {
 			m_readLock.unlock();
 		}
 	}
 
+	private void checkBounds(final long offset, final int length) throws IOException {
+		if (offset + length > buffer.length) {
+			throw new IOException("Not enough bytes available in memory " + getPath());
+		}
+	}
+
 	/**
 	 * Returns the number of RRD bytes held in memory.
 	 *
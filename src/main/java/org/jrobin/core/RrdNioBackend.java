@@ -35,6 +35,8 @@ import sun.nio.ch.DirectBuffer;
 public class RrdNioBackend extends RrdFileBackend {
     private final SyncManager m_syncManager;
     private MappedByteBuffer m_byteBuffer = null;
+    // set by writes, cleared by the sync manager
+    private volatile boolean m_dirty = false;
 
     /**
      * Creates RrdFileBackend object for the given file path, backed by
@@ -158,6 +160,7 @@ public class RrdNioBackend extends RrdFileBackend {
         if (m_byteBuffer != null) {
             m_byteBuffer.position((int) offset);
             m_byteBuffer.put(b);
+            markDirty();
         } else {
             throw new IOException("Write failed, file " + getPath() + " not mapped for I/O");
         }
@@ -180,6 +183,88 @@ public class RrdNioBackend extends RrdFileBackend {
         }
     }
 
+    protected synchronized void writeInt(final long offset, final int value) throws IOException {
+        checkMapped("Write");
+        m_byteBuffer.putInt((int) offset, value);
+        markDirty();
+    }
+
+    protected synchronized void writeLong(final long offset, final long value) throws IOException {
+        checkMapped("Write");
+        m_byteBuffer.putLong((int) offset, value);
+        markDirty();
+    }
+
+    protected synchronized void writeDouble(final long offset, final double value) throws IOException {
+        checkMapped("Write");
+        m_byteBuffer.putDouble((int) offset, value);
+        markDirty();
+    }
+
+    protected synchronized void writeDouble(final long offset, final double value, final int count) throws IOException {
+        checkMapped("Write");
+        for (int i = 0, pos = (int) offset; i < count; i++, pos += 8) {
+            m_byteBuffer.putDouble(pos, value);
+        }
+        markDirty();
+    }
+
+    protected synchronized void writeDouble(final long offset, final double[] values, final int index, final int count) throws IOException {
+        checkMapped("Write");
+        for (int i = 0, pos = (int) offset; i < count; i++, pos += 8) {
+            m_byteBuffer.putDouble(pos, values[index + i]);
+        }
+        markDirty();
+    }
+
+    protected synchronized int readInt(final long offset) throws IOException {
+        checkMapped("Read");
+        return m_byteBuffer.getInt((int) offset);
+    }
+
+    protected synchronized long readLong(final long offset) throws IOException {
+        checkMapped("Read");
+        return m_byteBuffer.getLong((int) offset);
+    }
+
+    protected synchronized double readDouble(final long offset) throws IOException {
+        checkMapped("Read");
+        return m_byteBuffer.getDouble((int) offset);
+    }
+
+    protected synchronized void readDouble(final long offset, final double[] values, final int index, final int count) throws IOException {
+        checkMapped("Read");
+        for (int i = 0, pos = (int) offset; i < count; i++, pos += 8) {
+            values[index + i] = m_byteBuffer.getDouble(pos);
+        }
+    }
+
+    private void markDirty() {
+        // avoids a volatile write on every update once the file is dirty
+        if (!m_dirty) {
+            m_dirty = true;
+        }
+    }
+
+    /**
+     * Clears the flag telling that the file was written since it was last synced.
+     *
+     * @return true, if the file was written since the last call
+     */
+    boolean clearDirty() {
+        if (m_dirty) {
+            m_dirty = false;
+            return true;
+        }
+        return false;
+    }
+
+    private void checkMapped(final String operation) throws IOException {
+        if (m_byteBuffer == null) {
+            throw new IOException(operation + " failed, file " + getPath() + " not mapped for I/O");
+        }
+    }
+
     /**
      * Closes the underlying RRD file.
      * 
@@ -36,9 +36,9 @@ public class RrdNioByteBufferBackend extends RrdFileBackend {
 
 	private FileChannel m_ch;
 
-	private static final ReadWriteLock m_readWritelock = new ReentrantReadWriteLock();
-	private static final Lock m_readLock = m_readWritelock.readLock();
-	private static final Lock m_writeLock = m_readWritelock.writeLock();
+	private final ReadWriteLock m_readWritelock = new ReentrantReadWriteLock();
+	private final Lock m_readLock = m_readWritelock.readLock();
+	private final Lock m_writeLock = m_readWritelock.writeLock();
 
 	/**
 	 * Creates RrdFileBackend object for the given file path, backed by java.nio.* classes.
@@ -108,8 +108,106 @@ public class RrdNioByteBufferBackend extends RrdFileBackend {
 	protected void read(final long offset, final byte[] b) {
 	    m_readLock.lock();
 	    try {
-            m_byteBuffer.position((int) offset);
-            m_byteBuffer.get(b);
+	        // absolute gets only: concurrent readers must not move the shared buffer position
+	        for (int i = 0, pos = (int) offset; i < b.length; i++, pos++) {
+	            b[i] = m_byteBuffer.get(pos);
+	        }
+	    } finally {
+	        m_readLock.unlock();
+	    }
+	}
+
+	@Override
+	protected void writeInt(final long offset, final int value) {
+	    m_writeLock.lock();
+	    try {
+	        m_byteBuffer.putInt((int) offset, value);
+	    } finally {
+	        m_writeLock.unlock();
+	    }
+	}
+
+	@Override
+	protected void writeLong(final long offset, final long value) {
+	    m_writeLock.lock();
+	    try {
+	        m_byteBuffer.putLong((int) offset, value);
+	    } finally {
+	        m_writeLock.unlock();
+	    }
+	}
+
+	@Override
+	protected void writeDouble(final long offset, final double value) {
+	    m_writeLock.lock();
+	    try {
+	        m_byteBuffer.putDouble((int) offset, value);
+	    } finally {
+	        m_writeLock.unlock();
+	    }
+	}
+
+	@Override
+	protected void writeDouble(final long offset, final double value, final int count) {
+	    m_writeLock.lock();
+	    try {
+	        for (int i = 0, pos = (int) offset; i < count; i++, pos += 8) {
+	            m_byteBuffer.putDouble(pos, value);
+	        }
+	    } finally {
+	        m_writeLock.unlock();
+	    }
+	}
+
+	@Override
+	protected void writeDouble(final long offset, final double[] values, final int index, final int count) {
+	    m_writeLock.lock();
+	    try {
+	        for (int i = 0, pos = (int) offset; i < count; i++, pos += 8) {
+	            m_byteBuffer.putDouble(pos, values[index + i]);
+	        }
+	    } finally {
+	        m_writeLock.unlock();
+	    }
+	}
+
+	@Override
+	protected int readInt(final long offset) {
+	    m_readLock.lock();
+	    try {
+	        return m_byteBuffer.getInt((int) offset);
+	    } finally {
+	        m_readLock.unlock();
+	    }
+	}
+
+	@Override
+	protected long readLong(final long offset) {
+	    m_readLock.lock();
+	    try {
+	        return m_byteBuffer.getLong((int) offset);
+	    } finally {
+	        m_readLock.unlock();
+	    }
+	}
+
+	@Override
+	protected double readDouble(final long offset) {
+	    m_readLock.lock();
+	    try {
+	        return m_byteBuffer.getDouble((int) offset);
+	    } finally {
+	        m_readLock.unlock();
+	    }
+	}
+
+	@Override
+	protected void readDouble(final long offset, final double[] values, final int index, final int count) {
+	    m_readLock.lock();
+	    try {
+	        for (int i = 0, pos = (int) offset; i < count; i++, pos += 8) {
+	            values[index + i] = m_byteBuffer.getDouble(pos);
+	        }
 	    } finally {
 	        m_readLock.unlock();
 	    }
@@ -83,6 +83,11 @@ abstract class RrdPrimitive {
 		return backend.readDouble(offset, count);
 	}
 
+	final void readDouble(final int index, final double[] values, final int valuesIndex, final int count) throws IOException {
+	    final long offset = pointer + ((long)index * (long)RRD_PRIM_SIZES[RRD_DOUBLE]);
+		backend.readDouble(offset, values, valuesIndex, count);
+	}
+
 	final void writeDouble(final double value) throws IOException {
 		backend.writeDouble(pointer, value);
 	}
@@ -97,6 +102,11 @@ abstract class RrdPrimitive {
 		backend.writeDouble(offset, values);
 	}
 
+	final void writeDouble(final int index, final double[] values, final int valuesIndex, final int count) throws IOException {
+	    final long offset = pointer + ((long)index * (long)RRD_PRIM_SIZES[RRD_DOUBLE]);
+		backend.writeDouble(offset, values, valuesIndex, count);
+	}
+
 	final String readString() throws IOException {
 		return backend.readString(pointer);
 	}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * JRobin backend which stores RRD data in memory mapped files, like {@link RrdNioBackend},
+ * but shares one mapping between all backends open on the same file. All reads and writes
+ * use absolute (position-free) buffer access, so backends never lock and concurrent readers
+ * never block each other. Writes are not synchronized; as with other backends, a file should
+ * be updated through one {@link RrdDb} object at a time.
+ */
+public class RrdSharedNioBackend extends RrdBackend {
+	private final RrdSharedNioBackendFactory m_factory;
+	private volatile RrdSharedNioBackendFactory.Mapping m_mapping;
+
+	/**
+	 * Creates backend for the given file path, using the mapping shared by the factory.
+	 *
+	 * @param path     Path to a file
+	 * @param readOnly True, if file should be open in a read-only mode. False otherwise
+	 * @param factory  Factory owning the mapping
+	 * @param mapping  Mapping of the file
+	 */
+	protected RrdSharedNioBackend(final String path, final boolean readOnly, final RrdSharedNioBackendFactory factory,
+			final RrdSharedNioBackendFactory.Mapping mapping) {
+		super(path, readOnly);
+		m_factory = factory;
+		m_mapping = mapping;
+	}
+
+	private ByteBuffer getWriteBuffer() throws IOException {
+		final RrdSharedNioBackendFactory.Mapping mapping = m_mapping;
+		final ByteBuffer buffer = mapping == null ? null : mapping.getBuffer();
+		if (buffer == null) {
+			throw new IOException("Write failed, file " + getPath() + " not mapped for I/O");
+		}
+		return buffer;
+	}
+
+	private void markDirty() {
+		final RrdSharedNioBackendFactory.Mapping mapping = m_mapping;
+		if (mapping != null) {
+			mapping.markDirty();
+		}
+	}
+
+	private ByteBuffer getReadBuffer() throws IOException {
+		final RrdSharedNioBackendFactory.Mapping mapping = m_mapping;
+		final ByteBuffer buffer = mapping == null ? null : mapping.getBuffer();
+		if (buffer == null) {
+			throw new IOException("Read failed, file " + getPath() + " not mapped for I/O");
+		}
+		return buffer;
+	}
+
+	/**
+	 * Writes bytes to the underlying RRD file on the disk
+	 *
+	 * @param offset Starting file offset
+	 * @param b	  Bytes to be written.
+	 * @throws IOException Thrown in case of I/O error
+	 */
+	protected void write(final long offset, final byte[] b) throws IOException {
+		final ByteBuffer buffer = getWriteBuffer().duplicate();
+		buffer.position((int) offset);
+		buffer.put(b);
+		markDirty();
+	}
+
+	/**
+	 * Reads a number of bytes from the RRD file on the disk
+	 *
+	 * @param offset Starting file offset
+	 * @param b	  Buffer which receives bytes read from the file.
+	 * @throws IOException Thrown in case of I/O error.
+	 */
+	protected void read(final long offset, final byte[] b) throws IOException {
+		final ByteBuffer buffer = getReadBuffer().duplicate();
+		buffer.position((int) offset);
+		buffer.get(b);
+	}
+
+	protected void writeInt(final long offset, final int value) throws IOException {
+		getWriteBuffer().putInt((int) offset, value);
+		markDirty();
+	}
+
+	protected void writeLong(final long offset, final long value) throws IOException {
+		getWriteBuffer().putLong((int) offset, value);
+		markDirty();
+	}
+
+	protected void writeDouble(final long offset, final double value) throws IOException {
+		getWriteBuffer().putDouble((int) offset, value);
+		markDirty();
+	}
+
+	protected void writeDouble(final long offset, final double value, final int count) throws IOException {
+		final ByteBuffer buffer = getWriteBuffer();
+		for (int i = 0, pos = (int) offset; i < count; i++, pos += 8) {
+			buffer.putDouble(pos, value);
+		}
+		markDirty();
+	}
+
+	protected void writeDouble(final long offset, final double[] values, final int index, final int count) throws IOException {
+		final ByteBuffer buffer = getWriteBuffer();
+		for (int i = 0, pos = (int) offset; i < count; i++, pos += 8) {
+			buffer.putDouble(pos, values[index + i]);
+		}
+		markDirty();
+	}
+
+	protected int readInt(final long offset) throws IOException {
+		return getReadBuffer().getInt((int) offset);
+	}
+
+	protected long readLong(final long offset) throws IOException {
+		return getReadBuffer().getLong((int) offset);
+	}
+
+	protected double readDouble(final long offset) throws IOException {
+		return getReadBuffer().getDouble((int) offset);
+	}
+
+	protected void readDouble(final long offset, final double[] values, final int index, final int count) throws IOException {
+		final ByteBuffer buffer = getReadBuffer();
+		for (int i = 0, pos = (int) offset; i < count; i++, pos += 8) {
+			values[index + i] = buffer.getDouble(pos);
+		}
+	}
+
+	/**
+	 * Returns RRD file length.
+	 *
+	 * @return File length.
+	 * @throws IOException Thrown in case of I/O error.
+	 */
+	public long getLength() throws IOException {
+		final RrdSharedNioBackendFactory.Mapping mapping = m_mapping;
+		if (mapping == null) {
+			throw new IOException("File " + getPath() + " already closed");
+		}
+		final ByteBuffer buffer = mapping.getBuffer();
+		return buffer == null ? 0 : buffer.capacity();
+	}
+
+	/**
+	 * Sets length of the underlying RRD file and maps it again. This method is called only once,
+	 * immediately after a new RRD file gets created.
+	 *
+	 * @param length Length of the RRD file
+	 * @throws IOException Thrown in case of I/O error.
+	 */
+	protected void setLength(final long length) throws IOException {
+		final RrdSharedNioBackendFactory.Mapping mapping = m_mapping;
+		if (mapping == null) {
+			throw new IOException("File " + getPath() + " already closed");
+		}
+		mapping.setLength(length);
+	}
+
+	/**
+	 * Releases the shared mapping. The file is unmapped and closed once all backends
+	 * open on it are closed.
+	 *
+	 * @throws IOException Thrown in case of I/O error
+	 */
+	public void close() throws IOException {
+		final RrdSharedNioBackendFactory.Mapping mapping;
+		synchronized (this) {
+			mapping = m_mapping;
+			m_mapping = null;
+		}
+		if (mapping != null) {
+			m_factory.release(mapping);
+		}
+	}
+
+	/**
+	 * This method is overridden to disable high-level caching in frontend JRobin classes.
+	 *
+	 * @return Always returns <code>false</code>. RRD bytes are shared with all {@link RrdDb} objects
+	 *         open on the same file, a value cached by one of them would not see updates made
+	 *         through the others.
+	 */
+	protected boolean isCachingAllowed() {
+		return false;
+	}
+
+	/**
+	 * Forces mapped data of the file to the disk.
+	 */
+	protected void sync() {
+		final RrdSharedNioBackendFactory.Mapping mapping = m_mapping;
+		if (mapping != null) {
+			mapping.sync();
+		}
+	}
+}
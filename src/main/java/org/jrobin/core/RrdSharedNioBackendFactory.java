@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.core;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+import sun.nio.ch.DirectBuffer;
+
+/**
+ * Factory class which creates {@link RrdSharedNioBackend} objects. All backends open on the
+ * same file (same canonical path) share a single memory mapping, which is unmapped when the
+ * last of them is closed. The mapping is read-only until the file is opened for writing.<p>
+ * <p/>
+ * Mapped data of written files is forced to the disk periodically by a {@link SyncManager},
+ * and when the last backend is closed.
+ */
+@SuppressWarnings("restriction")
+public class RrdSharedNioBackendFactory extends RrdFileBackendFactory {
+	/**
+	 * factory name, "SNIO"
+	 */
+	public static final String NAME = "SNIO";
+
+	private final Map<String, Mapping> m_mappings = new HashMap<String, Mapping>();
+	private final SyncManager m_syncManager = new SyncManager(RrdNioBackendFactory.DEFAULT_SYNC_PERIOD);
+
+	/**
+	 * Creates RrdSharedNioBackend object for the given file path.
+	 *
+	 * @param path	 File path
+	 * @param readOnly True, if the file should be accessed in read/only mode.
+	 *                 False otherwise.
+	 * @return RrdSharedNioBackend object which handles all I/O operations for the given file path
+	 * @throws IOException Thrown in case of I/O error.
+	 */
+	protected RrdBackend open(final String path, final boolean readOnly) throws IOException {
+		final String canonicalPath = Util.getCanonicalPath(path);
+		synchronized (m_mappings) {
+			Mapping mapping = m_mappings.get(canonicalPath);
+			if (mapping == null) {
+				mapping = new Mapping(canonicalPath, readOnly);
+				m_mappings.put(canonicalPath, mapping);
+				// read-only mappings are never dirty, they are registered in case they are opened for writing
+				m_syncManager.add(mapping);
+			}
+			else if (!readOnly) {
+				mapping.openForWriting();
+			}
+			mapping.m_refCount++;
+			return new RrdSharedNioBackend(path, readOnly, this, mapping);
+		}
+	}
+
+	void release(final Mapping mapping) throws IOException {
+		synchronized (m_mappings) {
+			if (--mapping.m_refCount == 0) {
+				m_mappings.remove(mapping.m_canonicalPath);
+				m_syncManager.remove(mapping);
+				mapping.close();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of files currently mapped by this factory.
+	 *
+	 * @return Number of mapped files
+	 */
+	public int getMappedFileCount() {
+		synchronized (m_mappings) {
+			return m_mappings.size();
+		}
+	}
+
+	/**
+	 * Returns the sync manager which periodically forces written files to the disk.
+	 *
+	 * @return Sync manager of this factory
+	 */
+	public SyncManager getSyncManager() {
+		return m_syncManager;
+	}
+
+	/**
+	 * Returns the name of this factory.
+	 *
+	 * @return Factory name (equals to string "SNIO")
+	 */
+	public String getFactoryName() {
+		return NAME;
+	}
+
+	/**
+	 * Memory mapping of a single file, shared by all backends open on it.
+	 */
+	static final class Mapping {
+		private final String m_canonicalPath;
+		// guarded by the m_mappings lock of the factory
+		private int m_refCount = 0;
+		private RandomAccessFile m_file;
+		private boolean m_readOnly;
+		// replaced when the file is remapped; previous buffers stay valid until garbage collected
+		private volatile MappedByteBuffer m_buffer;
+		// set by writes, cleared by the sync manager
+		private volatile boolean m_dirty = false;
+
+		Mapping(final String canonicalPath, final boolean readOnly) throws IOException {
+			m_canonicalPath = canonicalPath;
+			m_readOnly = readOnly;
+			m_file = new RandomAccessFile(canonicalPath, readOnly ? "r" : "rw");
+			try {
+				map();
+			}
+			catch (final IOException e) {
+				m_file.close();
+				throw e;
+			}
+		}
+
+		private void map() throws IOException {
+			final long length = m_file.length();
+			if (length > 0) {
+				final FileChannel.MapMode mapMode = m_readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+				m_buffer = m_file.getChannel().map(mapMode, 0, length);
+			}
+			else {
+				m_buffer = null;
+			}
+		}
+
+		synchronized void openForWriting() throws IOException {
+			if (m_readOnly) {
+				final RandomAccessFile file = new RandomAccessFile(m_canonicalPath, "rw");
+				m_file.close();
+				m_file = file;
+				m_readOnly = false;
+				map();
+			}
+		}
+
+		synchronized void setLength(final long length) throws IOException {
+			m_file.setLength(length);
+			map();
+		}
+
+		MappedByteBuffer getBuffer() {
+			return m_buffer;
+		}
+
+		void markDirty() {
+			if (!m_dirty) {
+				m_dirty = true;
+			}
+		}
+
+		boolean clearDirty() {
+			if (m_dirty) {
+				m_dirty = false;
+				return true;
+			}
+			return false;
+		}
+
+		synchronized void sync() {
+			if (!m_readOnly && m_buffer != null) {
+				m_buffer.force();
+			}
+		}
+
+		synchronized void close() throws IOException {
+			try {
+				sync();
+				if (m_buffer instanceof DirectBuffer) {
+					((DirectBuffer) m_buffer).cleaner().clean();
+				}
+				m_buffer = null;
+			}
+			finally {
+				m_file.close();
+			}
+		}
+	}
+}
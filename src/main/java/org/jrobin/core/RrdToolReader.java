@@ -23,6 +23,8 @@ import java.io.IOException;
 import org.jrobin.core.jrrd.RRDatabase;
 
 class RrdToolReader extends DataImporter {
+	private static final int BLOCK_ROWS = 1024;
+
 	private RRDatabase rrd;
 
 	RrdToolReader(String rrdPath) throws IOException,RrdException {
@@ -110,6 +112,20 @@ class RrdToolReader extends DataImporter {
 		return rrd.getArchive(arcIndex).getValues()[dsIndex];
 	}
 
+	// copies rows in blocks from the mapped file, the archive is never loaded as a whole
+	void importValues(int arcIndex, Robin[] robins) throws RrdException, IOException {
+		org.jrobin.core.jrrd.Archive archive = rrd.getArchive(arcIndex);
+		int rows = archive.getRowCount();
+		double[][] block = new double[robins.length][Math.min(BLOCK_ROWS, rows)];
+		for (int index = 0; index < rows; index += BLOCK_ROWS) {
+			int count = Math.min(BLOCK_ROWS, rows - index);
+			archive.getValues(index, block, count);
+			for (int i = 0; i < robins.length; i++) {
+				robins[i].update(index, block[i], 0, count);
+			}
+		}
+	}
+
 	void release() throws IOException {
 		if (rrd != null) {
 			rrd.close();
@@ -0,0 +1,392 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.core;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming importer of RRDTool/JRobin XML dumps. The dump is read twice: the first pass
+ * keeps header, datasource and archive state values and counts archive rows, the second
+ * pass writes row values directly into the robins of each archive, one block of rows at
+ * a time. The document is never held in memory.
+ */
+class StaxXmlReader extends DataImporter {
+	private static final int BLOCK_ROWS = 1024;
+
+	private final String m_xmlFilePath;
+	private final XMLInputFactory m_factory;
+	private final Map<String, String> m_header = new HashMap<String, String>();
+	private final List<Map<String, String>> m_datasources = new ArrayList<Map<String, String>>();
+	private final List<ArchiveInfo> m_archives = new ArrayList<ArchiveInfo>();
+
+	// stream of the second pass, positioned after the archive preceding m_nextArcIndex
+	private InputStream m_valueInput;
+	private XMLStreamReader m_valueReader;
+	private int m_nextArcIndex;
+
+	StaxXmlReader(final String xmlFilePath) throws IOException, RrdException {
+		m_xmlFilePath = xmlFilePath;
+		m_factory = XMLInputFactory.newInstance();
+		m_factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		m_factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		m_factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		final InputStream input = new BufferedInputStream(new FileInputStream(xmlFilePath));
+		try {
+			final XMLStreamReader xml = openRoot(input);
+			while (nextChild(xml)) {
+				final String name = xml.getLocalName();
+				if (name.equals("ds")) {
+					m_datasources.add(readValues(xml));
+				}
+				else if (name.equals("rra")) {
+					m_archives.add(readArchive(xml));
+				}
+				else {
+					m_header.put(name, readText(xml));
+				}
+			}
+			xml.close();
+		}
+		catch (final XMLStreamException e) {
+			throw new RrdException(e);
+		}
+		finally {
+			input.close();
+		}
+	}
+
+	private XMLStreamReader openRoot(final InputStream input) throws XMLStreamException, RrdException {
+		final XMLStreamReader xml = m_factory.createXMLStreamReader(input);
+		while (xml.hasNext()) {
+			if (xml.next() == XMLStreamConstants.START_ELEMENT) {
+				return xml;
+			}
+		}
+		throw new RrdException("XML Error, no root element in " + m_xmlFilePath);
+	}
+
+	// moves to the next child element, returns false at the end of the current element
+	private static boolean nextChild(final XMLStreamReader xml) throws XMLStreamException {
+		while (xml.hasNext()) {
+			switch (xml.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					return true;
+				case XMLStreamConstants.END_ELEMENT:
+				case XMLStreamConstants.END_DOCUMENT:
+					return false;
+			}
+		}
+		return false;
+	}
+
+	// returns the trimmed text of the current element, skipping nested elements
+	private static String readText(final XMLStreamReader xml) throws XMLStreamException {
+		final StringBuilder text = new StringBuilder();
+		int depth = 1;
+		while (depth > 0) {
+			switch (xml.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					depth++;
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					depth--;
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+					if (depth == 1) {
+						text.append(xml.getText());
+					}
+					break;
+			}
+		}
+		return text.toString().trim();
+	}
+
+	private static void skip(final XMLStreamReader xml) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			switch (xml.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					depth++;
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					depth--;
+					break;
+			}
+		}
+	}
+
+	private static Map<String, String> readValues(final XMLStreamReader xml) throws XMLStreamException {
+		final Map<String, String> values = new HashMap<String, String>();
+		while (nextChild(xml)) {
+			values.put(xml.getLocalName(), readText(xml));
+		}
+		return values;
+	}
+
+	private static ArchiveInfo readArchive(final XMLStreamReader xml) throws XMLStreamException {
+		final ArchiveInfo archive = new ArchiveInfo();
+		while (nextChild(xml)) {
+			final String name = xml.getLocalName();
+			if (name.equals("cdp_prep")) {
+				while (nextChild(xml)) {
+					if (xml.getLocalName().equals("ds")) {
+						archive.states.add(readValues(xml));
+					}
+					else {
+						skip(xml);
+					}
+				}
+			}
+			else if (name.equals("database")) {
+				while (nextChild(xml)) {
+					if (xml.getLocalName().equals("row")) {
+						archive.rows++;
+					}
+					skip(xml);
+				}
+			}
+			else if (name.equals("params")) {
+				archive.values.putAll(readValues(xml));
+			}
+			else {
+				archive.values.put(name, readText(xml));
+			}
+		}
+		return archive;
+	}
+
+	private static String getValue(final Map<String, String> values, final String name) throws RrdException {
+		final String value = values.get(name);
+		if (value == null) {
+			throw new RrdException("XML Error, no such child: " + name);
+		}
+		return value;
+	}
+
+	String getVersion() throws RrdException {
+		return getValue(m_header, "version");
+	}
+
+	long getLastUpdateTime() throws RrdException {
+		return Long.parseLong(getValue(m_header, "lastupdate"));
+	}
+
+	long getStep() throws RrdException {
+		return Long.parseLong(getValue(m_header, "step"));
+	}
+
+	int getDsCount() {
+		return m_datasources.size();
+	}
+
+	int getArcCount() {
+		return m_archives.size();
+	}
+
+	String getDsName(final int dsIndex) throws RrdException {
+		return getValue(m_datasources.get(dsIndex), "name");
+	}
+
+	String getDsType(final int dsIndex) throws RrdException {
+		return getValue(m_datasources.get(dsIndex), "type");
+	}
+
+	long getHeartbeat(final int dsIndex) throws RrdException {
+		return Long.parseLong(getValue(m_datasources.get(dsIndex), "minimal_heartbeat"));
+	}
+
+	double getMinValue(final int dsIndex) throws RrdException {
+		return Util.parseDouble(getValue(m_datasources.get(dsIndex), "min"));
+	}
+
+	double getMaxValue(final int dsIndex) throws RrdException {
+		return Util.parseDouble(getValue(m_datasources.get(dsIndex), "max"));
+	}
+
+	double getLastValue(final int dsIndex) throws RrdException {
+		return Util.parseDouble(getValue(m_datasources.get(dsIndex), "last_ds"));
+	}
+
+	double getAccumValue(final int dsIndex) throws RrdException {
+		return Util.parseDouble(getValue(m_datasources.get(dsIndex), "value"));
+	}
+
+	long getNanSeconds(final int dsIndex) throws RrdException {
+		return Long.parseLong(getValue(m_datasources.get(dsIndex), "unknown_sec"));
+	}
+
+	String getConsolFun(final int arcIndex) throws RrdException {
+		return getValue(m_archives.get(arcIndex).values, "cf");
+	}
+
+	double getXff(final int arcIndex) throws RrdException {
+		return Util.parseDouble(getValue(m_archives.get(arcIndex).values, "xff"));
+	}
+
+	int getSteps(final int arcIndex) throws RrdException {
+		return Integer.parseInt(getValue(m_archives.get(arcIndex).values, "pdp_per_row"));
+	}
+
+	double getStateAccumValue(final int arcIndex, final int dsIndex) throws RrdException {
+		return Util.parseDouble(getValue(getState(arcIndex, dsIndex), "value"));
+	}
+
+	int getStateNanSteps(final int arcIndex, final int dsIndex) throws RrdException {
+		return Integer.parseInt(getValue(getState(arcIndex, dsIndex), "unknown_datapoints"));
+	}
+
+	private Map<String, String> getState(final int arcIndex, final int dsIndex) throws RrdException {
+		final List<Map<String, String>> states = m_archives.get(arcIndex).states;
+		if (dsIndex >= states.size()) {
+			throw new RrdException("XML Error, no state for datasource " + dsIndex + " in archive " + arcIndex);
+		}
+		return states.get(dsIndex);
+	}
+
+	int getRows(final int arcIndex) {
+		return m_archives.get(arcIndex).rows;
+	}
+
+	double[] getValues(final int arcIndex, final int dsIndex) throws RrdException, IOException {
+		final double[][] values = new double[getDsCount()][getRows(arcIndex)];
+		readRows(arcIndex, values, null);
+		return values[dsIndex];
+	}
+
+	void importValues(final int arcIndex, final Robin[] robins) throws RrdException, IOException {
+		final double[][] block = new double[robins.length][Math.min(BLOCK_ROWS, getRows(arcIndex))];
+		readRows(arcIndex, block, robins);
+	}
+
+	// reads rows of the archive into the block, flushing it to robins when full if robins are given
+	private void readRows(final int arcIndex, final double[][] block, final Robin[] robins) throws RrdException, IOException {
+		boolean done = false;
+		try {
+			final XMLStreamReader xml = seekArchive(arcIndex);
+			final int rows = getRows(arcIndex);
+			int rowIndex = 0;
+			int blockIndex = 0;
+			while (nextChild(xml)) {
+				if (!xml.getLocalName().equals("database")) {
+					skip(xml);
+					continue;
+				}
+				while (nextChild(xml)) {
+					if (!xml.getLocalName().equals("row")) {
+						skip(xml);
+						continue;
+					}
+					if (rowIndex >= rows) {
+						throw new RrdException("XML Error, file " + m_xmlFilePath + " changed while importing archive " + arcIndex);
+					}
+					int dsIndex = 0;
+					while (nextChild(xml)) {
+						final String text = readText(xml);
+						if (dsIndex < block.length && xml.getLocalName().equals("v")) {
+							block[dsIndex++][blockIndex] = Util.parseDouble(text);
+						}
+					}
+					if (dsIndex < block.length) {
+						throw new RrdException("XML Error, expected " + block.length + " values in row " + rowIndex +
+								" of archive " + arcIndex + ", found " + dsIndex);
+					}
+					rowIndex++;
+					if (++blockIndex == block[0].length && robins != null) {
+						flush(robins, block, rowIndex - blockIndex, blockIndex);
+						blockIndex = 0;
+					}
+				}
+			}
+			if (robins != null && blockIndex > 0) {
+				flush(robins, block, rowIndex - blockIndex, blockIndex);
+			}
+			if (rowIndex != rows) {
+				throw new RrdException("XML Error, file " + m_xmlFilePath + " changed while importing archive " + arcIndex);
+			}
+			done = true;
+		}
+		catch (final XMLStreamException e) {
+			throw new RrdException(e);
+		}
+		finally {
+			if (!done) {
+				closeValueReader();
+			}
+		}
+	}
+
+	private static void flush(final Robin[] robins, final double[][] block, final int index, final int count) throws IOException {
+		for (int i = 0; i < robins.length; i++) {
+			robins[i].update(index, block[i], 0, count);
+		}
+	}
+
+	// positions the second pass stream at the start of the given archive
+	private XMLStreamReader seekArchive(final int arcIndex) throws XMLStreamException, RrdException, IOException {
+		if (m_valueReader == null || m_nextArcIndex > arcIndex) {
+			closeValueReader();
+			m_valueInput = new BufferedInputStream(new FileInputStream(m_xmlFilePath));
+			m_valueReader = openRoot(m_valueInput);
+			m_nextArcIndex = 0;
+		}
+		while (nextChild(m_valueReader)) {
+			if (m_valueReader.getLocalName().equals("rra") && m_nextArcIndex++ == arcIndex) {
+				return m_valueReader;
+			}
+			skip(m_valueReader);
+		}
+		throw new RrdException("XML Error, no archive " + arcIndex + " in " + m_xmlFilePath);
+	}
+
+	private void closeValueReader() throws IOException {
+		if (m_valueInput != null) {
+			try {
+				m_valueReader.close();
+			}
+			catch (final XMLStreamException e) {
+				// the input stream is closed below
+			}
+			m_valueInput.close();
+			m_valueInput = null;
+			m_valueReader = null;
+		}
+	}
+
+	void release() throws IOException {
+		closeValueReader();
+	}
+
+	private static final class ArchiveInfo {
+		final Map<String, String> values = new HashMap<String, String>();
+		final List<Map<String, String>> states = new ArrayList<Map<String, String>>();
+		int rows = 0;
+	}
+}
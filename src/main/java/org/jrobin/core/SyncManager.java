@@ -1,18 +1,41 @@
 package org.jrobin.core;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Timer;
-import java.util.TimerTask;
-
 
+/**
+ * Synchronizes memory mapped RRD files to the disk in the background. Files are spread
+ * over a number of slots, and a single timer task syncs one slot at a time, so that all files
+ * get synced once per sync period without syncing them all at the same moment. Only files
+ * written since their last sync are synced.
+ */
 public final class SyncManager {
+    static final int SLOT_COUNT = 60;
+
     private int m_syncPeriod = RrdNioBackendFactory.DEFAULT_SYNC_PERIOD;
     private Timer m_timer = null;
-    private Map<RrdNioBackend,TimerTask> m_tasks = new HashMap<RrdNioBackend,TimerTask>();
+    private SyncTimerTask m_task = null;
+    // guarded by m_entries
+    private final Map<Object, Entry> m_entries = new HashMap<Object, Entry>();
+    private final List<List<Entry>> m_slots = new ArrayList<List<Entry>>(SLOT_COUNT);
+    private int m_nextSlot = 0;
+    private int m_currentSlot = 0;
+
+    // statistics, guarded by this
+    private long m_syncCount = 0;
+    private long m_syncTime = 0;
+    private long m_maxSyncTime = 0;
+    private int m_dirtyCount = 0;
+    private int m_lastDirtyCount = 0;
 
     public SyncManager(final int syncPeriod) {
         m_syncPeriod = syncPeriod;
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            m_slots.add(new ArrayList<Entry>());
+        }
     }
 
     public int getSyncPeriod() {
@@ -20,32 +43,68 @@ public final class SyncManager {
     }
 
     public void setSyncPeriod(final int syncPeriod) {
-        m_syncPeriod = syncPeriod;
-        synchronized(m_tasks) {
-            final Timer oldTimer = m_timer;
-            m_timer = new SyncTimer();
-            for (final RrdNioBackend backend : m_tasks.keySet()) {
-                m_tasks.get(backend).cancel();
-                scheduleTask(backend);
+        synchronized(m_entries) {
+            m_syncPeriod = syncPeriod;
+            if (m_timer != null) {
+                cancelTimer(m_timer);
+                startTimer();
             }
-            cancelTimer(oldTimer);
         }
     }
 
     public void add(final RrdNioBackend rrdNioBackend) {
-        synchronized(m_tasks) {
-            if (m_tasks.size() == 0) {
-                m_timer = new SyncTimer();
+        add(rrdNioBackend, new Entry() {
+            boolean clearDirty() {
+                return rrdNioBackend.clearDirty();
             }
-            scheduleTask(rrdNioBackend);
-        }
+            void sync() {
+                rrdNioBackend.sync();
+            }
+        });
     }
 
     public void remove(final RrdNioBackend rrdNioBackend) {
-        synchronized (m_tasks) {
-            final TimerTask oldTask = m_tasks.remove(rrdNioBackend);
-            if (oldTask != null) oldTask.cancel();
-            if (m_tasks.size() == 0) {
+        removeEntry(rrdNioBackend);
+    }
+
+    void add(final RrdSharedNioBackendFactory.Mapping mapping) {
+        add(mapping, new Entry() {
+            boolean clearDirty() {
+                return mapping.clearDirty();
+            }
+            void sync() {
+                mapping.sync();
+            }
+        });
+    }
+
+    void remove(final RrdSharedNioBackendFactory.Mapping mapping) {
+        removeEntry(mapping);
+    }
+
+    private void add(final Object key, final Entry entry) {
+        synchronized(m_entries) {
+            if (m_entries.containsKey(key)) {
+                return;
+            }
+            if (m_timer == null) {
+                startTimer();
+            }
+            // round robin keeps the slots evenly filled
+            entry.slot = m_nextSlot;
+            m_nextSlot = (m_nextSlot + 1) % SLOT_COUNT;
+            m_slots.get(entry.slot).add(entry);
+            m_entries.put(key, entry);
+        }
+    }
+
+    private void removeEntry(final Object key) {
+        synchronized (m_entries) {
+            final Entry entry = m_entries.remove(key);
+            if (entry != null) {
+                m_slots.get(entry.slot).remove(entry);
+            }
+            if (m_entries.size() == 0 && m_timer != null) {
                 cancelTimer(m_timer);
                 m_timer = null;
             }
@@ -53,29 +112,119 @@ public final class SyncManager {
     }
 
     public void shutdown() {
-        synchronized(m_tasks) {
-            for (final Map.Entry<RrdNioBackend, TimerTask> entry : m_tasks.entrySet()) {
-                entry.getValue().cancel();
+        synchronized(m_entries) {
+            if (m_timer != null) {
+                cancelTimer(m_timer);
+                m_timer = null;
             }
-            cancelTimer(m_timer);
         }
     }
 
+    private void startTimer() {
+        m_timer = new SyncTimer();
+        m_task = new SyncTimerTask(this);
+        final long interval = Math.max(getSyncPeriod() * 1000L / SLOT_COUNT, 1L);
+        m_timer.schedule(m_task, interval, interval);
+    }
+
     private void cancelTimer(final Timer timer) {
         timer.cancel();
         timer.purge();
     }
 
-    private void scheduleTask(final RrdNioBackend rrdNioBackend) {
-        final TimerTask task = new SyncTimerTask(rrdNioBackend);
-        if (m_tasks.containsKey(rrdNioBackend)) {
-            m_tasks.get(rrdNioBackend).cancel();
+    /**
+     * Syncs dirty files of the next slot. Called by the timer task.
+     */
+    void syncNextSlot() {
+        final Entry[] entries;
+        final boolean lastSlot;
+        synchronized(m_entries) {
+            final List<Entry> slot = m_slots.get(m_currentSlot);
+            entries = slot.toArray(new Entry[slot.size()]);
+            lastSlot = m_currentSlot == SLOT_COUNT - 1;
+            m_currentSlot = (m_currentSlot + 1) % SLOT_COUNT;
+        }
+        int dirtyCount = 0;
+        for (final Entry entry : entries) {
+            // cleared before syncing, so that writes made during the sync are synced next time
+            if (entry.clearDirty()) {
+                dirtyCount++;
+                final long start = System.nanoTime();
+                entry.sync();
+                recordSync(System.nanoTime() - start);
+            }
+        }
+        synchronized(this) {
+            m_dirtyCount += dirtyCount;
+            if (lastSlot) {
+                m_lastDirtyCount = m_dirtyCount;
+                m_dirtyCount = 0;
+            }
+        }
+    }
+
+    private synchronized void recordSync(final long nanos) {
+        m_syncCount++;
+        m_syncTime += nanos;
+        m_maxSyncTime = Math.max(m_maxSyncTime, nanos);
+    }
+
+    /**
+     * Returns the number of files registered for background synchronization.
+     *
+     * @return Number of files
+     */
+    public int getFileCount() {
+        synchronized(m_entries) {
+            return m_entries.size();
         }
-        m_tasks.put(rrdNioBackend, task);
-        m_timer.schedule(task, getSyncPeriod() * 1000L, getSyncPeriod() * 1000L);
+    }
+
+    /**
+     * Returns the number of files which had to be synced during the last complete sync period.
+     *
+     * @return Number of dirty files
+     */
+    public synchronized int getDirtyFileCount() {
+        return m_lastDirtyCount;
+    }
+
+    /**
+     * Returns the number of background file synchronizations performed so far.
+     *
+     * @return Number of syncs
+     */
+    public synchronized long getSyncCount() {
+        return m_syncCount;
+    }
+
+    /**
+     * Returns the average time needed to sync a single file.
+     *
+     * @return Average sync time in milliseconds, or 0 if nothing was synced yet
+     */
+    public synchronized double getAverageSyncTime() {
+        return m_syncCount == 0 ? 0 : m_syncTime / 1000000.0 / m_syncCount;
+    }
+
+    /**
+     * Returns the longest time needed to sync a single file.
+     *
+     * @return Maximum sync time in milliseconds
+     */
+    public synchronized double getMaxSyncTime() {
+        return m_maxSyncTime / 1000000.0;
     }
 
     Timer getTimer() {
         return m_timer;
     }
-}
\ No newline at end of file
+
+    private static abstract class Entry {
+        int slot;
+
+        abstract boolean clearDirty();
+
+        abstract void sync();
+    }
+}
@@ -3,13 +3,13 @@ package org.jrobin.core;
 import java.util.TimerTask;
 
 public final class SyncTimerTask extends TimerTask {
-    private final RrdNioBackend m_rrdNioBackend;
+    private final SyncManager m_syncManager;
 
-    SyncTimerTask(final RrdNioBackend rrdNioBackend) {
-        m_rrdNioBackend = rrdNioBackend;
+    SyncTimerTask(final SyncManager syncManager) {
+        m_syncManager = syncManager;
     }
 
     @Override public void run() {
-        m_rrdNioBackend.sync();
+        m_syncManager.syncNextSlot();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.core;
+
+import java.awt.Paint;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Immutable XML element of a {@link CompiledXmlTemplate}. The (trimmed) text value of the element
+ * is split into literal parts and variable slots once, so that resolving it for a set of
+ * {@link TemplateVariables} only concatenates strings.
+ */
+public final class TemplateNode {
+	private final String m_name;
+	private final List<TemplateNode> m_children;
+	// names of all child nodes which are not comments or blank text, in document order
+	private final String[] m_childNames;
+	// value is literals[0] + variable(slots[0]) + literals[1] + ..., null if the element has no value
+	private final String[] m_literals;
+	private final int[] m_slots;
+	private volatile boolean m_validated = false;
+
+	TemplateNode(final Node node, final Map<String, Integer> slots) {
+		m_name = node.getNodeName();
+		final List<TemplateNode> children = new ArrayList<TemplateNode>();
+		final List<String> childNames = new ArrayList<String>();
+		final NodeList nodeList = node.getChildNodes();
+		for (int i = 0; i < nodeList.getLength(); i++) {
+			final Node child = nodeList.item(i);
+			if (child.getNodeType() == Node.ELEMENT_NODE) {
+				children.add(new TemplateNode(child, slots));
+			}
+			if (!isEmptyNode(child)) {
+				childNames.add(child.getNodeName());
+			}
+		}
+		m_children = Collections.unmodifiableList(children);
+		m_childNames = childNames.toArray(new String[childNames.size()]);
+
+		final Node firstChild = node.getFirstChild();
+		final String value = firstChild == null ? null : firstChild.getNodeValue();
+		if (value == null) {
+			m_literals = null;
+			m_slots = null;
+			return;
+		}
+		final String trimmed = value.trim();
+		final List<String> literals = new ArrayList<String>();
+		final List<Integer> slotList = new ArrayList<Integer>();
+		final Matcher matcher = XmlTemplate.PATTERN.matcher(trimmed);
+		int lastMatchEnd = 0;
+		while (matcher.find()) {
+			final String var = matcher.group(1);
+			Integer slot = slots.get(var);
+			if (slot == null) {
+				slot = slots.size();
+				slots.put(var, slot);
+			}
+			literals.add(trimmed.substring(lastMatchEnd, matcher.start()));
+			slotList.add(slot);
+			lastMatchEnd = matcher.end();
+		}
+		literals.add(trimmed.substring(lastMatchEnd));
+		m_literals = literals.toArray(new String[literals.size()]);
+		m_slots = new int[slotList.size()];
+		for (int i = 0; i < m_slots.length; i++) {
+			m_slots[i] = slotList.get(i);
+		}
+	}
+
+	private static boolean isEmptyNode(final Node node) {
+		// comment node or empty text node
+		return node.getNodeName().equals("#comment") ||
+				(node.getNodeName().equals("#text") && node.getNodeValue().trim().length() == 0);
+	}
+
+	/**
+	 * Returns the tag name of this element.
+	 *
+	 * @return Tag name
+	 */
+	public String getName() {
+		return m_name;
+	}
+
+	/**
+	 * Returns the child elements of this element.
+	 *
+	 * @return Unmodifiable list of child elements, in document order
+	 */
+	public List<TemplateNode> getChildNodes() {
+		return m_children;
+	}
+
+	/**
+	 * Returns the first child element with the given name.
+	 *
+	 * @param childName Tag name
+	 * @return Child element, or null if there is no such child
+	 */
+	public TemplateNode getChildNode(final String childName) {
+		for (final TemplateNode child : m_children) {
+			if (child.m_name.equals(childName)) {
+				return child;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the trimmed value of this element, with all variables replaced.
+	 *
+	 * @param variables Variable values
+	 * @return Element value, or null if the element has no value
+	 * @throws IllegalArgumentException Thrown if the value of a variable was not supplied
+	 */
+	public String getValue(final TemplateVariables variables) {
+		if (m_literals == null) {
+			return null;
+		}
+		if (m_slots.length == 0) {
+			return m_literals[0];
+		}
+		final StringBuilder result = new StringBuilder();
+		for (int i = 0; i < m_slots.length; i++) {
+			result.append(m_literals[i]).append(variables.getValue(m_slots[i]));
+		}
+		return result.append(m_literals[m_slots.length]).toString();
+	}
+
+	/**
+	 * Returns the value of the first child element with the given name.
+	 *
+	 * @param childName Tag name
+	 * @param variables Variable values
+	 * @return Child element value
+	 * @throws RrdException Thrown if there is no such child
+	 */
+	public String getChildValue(final String childName, final TemplateVariables variables) throws RrdException {
+		final TemplateNode child = getChildNode(childName);
+		if (child == null) {
+			throw new RrdException("XML Error, no such child: " + childName);
+		}
+		return child.getValue(variables);
+	}
+
+	public int getValueAsInt(final TemplateVariables variables) {
+		return Integer.parseInt(getValue(variables));
+	}
+
+	public long getValueAsLong(final TemplateVariables variables) {
+		return Long.parseLong(getValue(variables));
+	}
+
+	public double getValueAsDouble(final TemplateVariables variables) {
+		return Util.parseDouble(getValue(variables));
+	}
+
+	public boolean getValueAsBoolean(final TemplateVariables variables) {
+		return Util.parseBoolean(getValue(variables));
+	}
+
+	public Paint getValueAsColor(final TemplateVariables variables) throws RrdException {
+		return Util.parseColor(getValue(variables));
+	}
+
+	/**
+	 * Checks that this element has no other children than the allowed ones. A name ending with
+	 * '*' may be used several times, other names only once. The check is done only once.
+	 *
+	 * @param allowedChildNames Allowed tag names, not modified
+	 * @throws RrdException Thrown if an unexpected child is found
+	 */
+	public void validateTagsOnlyOnce(final String[] allowedChildNames) throws RrdException {
+		if (m_validated) {
+			return;
+		}
+		final String[] allowed = allowedChildNames.clone();
+		main:
+		for (final String childName : m_childNames) {
+			for (int j = 0; j < allowed.length; j++) {
+				if (allowed[j].equals(childName)) {
+					// only one such tag is allowed
+					allowed[j] = "<--removed-->";
+					continue main;
+				}
+				else if (allowed[j].equals(childName + "*")) {
+					// several tags allowed
+					continue main;
+				}
+			}
+			throw new RrdException("Unexpected tag encountered: <" + childName + ">");
+		}
+		// everything is OK, several threads may get here for the same element
+		m_validated = true;
+	}
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.core;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Variable values for a {@link CompiledXmlTemplate}, created with
+ * {@link CompiledXmlTemplate#createVariables()}. Values are converted to text when they are set,
+ * exactly like with {@link XmlTemplate#setVariable(String, String) XmlTemplate.setVariable()}.
+ * Variables which do not appear in the template are ignored.<p>
+ * <p/>
+ * Objects of this class are cheap to create and may be reused with {@link #clearValues()}, but
+ * they must not be shared between threads while being modified.
+ */
+public class TemplateVariables {
+	private final Map<String, Integer> m_slots;
+	private final String[] m_names;
+	private final String[] m_values;
+
+	TemplateVariables(final Map<String, Integer> slots, final String[] names) {
+		m_slots = slots;
+		m_names = names;
+		m_values = new String[names.length];
+	}
+
+	boolean isCreatedBy(final Map<String, Integer> slots) {
+		return m_slots == slots;
+	}
+
+	/**
+	 * Removes all variable values.
+	 */
+	public void clearValues() {
+		Arrays.fill(m_values, null);
+	}
+
+	void setValue(final String name, final String value) {
+		final Integer slot = m_slots.get(name);
+		if (slot != null) {
+			m_values[slot] = value;
+		}
+	}
+
+	String getValue(final int slot) {
+		final String value = m_values[slot];
+		if (value == null) {
+			throw new IllegalArgumentException("No mapping found for template variable ${" + m_names[slot] + "}");
+		}
+		return value;
+	}
+
+	/**
+	 * Sets value for a single template variable. Variable name should be specified
+	 * without leading '${' and ending '}' placeholder markers.
+	 *
+	 * @param name  variable name
+	 * @param value value to be set in the template
+	 */
+	public void setVariable(final String name, final String value) {
+		setValue(name, value);
+	}
+
+	/**
+	 * Sets value for a single template variable.
+	 *
+	 * @param name  variable name
+	 * @param value value to be set in the template
+	 */
+	public void setVariable(final String name, final int value) {
+		setValue(name, Integer.toString(value));
+	}
+
+	/**
+	 * Sets value for a single template variable.
+	 *
+	 * @param name  variable name
+	 * @param value value to be set in the template
+	 */
+	public void setVariable(final String name, final long value) {
+		setValue(name, Long.toString(value));
+	}
+
+	/**
+	 * Sets value for a single template variable.
+	 *
+	 * @param name  variable name
+	 * @param value value to be set in the template
+	 */
+	public void setVariable(final String name, final double value) {
+		setValue(name, Double.toString(value));
+	}
+
+	/**
+	 * Sets value for a single template variable.
+	 *
+	 * @param name  variable name
+	 * @param value value to be set in the template
+	 */
+	public void setVariable(final String name, final Color value) {
+		setValue(name, XmlTemplate.formatColor(value));
+	}
+
+	/**
+	 * Sets value for a single template variable.
+	 *
+	 * @param name  variable name
+	 * @param value value to be set in the template
+	 */
+	public void setVariable(final String name, final Date value) {
+		setVariable(name, Util.getTimestamp(value));
+	}
+
+	/**
+	 * Sets value for a single template variable.
+	 *
+	 * @param name  variable name
+	 * @param value value to be set in the template
+	 */
+	public void setVariable(final String name, final Calendar value) {
+		setVariable(name, Util.getTimestamp(value));
+	}
+
+	/**
+	 * Sets value for a single template variable.
+	 *
+	 * @param name  variable name
+	 * @param value value to be set in the template
+	 */
+	public void setVariable(final String name, final boolean value) {
+		setValue(name, Boolean.toString(value));
+	}
+}
@@ -60,13 +60,15 @@ public class Util {
 	// directory under $USER_HOME used for demo graphs storing
 	static final String JROBIN_DIR = "jrobin-demo";
 
-	static final DecimalFormat df;
-
-	static {
-		df = (DecimalFormat) NumberFormat.getNumberInstance(Locale.ENGLISH);
-		df.applyPattern(PATTERN);
-		df.setPositivePrefix("+");
-	}
+	// DecimalFormat is not thread safe
+	private static final ThreadLocal<DecimalFormat> df = new ThreadLocal<DecimalFormat>() {
+		protected DecimalFormat initialValue() {
+			final DecimalFormat format = (DecimalFormat) NumberFormat.getNumberInstance(Locale.ENGLISH);
+			format.applyPattern(PATTERN);
+			format.setPositivePrefix("+");
+			return format;
+		}
+	};
 
 	/**
 	 * Converts an array of long primitives to an array of doubles.
@@ -155,7 +157,7 @@ public class Util {
 			return nanString;
 		}
 		if (forceExponents) {
-			return df.format(x);
+			return df.get().format(x);
 		}
 		return "" + x;
 	}
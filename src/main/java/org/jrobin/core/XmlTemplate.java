@@ -40,7 +40,7 @@ import java.util.regex.Pattern;
  */
 public abstract class XmlTemplate {
 	private static final String PATTERN_STRING = "\\$\\{(\\w+)\\}";
-	private static final Pattern PATTERN = Pattern.compile(PATTERN_STRING);
+	static final Pattern PATTERN = Pattern.compile(PATTERN_STRING);
 
 	protected Element root;
 	private HashMap<String, Object> valueMap = new HashMap<String, Object>();
@@ -122,14 +122,18 @@ public abstract class XmlTemplate {
 	 * @param value value to be set in the XML template
 	 */
 	public void setVariable(String name, Color value) {
+		valueMap.put(name, formatColor(value));
+	}
+
+	static String formatColor(Color value) {
 		String r = byteToHex(value.getRed());
 		String g = byteToHex(value.getGreen());
 		String b = byteToHex(value.getBlue());
 		String a = byteToHex(value.getAlpha());
-		valueMap.put(name, "#" + r + g + b + a);
+		return "#" + r + g + b + a;
 	}
 
-	private String byteToHex(int i) {
+	private static String byteToHex(int i) {
 		String s = Integer.toHexString(i);
 		while (s.length() < 2) {
 			s = "0" + s;
@@ -202,6 +206,21 @@ public abstract class XmlTemplate {
 		return list.toArray(new String[list.size()]);
 	}
 
+	/**
+	 * Copies the current placeholder-value mappings into variable values for the given compiled
+	 * form of this template.
+	 *
+	 * @param compiled Compiled template
+	 * @return Variable values
+	 */
+	protected TemplateVariables createVariables(CompiledXmlTemplate compiled) {
+		TemplateVariables variables = compiled.createVariables();
+		for (Map.Entry<String, Object> entry : valueMap.entrySet()) {
+			variables.setValue(entry.getKey(), entry.getValue().toString());
+		}
+		return variables;
+	}
+
 	protected static Node[] getChildNodes(Node parentNode, String childName) {
 		return Util.Xml.getChildNodes(parentNode, childName);
 	}
@@ -20,11 +20,12 @@ package org.jrobin.core.jrrd;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.DoubleBuffer;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
 
@@ -60,6 +61,8 @@ public class Archive {
 		offset = file.getFilePointer();
 		type =
 				ConsolidationFunctionType.get(file.readString(Constants.CF_NAM_SIZE));
+		// row_cnt follows cf_nam[20] at the next word boundary (24 on 64-bit files)
+		file.align();
 		rowCount = file.readInt();
 		pdpCount = file.readInt();
 
@@ -124,68 +127,32 @@ public class Archive {
 		file.skipBytes(8 * rowCount * dsCount);
 	}
 
-	DataChunk loadData(DataChunk chunk) throws IOException,RrdException {
-
-		Calendar end = Calendar.getInstance();
-		Calendar start = (Calendar) end.clone();
-
-		start.add(Calendar.DATE, -1);
-
-		loadData(chunk, start.getTime().getTime() / 1000,
-				end.getTime().getTime() / 1000);
-		return chunk;
-	}
-
-	void loadData(DataChunk chunk, long startTime, long endTime)
-			throws IOException,RrdException {
-
-		long pointer;
-
-		if (chunk.start < 0) {
-			pointer = currentRow + 1;
-		}
-		else {
-			pointer = currentRow + chunk.start + 1;
-		}
-
-		db.rrdFile.ras.seek(dataOffset + (pointer * 8));
-		//cat.debug("Archive Base: " + dataOffset + " Archive Pointer: " + pointer);
-		//cat.debug("Start Offset: " + chunk.start + " End Offset: "
-		//          + (rowCount - chunk.end));
+	void loadData(DataChunk chunk) throws IOException,RrdException {
 
+		int dsCount = chunk.dsCount;
+		DoubleBuffer rows = getRows();
 		double[][] data = chunk.data;
 
-		/*
-		 * This is also terrible - cleanup - CT
-		 */
 		int row = 0;
 		for (int i = chunk.start; i < rowCount - chunk.end; i++, row++) {
-			if (i < 0) {				   // no valid data yet
-				for (int ii = 0; ii < chunk.dsCount; ii++) {
-					data[row][ii] = Double.NaN;
-				}
-			}
-			else if (i >= rowCount) {	// past valid data area
-				for (int ii = 0; ii < chunk.dsCount; ii++) {
-					data[row][ii] = Double.NaN;
-				}
+			if (i < 0 || i >= rowCount) {	// no valid data yet, or past valid data area
+				Arrays.fill(data[row], Double.NaN);
 			}
-			else {					   // inside the valid are but the pointer has to be wrapped
-				if (pointer >= rowCount) {
-					pointer -= rowCount;
-
-					db.rrdFile.ras.seek(dataOffset + (pointer * 8));
-				}
-
-				for (int ii = 0; ii < chunk.dsCount; ii++) {
-					data[row][ii] = db.rrdFile.readDouble();
-				}
+			else {
+				// the oldest row follows the current one, the pointer has to be wrapped
+				int pointer = (int) ((currentRow + 1L + i) % rowCount);
 
-				pointer++;
+				rows.position(pointer * dsCount);
+				rows.get(data[row], 0, dsCount);
 			}
 		}
 	}
 
+	// all rows of this archive, decoded in bulk from the mapped file
+	private DoubleBuffer getRows() throws IOException,RrdException {
+		return db.rrdFile.getDoubles(dataOffset, rowCount * db.header.dsCount);
+	}
+
 	void printInfo(PrintStream s, NumberFormat numberFormat, int index) {
 
 		StringBuffer sb = new StringBuffer("rra[");
@@ -255,8 +222,8 @@ public class Archive {
 			long timer = -(rowCount - 1);
 			int counter = 0;
 			int row = currentRow;
-
-			db.rrdFile.ras.seek(dataOffset + (row + 1) * 16);
+			int dsCount = db.header.dsCount;
+			DoubleBuffer rows = getRows();
 
 			long lastUpdate = db.lastUpdate.getTime() / 1000;
 			int pdpStep = db.header.pdpStep;
@@ -269,8 +236,6 @@ public class Archive {
 
 				if (row == rowCount) {
 					row = 0;
-
-					db.rrdFile.ras.seek(dataOffset);
 				}
 
 				long now = (lastUpdate - lastUpdate % (pdpCount * pdpStep))
@@ -287,7 +252,7 @@ public class Archive {
 				for (int col = 0; col < db.header.dsCount; col++) {
 					s.print("<v> ");
 
-					double value = db.rrdFile.readDouble();
+					double value = rows.get(row * dsCount + col);
 
 					// NumberFormat doesn't know how to handle NaN
 					if (Double.isNaN(value)) {
@@ -342,25 +307,48 @@ public class Archive {
 		if (values != null) {
 			return values;
 		}
-		values = new double[db.header.dsCount][rowCount];
+		int dsCount = db.header.dsCount;
+		DoubleBuffer rows = getRows();
+		double[][] values = new double[dsCount][rowCount];
 		int row = currentRow;
-		// HERE ARE THE DRAGONS!
-		db.rrdFile.ras.seek(dataOffset + (row + 1) * db.header.dsCount * 8);
-		// OK, TOO!
 		for (int counter = 0; counter < rowCount; counter++) {
 			row++;
 			if (row == rowCount) {
 				row = 0;
-				db.rrdFile.ras.seek(dataOffset);
 			}
-			for (int col = 0; col < db.header.dsCount; col++) {
-				double value = db.rrdFile.readDouble();
-				values[col][counter] = value;
+			for (int col = 0; col < dsCount; col++) {
+				values[col][counter] = rows.get(row * dsCount + col);
 			}
 		}
+		this.values = values;
 		return values;
 	}
 
+	/**
+	 * Reads <code>count</code> rows of this archive, starting with the row at the given index
+	 * (0 being the oldest row), straight from the file. Unlike {@link #getValues()}, values are
+	 * not kept in memory, so that large archives can be copied in blocks.
+	 *
+	 * @param index index of the first row, 0 being the oldest row.
+	 * @param values arrays receiving the values, one per data source, filled from index 0.
+	 * @param count number of rows to read.
+	 * @throws IOException if there was a problem reading data from the database.
+	 * @throws RrdException if the file is too short.
+	 */
+	public void getValues(int index, double[][] values, int count) throws IOException,RrdException {
+		int dsCount = db.header.dsCount;
+		DoubleBuffer rows = getRows();
+		int row = (int) ((currentRow + 1L + index) % rowCount);
+		for (int counter = 0; counter < count; counter++) {
+			for (int col = 0; col < dsCount; col++) {
+				values[col][counter] = rows.get(row * dsCount + col);
+			}
+			if (++row == rowCount) {
+				row = 0;
+			}
+		}
+	}
+
 	/**
 	 * Returns the number of primary data points required for a consolidated
 	 * data point in this archive.
@@ -45,6 +45,33 @@ public class DataChunk {
 		data = new double[rows][dsCount];
 	}
 
+	/**
+	 * Returns the timestamp of the first row.
+	 *
+	 * @return the timestamp of the first row, in seconds.
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * Returns the time between two rows.
+	 *
+	 * @return the step, in seconds.
+	 */
+	public long getStep() {
+		return step;
+	}
+
+	/**
+	 * Returns the values of this chunk, one array of data source values per row.
+	 *
+	 * @return the values, indexed by row and data source.
+	 */
+	public double[][] getData() {
+		return data;
+	}
+
 	/**
 	 * Returns a summary of the contents of this data chunk. The first column is
 	 * the time (RRD format) and the following columns are the data source
@@ -18,11 +18,14 @@
  *******************************************************************************/
 package org.jrobin.core.jrrd;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.jrobin.core.RrdException;
 
@@ -44,6 +47,7 @@ public class RRDFile implements Constants {
 	int alignment;
 	RandomAccessFile ras;
 	byte[] buffer;
+	private MappedByteBuffer mappedFile;
 
 	RRDFile(String name) throws IOException, RrdException {
 		this(new File(name));
@@ -116,26 +120,23 @@ public class RRDFile implements Constants {
 			System.out.print("Read 8 bytes (Double) from offset "+ras.getFilePointer()+":");
 		}
 
-		//double value;
-		byte[] tx = new byte[8];
-
 		if(ras.read(buffer, 0, 8) != 8) {
 			throw new RrdException("Invalid RRD file");
 		}
 
+		long bits = 0;
 		if (bigEndian) {
-			tx = buffer;
+			for (int i = 0; i < 8; i++) {
+				bits = (bits << 8) | (0xFF & buffer[i]);
+			}
 		}
 		else {
-			for (int i = 0; i < 8; i++) {
-				tx[7 - i] = buffer[i];
+			for (int i = 7; i >= 0; i--) {
+				bits = (bits << 8) | (0xFF & buffer[i]);
 			}
 		}
 
-		DataInputStream reverseDis =
-				new DataInputStream(new ByteArrayInputStream(tx));
-
-		Double result = reverseDis.readDouble();
+		double result = Double.longBitsToDouble(bits);
 		if(this.debug) {
 			System.out.println(result);
 		}
@@ -239,7 +240,34 @@ public class RRDFile implements Constants {
 		return ras.getFilePointer();
 	}
 
+	/**
+	 * Returns a view of <code>count</code> doubles stored at the given file offset, decoded with the
+	 * byte order of the file. The whole file is memory mapped the first time this method is called,
+	 * so that archive rows can be read in bulk instead of one value at a time. The file pointer
+	 * is not moved.
+	 *
+	 * @param offset file offset of the first double
+	 * @param count number of doubles
+	 * @return doubles, positioned at the first one
+	 * @throws IOException - A file access error
+	 * @throws RrdException - The file is too short
+	 */
+	DoubleBuffer getDoubles(long offset, int count) throws IOException, RrdException {
+		if (mappedFile == null) {
+			mappedFile = ras.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, ras.length());
+		}
+		if (offset < 0 || offset + 8L * count > mappedFile.capacity()) {
+			throw new RrdException("Invalid RRD file");
+		}
+		// duplicate() and slice() reset the byte order, it is set on the slice
+		ByteBuffer bytes = mappedFile.duplicate();
+		bytes.position((int) offset);
+		bytes.limit((int) offset + 8 * count);
+		return bytes.slice().order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+	}
+
 	void close() throws IOException {
+		mappedFile = null;
 		ras.close();
 	}
 }
@@ -262,8 +262,8 @@ public class RRDatabase {
 	}
 
 	/**
-	 * Returns data from the database corresponding to the given consolidation
-	 * function.
+	 * Returns data of the last 24 hours from the database corresponding to the given
+	 * consolidation function.
 	 *
 	 * @param type the consolidation function that should have been applied to
 	 *             the data.
@@ -276,13 +276,6 @@ public class RRDatabase {
 	public DataChunk getData(ConsolidationFunctionType type, long step)
 			throws RrdException, IOException {
 
-		ArrayList<Archive> possibleArchives = getArchiveList(type);
-
-		if (possibleArchives.size() == 0) {
-			throw new RrdException("Database does not contain an Archive of consolidation function type "
-					+ type);
-		}
-
 		Calendar endCal = Calendar.getInstance();
 
 		endCal.set(Calendar.MILLISECOND, 0);
@@ -293,6 +286,40 @@ public class RRDatabase {
 
 		long end = endCal.getTime().getTime() / 1000;
 		long start = startCal.getTime().getTime() / 1000;
+
+		return getData(type, start, end, step);
+	}
+
+	/**
+	 * Returns data between the given timestamps from the database corresponding to the
+	 * given consolidation function. The archive which best covers the period with the
+	 * closest step is used, and the period is extended to whole steps of that archive.
+	 * Rows outside of the archive are returned as NaN.
+	 *
+	 * @param type  the consolidation function that should have been applied to
+	 *              the data.
+	 * @param start start of the period, in seconds
+	 * @param end   end of the period, in seconds
+	 * @param step  the step size to use.
+	 * @return the raw data.
+	 * @throws RrdException if there was a problem locating a data archive with
+	 *                      the requested consolidation function, or if the period is invalid.
+	 * @throws IOException  if there was a problem reading data from the database.
+	 */
+	public DataChunk getData(ConsolidationFunctionType type, long start, long end, long step)
+			throws RrdException, IOException {
+
+		if (start > end) {
+			throw new RrdException("Invalid period: start (" + start + ") is after end (" + end + ")");
+		}
+
+		ArrayList<Archive> possibleArchives = getArchiveList(type);
+
+		if (possibleArchives.size() == 0) {
+			throw new RrdException("Database does not contain an Archive of consolidation function type "
+					+ type);
+		}
+
 		Archive archive = findBestArchive(start, end, step, possibleArchives);
 
 		// Tune the parameters
@@ -305,21 +332,13 @@ public class RRDatabase {
 
 		int rows = (int) ((end - start) / step + 1);
 
-		//cat.debug("start " + start + " end " + end + " step " + step + " rows "
-		//          + rows);
-
 		// Find start and end offsets
-		// This is terrible - some of this should be encapsulated in Archive - CT.
 		long lastUpdateLong = lastUpdate.getTime() / 1000;
 		long archiveEndTime = lastUpdateLong - (lastUpdateLong % step);
 		long archiveStartTime = archiveEndTime - (step * (archive.rowCount - 1));
 		int startOffset = (int) ((start - archiveStartTime) / step);
 		int endOffset = (int) ((archiveEndTime - end) / step);
 
-		//cat.debug("start " + archiveStartTime + " end " + archiveEndTime
-		//          + " startOffset " + startOffset + " endOffset "
-		//          + (archive.rowCount - endOffset));
-
 		DataChunk chunk = new DataChunk(start, startOffset, endOffset, step,
 				header.dsCount, rows);
 
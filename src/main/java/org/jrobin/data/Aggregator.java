@@ -22,16 +22,14 @@ package org.jrobin.data;
 import org.jrobin.core.ConsolFuns;
 import org.jrobin.core.Util;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 class Aggregator implements ConsolFuns {
 	private long timestamps[], step;
 	private double[] values;
 
 	Aggregator(long[] timestamps, double[] values) {
-		assert timestamps.length == values.length: "Incompatible timestamps/values arrays (unequal lengths)";
+		assert timestamps.length <= values.length: "Incompatible timestamps/values arrays (too few values)";
 		assert timestamps.length >= 2: "At least two timestamps must be supplied";
 		this.timestamps = timestamps;
 		this.values = values;
@@ -127,33 +125,99 @@ class Aggregator implements ConsolFuns {
         }
 
 	double getPercentile(long tStart, long tEnd, double percentile, boolean includenan) {
-		List<Double> valueList = new ArrayList<Double>();
-		// create a list of included datasource values (different from NaN)
+		return getPercentiles(tStart, tEnd, new double[] {percentile}, includenan)[0];
+	}
+
+	// selects each percentile in place instead of sorting all values, in a single pass over the
+	// values: once a rank is selected, higher ranks are selected among the values above it
+	double[] getPercentiles(long tStart, long tEnd, double[] percentiles, boolean includenan) {
+		// included datasource values (different from NaN)
+		double[] included = new double[timestamps.length];
+		int count = 0;
 		for (int i = 0; i < timestamps.length; i++) {
 			long left = Math.max(timestamps[i] - step, tStart);
 			long right = Math.min(timestamps[i], tEnd);
 			if (right > left && (!Double.isNaN(values[i]) || includenan)) {
-				valueList.add(values[i]);
+				included[count++] = values[i];
+			}
+		}
+		double[] results = new double[percentiles.length];
+		Arrays.fill(results, Double.NaN);
+		if (count <= 1) {
+			// not enough data available
+			return results;
+		}
+		// ranks in the sorted values, the top (100% - percentile) values being skipped
+		long[] ranks = new long[percentiles.length];
+		for (int i = 0; i < percentiles.length; i++) {
+			double topPercentile = (100.0 - percentiles[i]) / 100.0;
+			int rank = count - (int) Math.ceil(count * topPercentile) - 1;
+			// the percentile index is kept in the low bits, so that ranks are sorted with it
+			ranks[i] = ((long) rank << 32) | i;
+		}
+		Arrays.sort(ranks);
+		int from = 0;
+		for (long rankAndIndex : ranks) {
+			int rank = (int) (rankAndIndex >> 32);
+			if (rank >= 0 && rank < count) {
+				select(included, from, count, rank);
+				results[(int) rankAndIndex] = included[rank];
+				from = rank;
 			}
 		}
-		// create an array to work with
-		int count = valueList.size();
-		if (count > 1) {
-			double[] valuesCopy = new double[count];
-			for (int i = 0; i < count; i++) {
-				valuesCopy[i] = valueList.get(i);
+		return results;
+	}
+
+	// moves the value of the given rank in sorted order (as Arrays.sort() orders doubles) to its
+	// place, with lower values before it and higher values after it, in values[from, to)
+	private static void select(double[] values, int from, int to, int rank) {
+		int lo = from, hi = to - 1;
+		// falls back to sorting after too many unbalanced partitions
+		int budget = 2 * (32 - Integer.numberOfLeadingZeros(to - from));
+		while (hi > lo) {
+			if (budget-- == 0) {
+				Arrays.sort(values, lo, hi + 1);
+				return;
+			}
+			int mid = (lo + hi) >>> 1;
+			// median of three as pivot
+			if (Double.compare(values[mid], values[lo]) < 0) {
+				swap(values, mid, lo);
+			}
+			if (Double.compare(values[hi], values[lo]) < 0) {
+				swap(values, hi, lo);
 			}
-			// sort array
-			Arrays.sort(valuesCopy);
-			// skip top (100% - percentile) values
-			double topPercentile = (100.0 - percentile) / 100.0;
-			count -= (int) Math.ceil(count * topPercentile);
-			// if we have anything left...
-			if (count > 0) {
-				return valuesCopy[count - 1];
+			if (Double.compare(values[hi], values[mid]) < 0) {
+				swap(values, hi, mid);
+			}
+			double pivot = values[mid];
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (Double.compare(values[i], pivot) < 0) {
+					i++;
+				}
+				while (Double.compare(values[j], pivot) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					swap(values, i++, j--);
+				}
+			}
+			if (rank <= j) {
+				hi = j;
+			}
+			else if (rank >= i) {
+				lo = i;
+			}
+			else {
+				return;
 			}
 		}
-		// not enough data available
-		return Double.NaN;
+	}
+
+	private static void swap(double[] values, int i, int j) {
+		double value = values[i];
+		values[i] = values[j];
+		values[j] = value;
 	}
 }
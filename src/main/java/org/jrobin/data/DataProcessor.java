@@ -23,6 +23,10 @@ import org.jrobin.core.*;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 /**
  * Class which should be used for all calculations based on the data fetched from RRD files. This class
@@ -77,6 +81,9 @@ public class DataProcessor implements ConsolFuns {
 
 	private Def[] defSources;
 
+	// runs fetch and normalization tasks, null to run them in the calling thread
+	private Executor executor;
+
 	/**
 	 * Creates new DataProcessor object for the given time span. Ending timestamp may be set to zero.
 	 * In that case, the class will try to find the optimal ending timestamp based on the last update time of
@@ -224,6 +231,27 @@ public class DataProcessor implements ConsolFuns {
 		this.fetchRequestResolution = fetchRequestResolution;
 	}
 
+	/**
+	 * Returns the executor used to fetch and normalize RRD data concurrently.
+	 *
+	 * @return Executor, or null if RRD data is fetched in the calling thread
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Sets the executor used to fetch and normalize RRD data concurrently. DEF sources reading the
+	 * same RRD file with the same consolidation function are fetched together, each file in a
+	 * separate task. If no executor is set (default), everything runs in the thread calling
+	 * {@link #processData()}.
+	 *
+	 * @param executor Executor, or null to process RRD data in the calling thread
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
 	/**
 	 * Returns ending timestamp. Basically, this value is equal to the ending timestamp
 	 * specified in the constructor. However, if the ending timestamps was zero, it
@@ -360,6 +388,25 @@ public class DataProcessor implements ConsolFuns {
 		return source.getPercentile(tStart, tEnd, percentile);
 	}
 
+	/**
+	 * The same as {@link #getPercentile(String, double)} for several percentile boundaries at once,
+	 * which is faster than asking for each percentile separately.
+	 *
+	 * @param sourceName  Datasource name.
+	 * @param percentiles Boundary percentiles, between zero and 100.
+	 * @return Requested percentiles of fetched source values, in the order of the boundaries
+	 * @throws RrdException Thrown if invalid sourcename is supplied, or if a percentile value makes no sense.
+	 */
+	public double[] getPercentiles(String sourceName, double[] percentiles) throws RrdException {
+		for (double percentile : percentiles) {
+			if (percentile <= 0.0 || percentile > 100.0) {
+				throw new RrdException("Invalid percentile [" + percentile + "], should be between 0 and 100");
+			}
+		}
+		Source source = getSource(sourceName);
+		return source.getPercentiles(tStart, tEnd, percentiles);
+	}
+
 	/**
 	 * Returns array of datasource names defined in this DataProcessor.
 	 *
@@ -697,41 +744,104 @@ public class DataProcessor implements ConsolFuns {
 	}
 
 	private void fetchRrdData() throws IOException, RrdException {
-		long tEndFixed = (tEnd == 0) ? Util.getTime() : tEnd;
-		for (int i = 0; i < defSources.length; i++) {
-			if (!defSources[i].isLoaded()) {
-				// not fetched yet
-				Set<String> dsNames = new HashSet<String>();
-				dsNames.add(defSources[i].getDsName());
-				// look for all other datasources with the same path and the same consolidation function
-				for (int j = i + 1; j < defSources.length; j++) {
-					if (defSources[i].isCompatibleWith(defSources[j])) {
-						dsNames.add(defSources[j].getDsName());
-					}
+		final long tEndFixed = (tEnd == 0) ? Util.getTime() : tEnd;
+		// group datasources with the same path, the same consolidation function and the same backend;
+		// each path is canonicalized only once
+		Map<String, String> canonicalPaths = new HashMap<String, String>();
+		Map<String, List<Def>> groups = new LinkedHashMap<String, List<Def>>();
+		for (Def def : defSources) {
+			if (!def.isLoaded()) {
+				String canonicalPath = canonicalPaths.get(def.getPath());
+				if (canonicalPath == null) {
+					canonicalPath = def.getCanonicalPath();
+					canonicalPaths.put(def.getPath(), canonicalPath);
+				}
+				String key = def.getConsolFun() + ":" + def.getBackend() + ":" + canonicalPath;
+				List<Def> group = groups.get(key);
+				if (group == null) {
+					group = new ArrayList<Def>();
+					groups.put(key, group);
+				}
+				group.add(def);
+			}
+		}
+		List<Callable<Long>> tasks = new ArrayList<Callable<Long>>(groups.size());
+		for (final List<Def> group : groups.values()) {
+			tasks.add(new Callable<Long>() {
+				public Long call() throws IOException, RrdException {
+					return fetchRrdData(group, tEndFixed);
 				}
-				// now we have everything
-				RrdDb rrd = null;
-				try {
-					rrd = getRrd(defSources[i]);
-					lastRrdArchiveUpdateTime = Math.max(lastRrdArchiveUpdateTime, rrd.getLastArchiveUpdateTime());
-					FetchRequest req = rrd.createFetchRequest(defSources[i].getConsolFun(),
-							tStart, tEndFixed, fetchRequestResolution);
-					req.setFilter(dsNames);
-					FetchData data = req.fetchData();
-					defSources[i].setFetchData(data);
-					for (int j = i + 1; j < defSources.length; j++) {
-						if (defSources[i].isCompatibleWith(defSources[j])) {
-							defSources[j].setFetchData(data);
-						}
-					}
+			});
+		}
+		for (long lastArchiveUpdateTime : invokeAll(tasks)) {
+			lastRrdArchiveUpdateTime = Math.max(lastRrdArchiveUpdateTime, lastArchiveUpdateTime);
+		}
+	}
+
+	// fetches data of compatible datasources at once, returns the last archive update time of the file
+	private long fetchRrdData(List<Def> group, long tEndFixed) throws IOException, RrdException {
+		Def first = group.get(0);
+		Set<String> dsNames = new HashSet<String>();
+		for (Def def : group) {
+			dsNames.add(def.getDsName());
+		}
+		RrdDb rrd = null;
+		try {
+			rrd = getRrd(first);
+			FetchRequest req = rrd.createFetchRequest(first.getConsolFun(), tStart, tEndFixed, fetchRequestResolution);
+			req.setFilter(dsNames);
+			FetchData data = req.fetchData();
+			for (Def def : group) {
+				def.setFetchData(data);
+			}
+			return rrd.getLastArchiveUpdateTime();
+		}
+		finally {
+			if (rrd != null) {
+				releaseRrd(rrd, first);
+			}
+		}
+	}
+
+	// runs tasks with the executor, if any, and waits for all of them
+	private <T> List<T> invokeAll(List<? extends Callable<T>> tasks) throws IOException, RrdException {
+		List<FutureTask<T>> futures = new ArrayList<FutureTask<T>>(tasks.size());
+		for (Callable<T> task : tasks) {
+			FutureTask<T> future = new FutureTask<T>(task);
+			futures.add(future);
+			if (executor != null && tasks.size() > 1) {
+				executor.execute(future);
+			}
+			else {
+				future.run();
+			}
+		}
+		List<T> results = new ArrayList<T>(futures.size());
+		for (FutureTask<T> future : futures) {
+			try {
+				results.add(future.get());
+			}
+			catch (InterruptedException e) {
+				throw new RrdException(e);
+			}
+			catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				if (cause instanceof RrdException) {
+					throw (RrdException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
 				}
-				finally {
-					if (rrd != null) {
-						releaseRrd(rrd, defSources[i]);
-					}
+				if (cause instanceof Error) {
+					throw (Error) cause;
 				}
+				throw new RrdException(cause);
 			}
 		}
+		return results;
 	}
 
 	private void fixZeroEndingTimestamp() throws RrdException {
@@ -789,17 +899,25 @@ public class DataProcessor implements ConsolFuns {
 		}
 	}
 
-	private void normalizeRrdValues() throws RrdException {
-		Normalizer normalizer = new Normalizer(timestamps);
-		for (Def def : defSources) {
-			long[] rrdTimestamps = def.getRrdTimestamps();
-			double[] rrdValues = def.getRrdValues();
-			double[] values = normalizer.normalize(rrdTimestamps, rrdValues);
-			def.setValues(values);
+	private void normalizeRrdValues() throws IOException, RrdException {
+		final Normalizer normalizer = new Normalizer(timestamps);
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(defSources.length);
+		for (final Def def : defSources) {
+			tasks.add(new Callable<Object>() {
+				public Object call() throws RrdException {
+					long[] rrdTimestamps = def.getRrdTimestamps();
+					double[] rrdValues = def.getRrdValues();
+					double[] values = normalizer.normalize(rrdTimestamps, rrdValues);
+					def.setValues(values);
+					return null;
+				}
+			});
 		}
+		invokeAll(tasks);
 	}
 
 	private void calculateNonRrdSources() throws RrdException {
+		Set<PercentileDef> percentileDefs = new HashSet<PercentileDef>();
 		for (Source source : sources.values()) {
 			if (source instanceof SDef) {
 				calculateSDef((SDef) source);
@@ -810,8 +928,8 @@ public class DataProcessor implements ConsolFuns {
 			else if (source instanceof PDef) {
 				calculatePDef((PDef) source);
 			}
-			else if (source instanceof PercentileDef) {
-			        calculatePercentileDef((PercentileDef) source);
+			else if (source instanceof PercentileDef && percentileDefs.add((PercentileDef) source)) {
+			        calculatePercentileDefs((PercentileDef) source, percentileDefs);
 			}
 		}
 	}
@@ -838,8 +956,28 @@ public class DataProcessor implements ConsolFuns {
 	//Yeah, this is different from the other calculation methods
 	// Frankly, this is how it *should* be done, and the other methods will
 	// be refactored to this design (and the instanceof's removed) at some point
-        private void calculatePercentileDef(PercentileDef def) throws RrdException {
-                def.calculate(tStart, tEnd);
+	// all percentiles of the same source are selected in a single pass over its values
+        private void calculatePercentileDefs(PercentileDef def, Set<PercentileDef> calculated) throws RrdException {
+                if (def.getSource() == null) {
+                        def.calculate(tStart, tEnd);
+                        return;
+                }
+                List<PercentileDef> defs = new ArrayList<PercentileDef>();
+                defs.add(def);
+                for (Source source : sources.values()) {
+                        if (source instanceof PercentileDef && ((PercentileDef) source).getSource() == def.getSource() &&
+                                        calculated.add((PercentileDef) source)) {
+                                defs.add((PercentileDef) source);
+                        }
+                }
+                double[] percentiles = new double[defs.size()];
+                for (int i = 0; i < percentiles.length; i++) {
+                        percentiles[i] = defs.get(i).getPercentile();
+                }
+                double[] values = def.getSource().getPercentiles(tStart, tEnd, percentiles);
+                for (int i = 0; i < values.length; i++) {
+                        defs.get(i).setValue(values[i]);
+                }
         }
 
 
@@ -66,13 +66,6 @@ class Def extends Source {
 		return backend;
 	}
 
-	boolean isCompatibleWith(Def def) throws IOException {
-		return getCanonicalPath().equals(def.getCanonicalPath()) &&
-				getConsolFun().equals(def.consolFun) &&
-				((backend == null && def.backend == null) ||
-						(backend != null && def.backend != null && backend.equals(def.backend)));
-	}
-
 	void setFetchData(FetchData fetchData) {
 		this.fetchData = fetchData;
 	}
@@ -107,6 +100,13 @@ class Def extends Source {
 		return agg.getPercentile(tStart, tEnd, percentile);
 	}
 
+	double[] getPercentiles(long tStart, long tEnd, double[] percentiles) throws RrdException {
+		long[] t = getRrdTimestamps();
+		double[] v = getRrdValues();
+		Aggregator agg = new Aggregator(t, v);
+		return agg.getPercentiles(tStart, tEnd, percentiles, false);
+	}
+
 	boolean isLoaded() {
 		return fetchData != null;
 	}
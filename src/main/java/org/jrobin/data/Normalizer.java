@@ -39,7 +39,7 @@ class Normalizer {
 		long rawStep = rawTimestamps[1] - rawTimestamps[0];
 		// check if we have a simple match
 		if (rawCount == count && rawStep == step && rawTimestamps[0] == timestamps[0]) {
-			return getCopyOf(rawValues);
+			return getCopyOf(rawValues, count);
 		}
 		// reset all normalized values to NaN
 		double[] values = new double[count];
@@ -71,8 +71,8 @@ class Normalizer {
 		return values;
 	}
 
-	private static double[] getCopyOf(double[] rawValues) {
-		int n = rawValues.length;
+	// raw values may be longer than the raw timestamps when fetched into supplied arrays
+	private static double[] getCopyOf(double[] rawValues, int n) {
 		double[] values = new double[n];
 		System.arraycopy(rawValues, 0, values, 0, n);
 		return values;
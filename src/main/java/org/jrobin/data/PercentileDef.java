@@ -19,6 +19,8 @@ package org.jrobin.data;
 
 import org.jrobin.core.RrdException;
 
+import java.util.Arrays;
+
 public class PercentileDef extends Source {
 
     private Source m_source;
@@ -58,11 +60,19 @@ public class PercentileDef extends Source {
         }
     }
 
+    Source getSource() {
+        return m_source;
+    }
+
+    double getPercentile() {
+        return m_percentile;
+    }
+
     /**
      * Takes the given value and puts it in each position in the 'values' array.
      * @param value
      */
-    private void setValue(double value) {
+    void setValue(double value) {
         this.m_value = value;
         long[] times = getTimestamps();
         if( times != null ) {
@@ -110,4 +120,12 @@ public class PercentileDef extends Source {
         return m_value;
     }
 
+    @Override
+    double[] getPercentiles(long tStart, long tEnd, double[] percentiles)
+            throws RrdException {
+        double[] results = new double[percentiles.length];
+        Arrays.fill(results, m_value);
+        return results;
+    }
+
 }
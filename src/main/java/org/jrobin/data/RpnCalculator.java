@@ -341,6 +341,16 @@ class RpnCalculator {
 	}
 
 	double[] calculateValues() throws RrdException {
+		Node root = compile();
+		if (root != null) {
+			return evaluate(root);
+		}
+		// order dependent operators need the values of other slots
+		return interpretValues();
+	}
+
+	// evaluates the expression slot by slot
+	double[] interpretValues() throws RrdException {
                 TimeZone tz = TimeZone.getDefault();
 		for (int slot = 0; slot < timestamps.length; slot++) {
 			resetStack();
@@ -763,6 +773,406 @@ class RpnCalculator {
 		return calculatedValues;
 	}
 
+	// COLUMN-WISE EVALUATION
+
+	/**
+	 * Compiles tokens into an expression tree, simulating the stack with nodes instead of values.
+	 * Constant subexpressions are folded.
+	 *
+	 * @return Root of the expression tree, or null if the expression has to be interpreted slot by slot
+	 */
+	Node compile() throws RrdException {
+		NodeStack nodes = new NodeStack();
+		for (Token token : tokens) {
+			switch (token.id) {
+				case TKN_PREV:
+				case TKN_TREND:
+				case TKN_TRENDNAN:
+				case TKN_PREDICT:
+				case TKN_PREDICTSIGMA:
+				case TKN_SORT:
+					return null;
+				case TKN_NUM:
+					nodes.push(Node.constant(token.number));
+					break;
+				case TKN_VAR:
+					nodes.push(Node.column(token.values));
+					break;
+				case TKN_PI:
+					nodes.push(Node.constant(Math.PI));
+					break;
+				case TKN_E:
+					nodes.push(Node.constant(Math.E));
+					break;
+				case TKN_INF:
+					nodes.push(Node.constant(Double.POSITIVE_INFINITY));
+					break;
+				case TKN_NEGINF:
+					nodes.push(Node.constant(Double.NEGATIVE_INFINITY));
+					break;
+				case TKN_UNKN:
+					nodes.push(Node.constant(Double.NaN));
+					break;
+				case TKN_STEP:
+					nodes.push(Node.constant(timeStep));
+					break;
+				case TKN_NOW:
+					nodes.push(Node.constant(Util.getTime()));
+					break;
+				case TKN_DUP:
+					nodes.push(nodes.peek());
+					break;
+				case TKN_EXC: {
+					Node x2 = nodes.pop();
+					Node x1 = nodes.pop();
+					nodes.push(x2);
+					nodes.push(x1);
+					break;
+				}
+				case TKN_POP:
+					nodes.pop();
+					break;
+				case TKN_REV: {
+					Node count = nodes.pop();
+					if (count.id != TKN_NUM) {
+						return null;
+					}
+					int n = (int) count.number;
+					Node[] array = new Node[n];
+					for (int i = 0; i < n; i++) {
+						array[i] = nodes.pop();
+					}
+					for (int i = 0; i < n; i++) {
+						nodes.push(array[i]);
+					}
+					break;
+				}
+				case TKN_AVG: {
+					Node count = nodes.pop();
+					if (count.id != TKN_NUM) {
+						return null;
+					}
+					// the last pushed value is summed first
+					Node[] args = new Node[Math.max((int) count.number, 0)];
+					for (int i = 0; i < args.length; i++) {
+						args[i] = nodes.pop();
+					}
+					nodes.push(operator(TKN_AVG, args));
+					break;
+				}
+				default: {
+					int arity = getArity(token.id);
+					if (arity < 0) {
+						throw new RrdException("Unexpected RPN token encountered, token.id=" + token.id);
+					}
+					Node[] args = new Node[arity];
+					for (int i = arity - 1; i >= 0; i--) {
+						args[i] = nodes.pop();
+					}
+					nodes.push(operator(token.id, args));
+				}
+			}
+		}
+		Node root = nodes.pop();
+		if (!nodes.isEmpty()) {
+			throw new RrdException("Stack not empty at the end of calculation. " +
+					"Probably bad RPN expression [" + rpnExpression + "]");
+		}
+		root.refs++;
+		return root;
+	}
+
+	private static int getArity(byte id) {
+		switch (id) {
+			case TKN_COUNT:
+			case TKN_TIME:
+			case TKN_LTIME:
+			case TKN_RANDOM:
+				return 0;
+			case TKN_SIN:
+			case TKN_COS:
+			case TKN_ATAN:
+			case TKN_LOG:
+			case TKN_EXP:
+			case TKN_FLOOR:
+			case TKN_CEIL:
+			case TKN_ROUND:
+			case TKN_ABS:
+			case TKN_SQRT:
+			case TKN_UN:
+			case TKN_ISINF:
+			case TKN_YEAR:
+			case TKN_MONTH:
+			case TKN_DATE:
+			case TKN_HOUR:
+			case TKN_MINUTE:
+			case TKN_SECOND:
+			case TKN_WEEK:
+			case TKN_SIGN:
+			case TKN_RND:
+			case TKN_DEG2RAD:
+			case TKN_RAD2DEG:
+				return 1;
+			case TKN_PLUS:
+			case TKN_MINUS:
+			case TKN_MULT:
+			case TKN_DIV:
+			case TKN_MOD:
+			case TKN_ATAN2:
+			case TKN_POW:
+			case TKN_LT:
+			case TKN_LE:
+			case TKN_GT:
+			case TKN_GE:
+			case TKN_EQ:
+			case TKN_NE:
+			case TKN_MIN:
+			case TKN_MAX:
+			case TKN_AND:
+			case TKN_OR:
+			case TKN_XOR:
+			case TKN_ADDNAN:
+				return 2;
+			case TKN_IF:
+			case TKN_LIMIT:
+				return 3;
+			default:
+				return -1;
+		}
+	}
+
+	private Node operator(byte id, Node[] args) throws RrdException {
+		boolean constant = id != TKN_RND && args.length > 0;
+		for (Node arg : args) {
+			arg.refs++;
+			constant &= arg.id == TKN_NUM;
+		}
+		if (!constant) {
+			return new Node(id, args);
+		}
+		// fold constants by applying the operator to single values
+		double[][] values = new double[args.length][];
+		for (int i = 0; i < args.length; i++) {
+			values[i] = new double[] {args[i].number};
+		}
+		double[] result = new double[1];
+		apply(id, values, result);
+		return Node.constant(result[0]);
+	}
+
+	/**
+	 * Evaluates the expression tree over whole columns. Intermediate columns used only once
+	 * are overwritten with the results of the operators using them.
+	 *
+	 * @param root Root of the expression tree
+	 * @return Calculated values
+	 */
+	double[] evaluate(Node root) throws RrdException {
+		double[] values = evaluateNode(root);
+		if (!root.temporary) {
+			System.arraycopy(values, 0, calculatedValues, 0, values.length);
+			return calculatedValues;
+		}
+		return values;
+	}
+
+	private double[] evaluateNode(Node node) throws RrdException {
+		if (node.values != null) {
+			return node.values;
+		}
+		int n = timestamps.length;
+		double[] result = null;
+		double[][] args = new double[node.args.length][];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = evaluateNode(node.args[i]);
+			if (result == null && node.args[i].temporary && node.args[i].refs == 1) {
+				result = args[i];
+			}
+		}
+		if (result == null) {
+			result = new double[n];
+		}
+		if (node.id == TKN_NUM) {
+			Arrays.fill(result, node.number);
+		}
+		else {
+			apply(node.id, args, result);
+		}
+		node.values = result;
+		node.temporary = true;
+		return result;
+	}
+
+	private void apply(byte id, double[][] args, double[] r) throws RrdException {
+		int n = r.length;
+		double[] a = args.length > 0 ? args[0] : null;
+		double[] b = args.length > 1 ? args[1] : null;
+		double[] c = args.length > 2 ? args[2] : null;
+		switch (id) {
+			case TKN_COUNT:
+				for (int i = 0; i < n; i++) r[i] = i + 1;
+				break;
+			case TKN_TIME:
+				for (int i = 0; i < n; i++) r[i] = timestamps[i];
+				break;
+			case TKN_LTIME: {
+				TimeZone tz = TimeZone.getDefault();
+				for (int i = 0; i < n; i++) r[i] = timestamps[i] + (tz.getOffset(timestamps[i]) / 1000L);
+				break;
+			}
+			case TKN_RANDOM:
+				for (int i = 0; i < n; i++) r[i] = Math.random();
+				break;
+			case TKN_SIN:
+				for (int i = 0; i < n; i++) r[i] = Math.sin(a[i]);
+				break;
+			case TKN_COS:
+				for (int i = 0; i < n; i++) r[i] = Math.cos(a[i]);
+				break;
+			case TKN_ATAN:
+				for (int i = 0; i < n; i++) r[i] = Math.atan(a[i]);
+				break;
+			case TKN_LOG:
+				for (int i = 0; i < n; i++) r[i] = Math.log(a[i]);
+				break;
+			case TKN_EXP:
+				for (int i = 0; i < n; i++) r[i] = Math.exp(a[i]);
+				break;
+			case TKN_FLOOR:
+				for (int i = 0; i < n; i++) r[i] = Math.floor(a[i]);
+				break;
+			case TKN_CEIL:
+				for (int i = 0; i < n; i++) r[i] = Math.ceil(a[i]);
+				break;
+			case TKN_ROUND:
+				for (int i = 0; i < n; i++) r[i] = Math.round(a[i]);
+				break;
+			case TKN_ABS:
+				for (int i = 0; i < n; i++) r[i] = Math.abs(a[i]);
+				break;
+			case TKN_SQRT:
+				for (int i = 0; i < n; i++) r[i] = Math.sqrt(a[i]);
+				break;
+			case TKN_UN:
+				for (int i = 0; i < n; i++) r[i] = Double.isNaN(a[i]) ? 1 : 0;
+				break;
+			case TKN_ISINF:
+				for (int i = 0; i < n; i++) r[i] = Double.isInfinite(a[i]) ? 1 : 0;
+				break;
+			case TKN_YEAR:
+				for (int i = 0; i < n; i++) r[i] = getCalendarField(a[i], Calendar.YEAR);
+				break;
+			case TKN_MONTH:
+				for (int i = 0; i < n; i++) r[i] = getCalendarField(a[i], Calendar.MONTH);
+				break;
+			case TKN_DATE:
+				for (int i = 0; i < n; i++) r[i] = getCalendarField(a[i], Calendar.DAY_OF_MONTH);
+				break;
+			case TKN_HOUR:
+				for (int i = 0; i < n; i++) r[i] = getCalendarField(a[i], Calendar.HOUR_OF_DAY);
+				break;
+			case TKN_MINUTE:
+				for (int i = 0; i < n; i++) r[i] = getCalendarField(a[i], Calendar.MINUTE);
+				break;
+			case TKN_SECOND:
+				for (int i = 0; i < n; i++) r[i] = getCalendarField(a[i], Calendar.SECOND);
+				break;
+			case TKN_WEEK:
+				for (int i = 0; i < n; i++) r[i] = getCalendarField(a[i], Calendar.WEEK_OF_YEAR);
+				break;
+			case TKN_SIGN:
+				for (int i = 0; i < n; i++) r[i] = Double.isNaN(a[i]) ? Double.NaN : a[i] > 0 ? +1 : a[i] < 0 ? -1 : 0;
+				break;
+			case TKN_RND:
+				for (int i = 0; i < n; i++) r[i] = Math.floor(a[i] * Math.random());
+				break;
+			case TKN_DEG2RAD:
+				for (int i = 0; i < n; i++) r[i] = Math.toRadians(a[i]);
+				break;
+			case TKN_RAD2DEG:
+				for (int i = 0; i < n; i++) r[i] = Math.toDegrees(a[i]);
+				break;
+			case TKN_PLUS:
+				for (int i = 0; i < n; i++) r[i] = a[i] + b[i];
+				break;
+			case TKN_MINUS:
+				for (int i = 0; i < n; i++) r[i] = a[i] - b[i];
+				break;
+			case TKN_MULT:
+				for (int i = 0; i < n; i++) r[i] = a[i] * b[i];
+				break;
+			case TKN_DIV:
+				for (int i = 0; i < n; i++) r[i] = a[i] / b[i];
+				break;
+			case TKN_MOD:
+				for (int i = 0; i < n; i++) r[i] = a[i] % b[i];
+				break;
+			case TKN_ATAN2:
+				for (int i = 0; i < n; i++) r[i] = Math.atan2(a[i], b[i]);
+				break;
+			case TKN_POW:
+				for (int i = 0; i < n; i++) r[i] = Math.pow(a[i], b[i]);
+				break;
+			case TKN_LT:
+				for (int i = 0; i < n; i++) r[i] = a[i] < b[i] ? 1 : 0;
+				break;
+			case TKN_LE:
+				for (int i = 0; i < n; i++) r[i] = a[i] <= b[i] ? 1 : 0;
+				break;
+			case TKN_GT:
+				for (int i = 0; i < n; i++) r[i] = a[i] > b[i] ? 1 : 0;
+				break;
+			case TKN_GE:
+				for (int i = 0; i < n; i++) r[i] = a[i] >= b[i] ? 1 : 0;
+				break;
+			case TKN_EQ:
+				for (int i = 0; i < n; i++) r[i] = a[i] == b[i] ? 1 : 0;
+				break;
+			case TKN_NE:
+				for (int i = 0; i < n; i++) r[i] = a[i] != b[i] ? 1 : 0;
+				break;
+			case TKN_MIN:
+				for (int i = 0; i < n; i++) r[i] = Math.min(a[i], b[i]);
+				break;
+			case TKN_MAX:
+				for (int i = 0; i < n; i++) r[i] = Math.max(a[i], b[i]);
+				break;
+			case TKN_AND:
+				for (int i = 0; i < n; i++) r[i] = (a[i] != 0 && b[i] != 0) ? 1 : 0;
+				break;
+			case TKN_OR:
+				for (int i = 0; i < n; i++) r[i] = (a[i] != 0 || b[i] != 0) ? 1 : 0;
+				break;
+			case TKN_XOR:
+				for (int i = 0; i < n; i++) r[i] = ((a[i] != 0 && b[i] == 0) || (a[i] == 0 && b[i] != 0)) ? 1 : 0;
+				break;
+			case TKN_ADDNAN:
+				for (int i = 0; i < n; i++) r[i] = Double.isNaN(a[i]) ? b[i] : Double.isNaN(b[i]) ? a[i] : a[i] + b[i];
+				break;
+			case TKN_IF:
+				for (int i = 0; i < n; i++) r[i] = a[i] != 0 ? b[i] : c[i];
+				break;
+			case TKN_LIMIT:
+				for (int i = 0; i < n; i++) r[i] = a[i] < b[i] || a[i] > c[i] ? Double.NaN : a[i];
+				break;
+			case TKN_AVG:
+				for (int i = 0; i < n; i++) {
+					double sum = 0.0;
+					int count = 0;
+					for (double[] arg : args) {
+						if (!Double.isNaN(arg[i])) {
+							sum += arg[i];
+							count++;
+						}
+					}
+					r[i] = count > 0 ? sum / count : Double.NaN;
+				}
+				break;
+			default:
+				throw new RrdException("Unexpected RPN token encountered, token.id=" + id);
+		}
+	}
+
 	private double getCalendarField(double timestamp, int field) {
 		Calendar calendar = Util.getCalendar((long) (timestamp * 1000));
 		return calendar.get(field);
@@ -823,6 +1233,66 @@ class RpnCalculator {
 		}
 	}
 
+	private static final class NodeStack {
+		private final Node[] stack = new Node[RpnStack.MAX_STACK_SIZE];
+		private int pos = 0;
+
+		void push(final Node x) throws RrdException {
+			if (pos >= RpnStack.MAX_STACK_SIZE) {
+				throw new RrdException("PUSH failed, RPN stack full [" + RpnStack.MAX_STACK_SIZE + "]");
+			}
+			stack[pos++] = x;
+		}
+
+		Node pop() throws RrdException {
+			if (pos <= 0) {
+				throw new RrdException("POP failed, RPN stack is empty ");
+			}
+			return stack[--pos];
+		}
+
+		Node peek() throws RrdException {
+			if (pos <= 0) {
+				throw new RrdException("PEEK failed, RPN stack is empty ");
+			}
+			return stack[pos - 1];
+		}
+
+		boolean isEmpty() {
+			return pos <= 0;
+		}
+	}
+
+	// node of a compiled expression; constants have the TKN_NUM id, columns of values the TKN_VAR id
+	static final class Node {
+		final byte id;
+		final Node[] args;
+		double number = Double.NaN;
+		// values of a column, or evaluated values
+		double[] values;
+		// true if values were allocated during evaluation
+		boolean temporary;
+		// number of nodes using this one
+		int refs;
+
+		Node(byte id, Node[] args) {
+			this.id = id;
+			this.args = args;
+		}
+
+		static Node constant(double number) {
+			Node node = new Node(TKN_NUM, new Node[0]);
+			node.number = number;
+			return node;
+		}
+
+		static Node column(double[] values) {
+			Node node = new Node(TKN_VAR, new Node[0]);
+			node.values = values;
+			return node;
+		}
+	}
+
 	private static final class Token {
 		byte id = -1;
 		double number = Double.NaN;
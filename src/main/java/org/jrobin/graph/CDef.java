@@ -20,7 +20,15 @@ package org.jrobin.graph;
 
 import org.jrobin.data.DataProcessor;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.StringTokenizer;
+
 class CDef extends Source {
+	// operators whose values depend on when (or in which time zone) the graph is rendered
+	private static final Set<String> TIME_DEPENDENT_TOKENS = new HashSet<String>(Arrays.asList("NOW", "TIME", "LTIME", "RANDOM"));
+
 	private final String rpnExpression;
 
 	CDef(String name, String rpnExpression) {
@@ -31,4 +39,15 @@ class CDef extends Source {
 	void requestData(DataProcessor dproc) {
 		dproc.addDatasource(name, rpnExpression);
 	}
+
+	void addToKey(RrdGraphCache.Key key) {
+		key.add("CDEF", name, rpnExpression);
+		// tokenized as by RpnCalculator
+		StringTokenizer st = new StringTokenizer(rpnExpression, ", ");
+		while (st.hasMoreTokens()) {
+			if (TIME_DEPENDENT_TOKENS.contains(st.nextToken())) {
+				key.setUncacheable();
+			}
+		}
+	}
 }
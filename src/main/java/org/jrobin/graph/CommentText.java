@@ -62,4 +62,8 @@ class CommentText implements RrdGraphConstants {
     boolean isValidGraphElement() {
         return !isPrint() && enabled;
     }
+
+    void addToKey(RrdGraphCache.Key key) {
+        key.add(getClass().getSimpleName(), text);
+    }
 }
@@ -0,0 +1,772 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.graph;
+
+import org.jrobin.core.CompiledXmlTemplate;
+import org.jrobin.core.RrdException;
+import org.jrobin.core.TemplateNode;
+import org.jrobin.core.TemplateVariables;
+import org.jrobin.core.Util;
+
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Compiled form of a {@link RrdGraphDefTemplate}, created with {@link RrdGraphDefTemplate#compile()}.
+ * Objects of this class are immutable and may be used by several threads at once:
+ * <pre>
+ * CompiledRrdGraphDefTemplate template = new RrdGraphDefTemplate(new File("template.xml")).compile();
+ * ...
+ * TemplateVariables variables = template.createVariables();
+ * variables.setVariable("start", new GregorianCalendar(2004, 2, 25));
+ * variables.setVariable("end", new GregorianCalendar(2004, 2, 26));
+ * RrdGraphDef gdef = template.getRrdGraphDef(variables);
+ * </pre>
+ */
+public final class CompiledRrdGraphDefTemplate extends CompiledXmlTemplate {
+	CompiledRrdGraphDefTemplate(RrdGraphDefTemplate template) {
+		super(template);
+	}
+
+	/**
+	 * Creates RrdGraphDef object from this template, with all placeholders replaced with
+	 * the given values.
+	 *
+	 * @param variables Variable values, created by {@link #createVariables()}
+	 * @return Graph definition which can be used to create RrdGraph object (actual JRobin graphs)
+	 * @throws RrdException Thrown if the XML template contains invalid (unrecognized) tags
+	 * @throws IllegalArgumentException Thrown if the value for some placeholder was not supplied
+	 */
+	public RrdGraphDef getRrdGraphDef(TemplateVariables variables) throws RrdException {
+		checkVariables(variables);
+		return new Resolver(variables).resolve(root);
+	}
+
+	// walks the compiled tree for a single definition
+	private static final class Resolver implements RrdGraphConstants {
+		private final TemplateVariables variables;
+		private RrdGraphDef rrdGraphDef;
+
+		Resolver(TemplateVariables variables) {
+			this.variables = variables;
+		}
+
+		RrdGraphDef resolve(TemplateNode root) throws RrdException {
+			// basic check
+			if (!root.getName().equals("rrd_graph_def")) {
+				throw new RrdException("XML definition must start with <rrd_graph_def>");
+			}
+			validateTagsOnlyOnce(root, new String[] {"filename", "span", "options", "datasources", "graph"});
+			rrdGraphDef = new RrdGraphDef();
+			// traverse all nodes
+			List<TemplateNode> childNodes = getChildNodes(root);
+			for (TemplateNode childNode : childNodes) {
+				String nodeName = childNode.getName();
+				if (nodeName.equals("filename")) {
+					resolveFilename(childNode);
+				}
+				// SPAN
+				else if (nodeName.equals("span")) {
+					resolveSpan(childNode);
+				}
+				// OPTIONS
+				else if (nodeName.equals("options")) {
+					resolveOptions(childNode);
+				}
+				// DATASOURCES
+				else if (nodeName.equals("datasources")) {
+					resolveDatasources(childNode);
+				}
+				// GRAPH ELEMENTS
+				else if (nodeName.equals("graph")) {
+					resolveGraphElements(childNode);
+				}
+			}
+			return rrdGraphDef;
+		}
+
+		private void resolveGraphElements(TemplateNode graphNode) throws RrdException {
+			validateTagsOnlyOnce(graphNode, new String[] {"area*", "line*", "stack*",
+					"print*", "gprint*", "hrule*", "vrule*", "comment*"});
+			List<TemplateNode> childNodes = getChildNodes(graphNode);
+			for (TemplateNode childNode : childNodes) {
+				String nodeName = childNode.getName();
+				if (nodeName.equals("area")) {
+					resolveArea(childNode);
+				}
+				else if (nodeName.equals("line")) {
+					resolveLine(childNode);
+				}
+				else if (nodeName.equals("stack")) {
+					resolveStack(childNode);
+				}
+				else if (nodeName.equals("print")) {
+					resolvePrint(childNode, false);
+				}
+				else if (nodeName.equals("gprint")) {
+					resolvePrint(childNode, true);
+				}
+				else if (nodeName.equals("hrule")) {
+					resolveHRule(childNode);
+				}
+				else if (nodeName.equals("vrule")) {
+					resolveVRule(childNode);
+				}
+				else if (nodeName.equals("comment")) {
+					rrdGraphDef.comment(getValue(childNode));
+				}
+			}
+		}
+
+		private void resolveVRule(TemplateNode parentNode) throws RrdException {
+			validateTagsOnlyOnce(parentNode, new String[] {"time", "color", "legend"});
+			long timestamp = Long.MIN_VALUE;
+			Paint color = null;
+			String legend = null;
+			List<TemplateNode> childNodes = getChildNodes(parentNode);
+			for (TemplateNode childNode : childNodes) {
+				String nodeName = childNode.getName();
+				if (nodeName.equals("time")) {
+					timestamp = Util.getTimestamp(getValue(childNode));
+				}
+				else if (nodeName.equals("color")) {
+					color = getValueAsColor(childNode);
+				}
+				else if (nodeName.equals("legend")) {
+					legend = getValue(childNode);
+				}
+			}
+			if (timestamp != Long.MIN_VALUE && color != null) {
+				rrdGraphDef.vrule(timestamp, color, legend);
+			}
+			else {
+				throw new RrdException("Incomplete VRULE settings");
+			}
+		}
+
+		private void resolveHRule(TemplateNode parentNode) throws RrdException {
+			validateTagsOnlyOnce(parentNode, new String[] {"value", "color", "legend"});
+			double value = Double.NaN;
+			Paint color = null;
+			String legend = null;
+			List<TemplateNode> childNodes = getChildNodes(parentNode);
+			for (TemplateNode childNode : childNodes) {
+				String nodeName = childNode.getName();
+				if (nodeName.equals("value")) {
+					value = getValueAsDouble(childNode);
+				}
+				else if (nodeName.equals("color")) {
+					color = getValueAsColor(childNode);
+				}
+				else if (nodeName.equals("legend")) {
+					legend = getValue(childNode);
+				}
+			}
+			if (!Double.isNaN(value) && color != null) {
+				rrdGraphDef.hrule(value, color, legend);
+			}
+			else {
+				throw new RrdException("Incomplete HRULE settings");
+			}
+		}
+
+		private void resolvePrint(TemplateNode parentNode, boolean isInGraph) throws RrdException {
+			validateTagsOnlyOnce(parentNode, new String[] {"datasource", "cf", "format"});
+			String datasource = null, cf = null, format = null;
+			List<TemplateNode> childNodes = getChildNodes(parentNode);
+			for (TemplateNode childNode : childNodes) {
+				String nodeName = childNode.getName();
+				if (nodeName.equals("datasource")) {
+					datasource = getValue(childNode);
+				}
+				else if (nodeName.equals("cf")) {
+					cf = getValue(childNode);
+				}
+				else if (nodeName.equals("format")) {
+					format = getValue(childNode);
+				}
+			}
+			if (datasource != null && cf != null && format != null) {
+				if (isInGraph) {
+					rrdGraphDef.gprint(datasource, cf, format);
+				}
+				else {
+					rrdGraphDef.print(datasource, cf, format);
+				}
+			}
+			else {
+				throw new RrdException("Incomplete " + (isInGraph ? "GRPINT" : "PRINT") + " settings");
+			}
+		}
+
+		private void resolveStack(TemplateNode parentNode) throws RrdException {
+			validateTagsOnlyOnce(parentNode, new String[] {"datasource", "color", "legend"});
+			String datasource = null, legend = null;
+			Paint color = null;
+			List<TemplateNode> childNodes = getChildNodes(parentNode);
+			for (TemplateNode childNode : childNodes) {
+				String nodeName = childNode.getName();
+				if (nodeName.equals("datasource")) {
+					datasource = getValue(childNode);
+				}
+				else if (nodeName.equals("color")) {
+					color = getValueAsColor(childNode);
+				}
+				else if (nodeName.equals("legend")) {
+					legend = getValue(childNode);
+				}
+			}
+			if (datasource != null) {
+				if (color != null) {
+					rrdGraphDef.stack(datasource, color, legend);
+				}
+				else {
+					rrdGraphDef.stack(datasource, RrdGraphDefTemplate.BLIND_COLOR, legend);
+				}
+			}
+			else {
+				throw new RrdException("Incomplete STACK settings");
+			}
+		}
+
+		private void resolveLine(TemplateNode parentNode) throws RrdException {
+			validateTagsOnlyOnce(parentNode, new String[] {"datasource", "color", "legend", "width"});
+			String datasource = null, legend = null;
+			Paint color = null;
+			float width = 1.0F;
+			List<TemplateNode> childNodes = getChildNodes(parentNode);
+			for (TemplateNode childNode : childNodes) {
+				String nodeName = childNode.getName();
+				if (nodeName.equals("datasource")) {
+					datasource = getValue(childNode);
+				}
+				else if (nodeName.equals("color")) {
+					color = getValueAsColor(childNode);
+				}
+				else if (nodeName.equals("legend")) {
+					legend = getValue(childNode);
+				}
+				else if (nodeName.equals("width")) {
+					width = (float) getValueAsDouble(childNode);
+				}
+			}
+			if (datasource != null) {
+				if (color != null) {
+					rrdGraphDef.line(datasource, color, legend, width);
+				}
+				else {
+					rrdGraphDef.line(datasource, RrdGraphDefTemplate.BLIND_COLOR, legend, width);
+				}
+			}
+			else {
+				throw new RrdException("Incomplete LINE settings");
+			}
+		}
+
+		private void resolveArea(TemplateNode parentNode) throws RrdException {
+			validateTagsOnlyOnce(parentNode, new String[] {"datasource", "color", "legend"});
+			String datasource = null, legend = null;
+			Paint color = null;
+			List<TemplateNode> childNodes = getChildNodes(parentNode);
+			for (TemplateNode childNode : childNodes) {
+				String nodeName = childNode.getName();
+				if (nodeName.equals("datasource")) {
+					datasource = getValue(childNode);
+				}
+				else if (nodeName.equals("color")) {
+					color = getValueAsColor(childNode);
+				}
+				else if (nodeName.equals("legend")) {
+					legend = getValue(childNode);
+				}
+			}
+			if (datasource != null) {
+				if (color != null) {
+					rrdGraphDef.area(datasource, color, legend);
+				}
+				else {
+					rrdGraphDef.area(datasource, RrdGraphDefTemplate.BLIND_COLOR, legend);
+				}
+			}
+			else {
+				throw new RrdException("Incomplete AREA settings");
+			}
+		}
+
+		private void resolveDatasources(TemplateNode datasourcesNode) throws RrdException {
+			validateTagsOnlyOnce(datasourcesNode, new String[] {"def*", "cdef*", "sdef*"});
+			List<TemplateNode> childNodes = getChildNodes(datasourcesNode);
+			for (TemplateNode childNode : childNodes) {
+				String nodeName = childNode.getName();
+				if (nodeName.equals("def")) {
+					resolveDef(childNode);
+				}
+				else if (nodeName.equals("cdef")) {
+					resolveCDef(childNode);
+				}
+				else if (nodeName.equals("sdef")) {
+					resolveSDef(childNode);
+				}
+			}
+		}
+
+		private void resolveSDef(TemplateNode parentNode) throws RrdException {
+			validateTagsOnlyOnce(parentNode, new String[] {"name", "source", "cf"});
+			String name = null, source = null, cf = null;
+			List<TemplateNode> childNodes = getChildNodes(parentNode);
+			for (TemplateNode childNode : childNodes) {
+				String nodeName = childNode.getName();
+				if (nodeName.equals("name")) {
+					name = getValue(childNode);
+				}
+				else if (nodeName.equals("source")) {
+					source = getValue(childNode);
+				}
+				else if (nodeName.equals("cf")) {
+					cf = getValue(childNode);
+				}
+			}
+			if (name != null && source != null && cf != null) {
+				rrdGraphDef.datasource(name, source, cf);
+			}
+			else {
+				throw new RrdException("Incomplete SDEF settings");
+			}
+		}
+
+		private void resolveCDef(TemplateNode parentNode) throws RrdException {
+			validateTagsOnlyOnce(parentNode, new String[] {"name", "rpn"});
+			String name = null, rpn = null;
+			List<TemplateNode> childNodes = getChildNodes(parentNode);
+			for (TemplateNode childNode : childNodes) {
+				String nodeName = childNode.getName();
+				if (nodeName.equals("name")) {
+					name = getValue(childNode);
+				}
+				else if (nodeName.equals("rpn")) {
+					rpn = getValue(childNode);
+				}
+			}
+			if (name != null && rpn != null) {
+				rrdGraphDef.datasource(name, rpn);
+			}
+			else {
+				throw new RrdException("Incomplete CDEF settings");
+			}
+		}
+
+		private void resolveDef(TemplateNode parentNode) throws RrdException {
+			validateTagsOnlyOnce(parentNode, new String[] {"name", "rrd", "source", "cf", "backend"});
+			String name = null, rrd = null, source = null, cf = null, backend = null;
+			List<TemplateNode> childNodes = getChildNodes(parentNode);
+			for (TemplateNode childNode : childNodes) {
+				String nodeName = childNode.getName();
+				if (nodeName.equals("name")) {
+					name = getValue(childNode);
+				}
+				else if (nodeName.equals("rrd")) {
+					rrd = getValue(childNode);
+				}
+				else if (nodeName.equals("source")) {
+					source = getValue(childNode);
+				}
+				else if (nodeName.equals("cf")) {
+					cf = getValue(childNode);
+				}
+				else if (nodeName.equals("backend")) {
+					backend = getValue(childNode);
+				}
+			}
+			if (name != null && rrd != null && source != null && cf != null) {
+				rrdGraphDef.datasource(name, rrd, source, cf, backend);
+			}
+			else {
+				throw new RrdException("Incomplete DEF settings");
+			}
+		}
+
+		private void resolveFilename(TemplateNode filenameNode) {
+			String filename = getValue(filenameNode);
+			rrdGraphDef.setFilename(filename);
+		}
+
+		private void resolveSpan(TemplateNode spanNode) throws RrdException {
+			validateTagsOnlyOnce(spanNode, new String[] {"start", "end"});
+			String startStr = getChildValue(spanNode, "start");
+			String endStr = getChildValue(spanNode, "end");
+			long[] span = Util.getTimestamps(startStr, endStr);
+			rrdGraphDef.setStartTime(span[0]);
+			rrdGraphDef.setEndTime(span[1]);
+		}
+
+		private void resolveOptions(TemplateNode rootOptionNode) throws RrdException {
+			validateTagsOnlyOnce(rootOptionNode, new String[] {
+					"anti_aliasing", "use_pool", "time_grid", "value_grid", "alt_y_grid", "alt_y_mrtg",
+					"no_minor_grid", "alt_autoscale", "alt_autoscale_max", "units_exponent", "units_length",
+					"vertical_label", "width", "height", "interlaced", "image_info", "image_format",
+					"image_quality", "background_image", "overlay_image", "unit", "lazy",
+					"min_value", "max_value", "rigid", "base", "logarithmic", "colors",
+					"no_legend", "only_graph", "force_rules_legend", "title", "step", "fonts",
+					"first_day_of_week", "signature"
+			});
+			List<TemplateNode> optionNodes = getChildNodes(rootOptionNode);
+			for (TemplateNode optionNode : optionNodes) {
+				String option = optionNode.getName();
+				if (option.equals("use_pool")) {
+					rrdGraphDef.setPoolUsed(getValueAsBoolean(optionNode));
+				}
+				else if (option.equals("anti_aliasing")) {
+					rrdGraphDef.setAntiAliasing(getValueAsBoolean(optionNode));
+				}
+				else if (option.equals("time_grid")) {
+					resolveTimeGrid(optionNode);
+				}
+				else if (option.equals("value_grid")) {
+					resolveValueGrid(optionNode);
+				}
+				else if (option.equals("no_minor_grid")) {
+					rrdGraphDef.setNoMinorGrid(getValueAsBoolean(optionNode));
+				}
+				else if (option.equals("alt_y_grid")) {
+					rrdGraphDef.setAltYGrid(getValueAsBoolean(optionNode));
+				}
+				else if (option.equals("alt_y_mrtg")) {
+					rrdGraphDef.setAltYMrtg(getValueAsBoolean(optionNode));
+				}
+				else if (option.equals("alt_autoscale")) {
+					rrdGraphDef.setAltAutoscale(getValueAsBoolean(optionNode));
+				}
+				else if (option.equals("alt_autoscale_max")) {
+					rrdGraphDef.setAltAutoscaleMax(getValueAsBoolean(optionNode));
+				}
+				else if (option.equals("units_exponent")) {
+					rrdGraphDef.setUnitsExponent(getValueAsInt(optionNode));
+				}
+				else if (option.equals("units_length")) {
+					rrdGraphDef.setUnitsLength(getValueAsInt(optionNode));
+				}
+				else if (option.equals("vertical_label")) {
+					rrdGraphDef.setVerticalLabel(getValue(optionNode));
+				}
+				else if (option.equals("width")) {
+					rrdGraphDef.setWidth(getValueAsInt(optionNode));
+				}
+				else if (option.equals("height")) {
+					rrdGraphDef.setHeight(getValueAsInt(optionNode));
+				}
+				else if (option.equals("interlaced")) {
+					rrdGraphDef.setInterlaced(getValueAsBoolean(optionNode));
+				}
+				else if (option.equals("image_info")) {
+					rrdGraphDef.setImageInfo(getValue(optionNode));
+				}
+				else if (option.equals("image_format")) {
+					rrdGraphDef.setImageFormat(getValue(optionNode));
+				}
+				else if (option.equals("image_quality")) {
+					rrdGraphDef.setImageQuality((float) getValueAsDouble(optionNode));
+				}
+				else if (option.equals("background_image")) {
+					rrdGraphDef.setBackgroundImage(getValue(optionNode));
+				}
+				else if (option.equals("overlay_image")) {
+					rrdGraphDef.setOverlayImage(getValue(optionNode));
+				}
+				else if (option.equals("unit")) {
+					rrdGraphDef.setUnit(getValue(optionNode));
+				}
+				else if (option.equals("lazy")) {
+					rrdGraphDef.setLazy(getValueAsBoolean(optionNode));
+				}
+				else if (option.equals("min_value")) {
+					rrdGraphDef.setMinValue(getValueAsDouble(optionNode));
+				}
+				else if (option.equals("max_value")) {
+					rrdGraphDef.setMaxValue(getValueAsDouble(optionNode));
+				}
+				else if (option.equals("rigid")) {
+					rrdGraphDef.setRigid(getValueAsBoolean(optionNode));
+				}
+				else if (option.equals("base")) {
+					rrdGraphDef.setBase(getValueAsDouble(optionNode));
+				}
+				else if (option.equals("logarithmic")) {
+					rrdGraphDef.setLogarithmic(getValueAsBoolean(optionNode));
+				}
+				else if (option.equals("colors")) {
+					resolveColors(optionNode);
+				}
+				else if (option.equals("no_legend")) {
+					rrdGraphDef.setNoLegend(getValueAsBoolean(optionNode));
+				}
+				else if (option.equals("only_graph")) {
+					rrdGraphDef.setOnlyGraph(getValueAsBoolean(optionNode));
+				}
+				else if (option.equals("force_rules_legend")) {
+					rrdGraphDef.setForceRulesLegend(getValueAsBoolean(optionNode));
+				}
+				else if (option.equals("title")) {
+					rrdGraphDef.setTitle(getValue(optionNode));
+				}
+				else if (option.equals("step")) {
+					rrdGraphDef.setStep(getValueAsLong(optionNode));
+				}
+				else if (option.equals("fonts")) {
+					resolveFonts(optionNode);
+				}
+				else if (option.equals("first_day_of_week")) {
+					int dayIndex = resolveFirstDayOfWeek(getValue(optionNode));
+					rrdGraphDef.setFirstDayOfWeek(dayIndex);
+				}
+				else if (option.equals("signature")) {
+					rrdGraphDef.setShowSignature(getValueAsBoolean(optionNode));
+				}
+			}
+		}
+
+		private int resolveFirstDayOfWeek(String firstDayOfWeek) throws RrdException {
+			if (firstDayOfWeek.equalsIgnoreCase("sunday")) {
+				return SUNDAY;
+			}
+			else if (firstDayOfWeek.equalsIgnoreCase("monday")) {
+				return MONDAY;
+			}
+			else if (firstDayOfWeek.equalsIgnoreCase("tuesday")) {
+				return TUESDAY;
+			}
+			else if (firstDayOfWeek.equalsIgnoreCase("wednesday")) {
+				return WEDNESDAY;
+			}
+			else if (firstDayOfWeek.equalsIgnoreCase("thursday")) {
+				return THURSDAY;
+			}
+			else if (firstDayOfWeek.equalsIgnoreCase("friday")) {
+				return FRIDAY;
+			}
+			else if (firstDayOfWeek.equalsIgnoreCase("saturday")) {
+				return SATURDAY;
+			}
+			throw new RrdException("Never heard for this day of week: " + firstDayOfWeek);
+		}
+
+		private void resolveFonts(TemplateNode parentNode) throws RrdException {
+			validateTagsOnlyOnce(parentNode, new String[] {"small_font", "large_font"});
+			List<TemplateNode> childNodes = getChildNodes(parentNode);
+			for (TemplateNode childNode : childNodes) {
+				String nodeName = childNode.getName();
+				if (nodeName.equals("small_font")) {
+					rrdGraphDef.setSmallFont(resolveFont(childNode));
+				}
+				else if (nodeName.equals("large_font")) {
+					rrdGraphDef.setLargeFont(resolveFont(childNode));
+				}
+			}
+		}
+
+		private Font resolveFont(TemplateNode parentNode) throws RrdException {
+			validateTagsOnlyOnce(parentNode, new String[] {"name", "style", "size"});
+			String name = null, style = null;
+			int size = 0;
+			List<TemplateNode> childNodes = getChildNodes(parentNode);
+			for (TemplateNode childNode : childNodes) {
+				String nodeName = childNode.getName();
+				if (nodeName.equals("name")) {
+					name = getValue(childNode);
+				}
+				else if (nodeName.equals("style")) {
+					style = getValue(childNode).toLowerCase();
+				}
+				else if (nodeName.equals("size")) {
+					size = getValueAsInt(childNode);
+				}
+			}
+			if (name != null && style != null && size > 0) {
+				boolean isItalic = style.contains("italic"), isBold = style.contains("bold");
+				int fstyle = Font.PLAIN;
+				if (isItalic && isBold) {
+					fstyle = Font.BOLD + Font.ITALIC;
+				}
+				else if (isItalic) {
+					fstyle = Font.ITALIC;
+				}
+				else if (isBold) {
+					fstyle = Font.BOLD;
+				}
+				return new Font(name, fstyle, size);
+			}
+			else {
+				throw new RrdException("Incomplete font specification");
+			}
+		}
+
+		private void resolveColors(TemplateNode parentNode) throws RrdException {
+			validateTagsOnlyOnce(parentNode, COLOR_NAMES);
+			List<TemplateNode> childNodes = getChildNodes(parentNode);
+			for (TemplateNode childNode : childNodes) {
+				String colorName = childNode.getName();
+				rrdGraphDef.setColor(colorName, getValueAsColor(childNode));
+			}
+		}
+
+		private void resolveValueGrid(TemplateNode parentNode) throws RrdException {
+			validateTagsOnlyOnce(parentNode, new String[] {"show_grid", "grid_step", "label_factor"});
+			boolean showGrid = true;
+			double gridStep = Double.NaN;
+			int NOT_SET = Integer.MIN_VALUE, labelFactor = NOT_SET;
+			List<TemplateNode> childNodes = getChildNodes(parentNode);
+			for (TemplateNode childNode : childNodes) {
+				String nodeName = childNode.getName();
+				if (nodeName.equals("show_grid")) {
+					showGrid = getValueAsBoolean(childNode);
+				}
+				else if (nodeName.equals("grid_step")) {
+					gridStep = getValueAsDouble(childNode);
+				}
+				else if (nodeName.equals("label_factor")) {
+					labelFactor = getValueAsInt(childNode);
+				}
+			}
+			rrdGraphDef.setDrawYGrid(showGrid);
+			if (!Double.isNaN(gridStep) && labelFactor != NOT_SET) {
+				rrdGraphDef.setValueAxis(gridStep, labelFactor);
+			}
+			else if (!Double.isNaN(gridStep) || labelFactor != NOT_SET) {
+				throw new RrdException("Incomplete value axis settings");
+			}
+		}
+
+		private void resolveTimeGrid(TemplateNode parentNode) throws RrdException {
+			validateTagsOnlyOnce(parentNode, new String[] {
+					"show_grid", "minor_grid_unit",
+					"minor_grid_unit_count", "major_grid_unit",
+					"major_grid_unit_count", "label_unit", "label_unit_count",
+					"label_span", "label_format"
+			});
+			boolean showGrid = true;
+			final int NOT_SET = Integer.MIN_VALUE;
+			int minorGridUnit = NOT_SET, minorGridUnitCount = NOT_SET,
+					majorGridUnit = NOT_SET, majorGridUnitCount = NOT_SET,
+					labelUnit = NOT_SET, labelUnitCount = NOT_SET, labelSpan = NOT_SET;
+			String labelFormat = null;
+			List<TemplateNode> childNodes = getChildNodes(parentNode);
+			for (TemplateNode childNode : childNodes) {
+				String nodeName = childNode.getName();
+				if (nodeName.equals("show_grid")) {
+					showGrid = getValueAsBoolean(childNode);
+				}
+				else if (nodeName.equals("minor_grid_unit")) {
+					minorGridUnit = resolveTimeUnit(getValue(childNode));
+				}
+				else if (nodeName.equals("minor_grid_unit_count")) {
+					minorGridUnitCount = getValueAsInt(childNode);
+				}
+				else if (nodeName.equals("major_grid_unit")) {
+					majorGridUnit = resolveTimeUnit(getValue(childNode));
+				}
+				else if (nodeName.equals("major_grid_unit_count")) {
+					majorGridUnitCount = getValueAsInt(childNode);
+				}
+				else if (nodeName.equals("label_unit")) {
+					labelUnit = resolveTimeUnit(getValue(childNode));
+				}
+				else if (nodeName.equals("label_unit_count")) {
+					labelUnitCount = getValueAsInt(childNode);
+				}
+				else if (nodeName.equals("label_span")) {
+					labelSpan = getValueAsInt(childNode);
+				}
+				else if (nodeName.equals("label_format")) {
+					labelFormat = getValue(childNode);
+				}
+			}
+			rrdGraphDef.setDrawXGrid(showGrid);
+			if (minorGridUnit != NOT_SET && minorGridUnitCount != NOT_SET &&
+					majorGridUnit != NOT_SET && majorGridUnitCount != NOT_SET &&
+					labelUnit != NOT_SET && labelUnitCount != NOT_SET && labelSpan != NOT_SET && labelFormat != null) {
+				rrdGraphDef.setTimeAxis(minorGridUnit, minorGridUnitCount, majorGridUnit, majorGridUnitCount,
+						labelUnit, labelUnitCount, labelSpan, labelFormat);
+			}
+			else if (minorGridUnit != NOT_SET || minorGridUnitCount != NOT_SET ||
+					majorGridUnit != NOT_SET || majorGridUnitCount != NOT_SET ||
+					labelUnit != NOT_SET || labelUnitCount != NOT_SET || labelSpan != NOT_SET || labelFormat != null) {
+				throw new RrdException("Incomplete time axis settings");
+			}
+		}
+
+		private int resolveTimeUnit(String unit) throws RrdException {
+			if (unit.equalsIgnoreCase("second")) {
+				return RrdGraphConstants.SECOND;
+			}
+			else if (unit.equalsIgnoreCase("minute")) {
+				return RrdGraphConstants.MINUTE;
+			}
+			else if (unit.equalsIgnoreCase("hour")) {
+				return RrdGraphConstants.HOUR;
+			}
+			else if (unit.equalsIgnoreCase("day")) {
+				return RrdGraphConstants.DAY;
+			}
+			else if (unit.equalsIgnoreCase("week")) {
+				return RrdGraphConstants.WEEK;
+			}
+			else if (unit.equalsIgnoreCase("month")) {
+				return RrdGraphConstants.MONTH;
+			}
+			else if (unit.equalsIgnoreCase("year")) {
+				return RrdGraphConstants.YEAR;
+			}
+			throw new RrdException("Unknown time unit specified: " + unit);
+		}
+
+		private static List<TemplateNode> getChildNodes(TemplateNode parentNode) {
+			return parentNode.getChildNodes();
+		}
+
+		private static void validateTagsOnlyOnce(TemplateNode parentNode, String[] allowedChildNames) throws RrdException {
+			parentNode.validateTagsOnlyOnce(allowedChildNames);
+		}
+
+		private String getChildValue(TemplateNode parentNode, String childName) throws RrdException {
+			return parentNode.getChildValue(childName, variables);
+		}
+
+		private String getValue(TemplateNode node) {
+			return node.getValue(variables);
+		}
+
+		private int getValueAsInt(TemplateNode node) {
+			return node.getValueAsInt(variables);
+		}
+
+		private long getValueAsLong(TemplateNode node) {
+			return node.getValueAsLong(variables);
+		}
+
+		private double getValueAsDouble(TemplateNode node) {
+			return node.getValueAsDouble(variables);
+		}
+
+		private boolean getValueAsBoolean(TemplateNode node) {
+			return node.getValueAsBoolean(variables);
+		}
+
+		private Paint getValueAsColor(TemplateNode node) throws RrdException {
+			return node.getValueAsColor(variables);
+		}
+	}
+}
@@ -19,6 +19,12 @@
 
 package org.jrobin.graph;
 
+import java.io.IOException;
+
+import org.jrobin.core.RrdBackendFactory;
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdDbPool;
+import org.jrobin.core.RrdException;
 import org.jrobin.data.DataProcessor;
 
 class Def extends Source {
@@ -44,4 +50,33 @@ class Def extends Source {
 			dproc.addDatasource(name, rrdPath, dsName, consolFun, backend);
 		}
 	}
+
+	void addToKey(RrdGraphCache.Key key) {
+		key.add("DEF", name, rrdPath, dsName, consolFun, backend);
+	}
+
+	// opens the RRD file, through the pool if the graph uses it
+	long getLastArchiveUpdateTime(boolean poolUsed) throws IOException, RrdException {
+		RrdDb rrd;
+		if (poolUsed && backend == null) {
+			rrd = RrdDbPool.getInstance().requestRrdDb(rrdPath);
+		}
+		else if (backend != null) {
+			rrd = new RrdDb(rrdPath, true, RrdBackendFactory.getFactory(backend));
+		}
+		else {
+			rrd = new RrdDb(rrdPath, true);
+		}
+		try {
+			return rrd.getLastArchiveUpdateTime();
+		}
+		finally {
+			if (poolUsed && backend == null) {
+				RrdDbPool.getInstance().release(rrd);
+			}
+			else {
+				rrd.close();
+			}
+		}
+	}
 }
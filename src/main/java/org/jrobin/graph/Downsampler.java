@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+
+package org.jrobin.graph;
+
+import java.util.Arrays;
+
+/**
+ * Reduces device coordinates of plotted series to the points which can make a difference
+ * once drawn. Consecutive points falling in the same pixel column are grouped, and only the first
+ * and the last point of a group and the points with the minimum and maximum value of each series
+ * are kept, in their original order, so that spikes stay visible.
+ */
+class Downsampler {
+	private final double[] x;
+
+	Downsampler(double[] x) {
+		this.x = x;
+	}
+
+	/**
+	 * Selects the points to keep for series drawn together (for example both edges of a stacked area).
+	 *
+	 * @param ys Device y coordinates of the series, each as long as the x coordinates
+	 * @return Ascending indexes of the points to keep
+	 */
+	int[] select(double[]... ys) {
+		int n = x.length;
+		int[] selected = new int[n];
+		int[] group = new int[2 + 2 * ys.length];
+		int count = 0;
+		for (int start = 0; start < n; ) {
+			// a group ends with the pixel column, or when a series becomes known or unknown
+			int column = (int) x[start];
+			long nanMask = getNanMask(start, ys);
+			int end = start + 1;
+			while (end < n && (int) x[end] == column && getNanMask(end, ys) == nanMask) {
+				end++;
+			}
+			int groupCount = 0;
+			group[groupCount++] = start;
+			group[groupCount++] = end - 1;
+			for (double[] y : ys) {
+				if (!Double.isNaN(y[start])) {
+					int min = start, max = start;
+					for (int i = start + 1; i < end; i++) {
+						if (y[i] < y[min]) {
+							min = i;
+						}
+						else if (y[i] > y[max]) {
+							max = i;
+						}
+					}
+					group[groupCount++] = min;
+					group[groupCount++] = max;
+				}
+			}
+			Arrays.sort(group, 0, groupCount);
+			for (int i = 0; i < groupCount; i++) {
+				if (count == 0 || selected[count - 1] != group[i]) {
+					selected[count++] = group[i];
+				}
+			}
+			start = end;
+		}
+		return Arrays.copyOf(selected, count);
+	}
+
+	double[] getX(int[] indexes) {
+		return pick(x, indexes);
+	}
+
+	static double[] pick(double[] values, int[] indexes) {
+		double[] picked = new double[indexes.length];
+		for (int i = 0; i < indexes.length; i++) {
+			picked[i] = values[indexes[i]];
+		}
+		return picked;
+	}
+
+	private static long getNanMask(int index, double[][] ys) {
+		long mask = 0;
+		for (int i = 0; i < ys.length; i++) {
+			if (Double.isNaN(ys[i][index])) {
+				mask |= 1L << i;
+			}
+		}
+		return mask;
+	}
+}
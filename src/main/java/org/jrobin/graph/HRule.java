@@ -32,4 +32,9 @@ class HRule extends Rule {
 	void setLegendVisibility(double minval, double maxval, boolean forceLegend) {
 		legend.enabled &= (forceLegend || (value >= minval && value <= maxval));
 	}
+
+	void addToKey(RrdGraphCache.Key key) {
+		super.addToKey(key);
+		key.add(value);
+	}
 }
@@ -23,13 +23,25 @@ import java.awt.font.LineMetrics;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 
 class ImageWorker {
     private static final String DUMMY_TEXT = "Dummy";
+    // image writers are not thread safe, each thread reuses its own ones across graphs
+    private static final ThreadLocal<Map<String, ImageWriter>> IMAGE_WRITERS = new ThreadLocal<Map<String, ImageWriter>>() {
+        @Override
+        protected Map<String, ImageWriter> initialValue() {
+            return new HashMap<String, ImageWriter>();
+        }
+    };
 
     private BufferedImage img;
     private Graphics2D gd;
@@ -169,24 +181,28 @@ class ImageWorker {
         gd.dispose();
     }
 
-    void saveImage(OutputStream stream, String type, float quality) throws IOException {
+    void saveImage(OutputStream stream, String type, float quality, int pngCompressionLevel) throws IOException {
         if (type.equalsIgnoreCase("png")) {
-            ImageIO.write(img, "png", stream);
+            ImageWriter writer = getImageWriter("png");
+            ImageWriteParam iwp = writer.getDefaultWriteParam();
+            if (pngCompressionLevel >= 0 && iwp.canWriteCompressed()) {
+                iwp.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                // the writer uses deflate level (int) (9 * (1 - quality))
+                iwp.setCompressionQuality(Math.max(0F, 1F - (Math.min(pngCompressionLevel, 9) + 0.5F) / 9F));
+            }
+            writeImage(writer, iwp, stream);
         }
         else if (type.equalsIgnoreCase("gif")) {
             GifEncoder gifEncoder = new GifEncoder(img);
             gifEncoder.encode(stream);
         }
         else if (type.equalsIgnoreCase("jpg") || type.equalsIgnoreCase("jpeg")) {
-            Iterator<ImageWriter> iter = ImageIO.getImageWritersByFormatName("jpg");
-            ImageWriter writer = iter.next();
+            ImageWriter writer = getImageWriter("jpg");
             ImageWriteParam iwp = writer.getDefaultWriteParam();
 
             iwp.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
             iwp.setCompressionQuality(quality);
-            writer.setOutput(stream);
-            writer.write(img);
-            writer.dispose();
+            writeImage(writer, iwp, stream);
         }
         else {
             throw new IOException("Unsupported image format: " + type);
@@ -194,25 +210,38 @@ class ImageWorker {
         stream.flush();
     }
 
-    byte[] saveImage(String path, String type, float quality) throws IOException {
-        byte[] bytes = getImageBytes(type, quality);
-        RandomAccessFile f = new RandomAccessFile(path, "rw");
+    private void writeImage(ImageWriter writer, ImageWriteParam iwp, OutputStream stream) throws IOException {
+        // cached in memory rather than in a temporary file, closing it does not close the stream
+        ImageOutputStream output = new MemoryCacheImageOutputStream(stream);
+        boolean written = false;
         try {
-            f.write(bytes);
-            return bytes;
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(img, null, null), iwp);
+            written = true;
         } finally {
-            f.close();
+            if (written) {
+                writer.reset();
+            } else {
+                // do not reuse a writer left in an unknown state
+                IMAGE_WRITERS.get().values().remove(writer);
+                writer.dispose();
+            }
+            output.close();
         }
     }
 
-    byte[] getImageBytes(String type, float quality) throws IOException {
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
-        try {
-            saveImage(stream, type, quality);
-            return stream.toByteArray();
-        } finally {
-            stream.close();
+    private static ImageWriter getImageWriter(String format) throws IOException {
+        Map<String, ImageWriter> writers = IMAGE_WRITERS.get();
+        ImageWriter writer = writers.get(format);
+        if (writer == null) {
+            Iterator<ImageWriter> iter = ImageIO.getImageWritersByFormatName(format);
+            if (!iter.hasNext()) {
+                throw new IOException("No image writer found for format: " + format);
+            }
+            writer = iter.next();
+            writers.put(format, writer);
         }
+        return writer;
     }
 
     public void loadImage(String imageFile) throws IOException {
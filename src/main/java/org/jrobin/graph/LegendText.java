@@ -27,4 +27,9 @@ class LegendText extends CommentText {
 		super(text);
 		this.legendColor = legendColor;
 	}
+
+	void addToKey(RrdGraphCache.Key key) {
+		super.addToKey(key);
+		key.add(legendColor);
+	}
 }
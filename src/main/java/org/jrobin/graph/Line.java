@@ -27,4 +27,9 @@ class Line extends SourcedPlotElement {
 		super(srcName, color);
 		this.width = width;
 	}
+
+	void addToKey(RrdGraphCache.Key key) {
+		super.addToKey(key);
+		key.add(width);
+	}
 }
@@ -43,4 +43,7 @@ public class PercentileDef extends Source {
         dproc.addDatasource(name, m_sourceName, m_percentile, m_includenan);
     }
 
+    void addToKey(RrdGraphCache.Key key) {
+        key.add("PERCENTILE", name, m_sourceName, m_percentile, m_includenan);
+    }
 }
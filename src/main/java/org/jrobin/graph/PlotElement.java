@@ -26,4 +26,8 @@ class PlotElement {
 	PlotElement(Paint color) {
 		this.color = color;
 	}
+
+	void addToKey(RrdGraphCache.Key key) {
+		key.add(getClass().getSimpleName(), color);
+	}
 }
@@ -59,4 +59,9 @@ class PrintText extends CommentText {
 			trimIfGlue();
 		}
 	}
+
+	void addToKey(RrdGraphCache.Key key) {
+		super.addToKey(key);
+		key.add(srcName, consolFun, includedInGraph);
+	}
 }
@@ -24,7 +24,12 @@ import org.jrobin.data.DataProcessor;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Class which actually creates JRobin graphs (does the hard work).
@@ -37,6 +42,8 @@ public class RrdGraph implements RrdGraphConstants {
 	Mapper mapper;
 	RrdGraphInfo info = new RrdGraphInfo();
 	private String signature;
+	private final OutputStream stream;
+	private final boolean retainBytes;
 
 	/**
 	 * Creates graph from the corresponding {@link RrdGraphDef} object.
@@ -47,6 +54,59 @@ public class RrdGraph implements RrdGraphConstants {
 	 */
 	public RrdGraph(RrdGraphDef gdef) throws IOException, RrdException {
 		this.gdef = gdef;
+		this.stream = null;
+		this.retainBytes = true;
+		render();
+	}
+
+	/**
+	 * Creates graph from the corresponding {@link RrdGraphDef} object and encodes the image
+	 * directly to the given stream, without keeping its bytes in memory. The graph filename is
+	 * not written and the lazy option is ignored. The stream is flushed but not closed.
+	 *
+	 * @param gdef   Graph definition
+	 * @param stream Stream to write the image to
+	 * @throws IOException  Thrown in case of I/O error
+	 * @throws RrdException Thrown in case of JRobin related error
+	 */
+	public RrdGraph(RrdGraphDef gdef, OutputStream stream) throws IOException, RrdException {
+		this(gdef, stream, false);
+	}
+
+	/**
+	 * Creates graph from the corresponding {@link RrdGraphDef} object and writes the image to the
+	 * given stream. The graph filename is not written and the lazy option is ignored. The stream
+	 * is flushed but not closed.
+	 *
+	 * @param gdef        Graph definition
+	 * @param stream      Stream to write the image to
+	 * @param retainBytes true if image bytes should also be available from {@link RrdGraphInfo#getBytes()},
+	 *                    false if the image should be encoded directly to the stream
+	 * @throws IOException  Thrown in case of I/O error
+	 * @throws RrdException Thrown in case of JRobin related error
+	 */
+	public RrdGraph(RrdGraphDef gdef, OutputStream stream, boolean retainBytes) throws IOException, RrdException {
+		this.gdef = gdef;
+		this.stream = stream;
+		this.retainBytes = retainBytes;
+		render();
+	}
+
+	/**
+	 * Creates graph from the corresponding {@link RrdGraphDef} object and encodes the image
+	 * directly to the given channel, without keeping its bytes in memory. The graph filename is
+	 * not written and the lazy option is ignored. The channel is not closed.
+	 *
+	 * @param gdef    Graph definition
+	 * @param channel Channel to write the image to
+	 * @throws IOException  Thrown in case of I/O error
+	 * @throws RrdException Thrown in case of JRobin related error
+	 */
+	public RrdGraph(RrdGraphDef gdef, WritableByteChannel channel) throws IOException, RrdException {
+		this(gdef, Channels.newOutputStream(channel), false);
+	}
+
+	private void render() throws IOException, RrdException {
 		signature = gdef.getSignature();
 		worker = new ImageWorker(100, 100); // Dummy worker, just to start with something
 		try {
@@ -115,11 +175,25 @@ public class RrdGraph implements RrdGraphConstants {
 	}
 
 	private void saveImage() throws IOException {
-		if (!gdef.filename.equals("-")) {
-			info.bytes = worker.saveImage(gdef.filename, gdef.imageFormat, gdef.imageQuality);
-		}
-		else {
-			info.bytes = worker.getImageBytes(gdef.imageFormat, gdef.imageQuality);
+		if (!retainBytes) {
+			worker.saveImage(stream, gdef.imageFormat, gdef.imageQuality, gdef.pngCompressionLevel);
+			return;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		worker.saveImage(bytes, gdef.imageFormat, gdef.imageQuality, gdef.pngCompressionLevel);
+		info.bytes = bytes.toByteArray();
+		if (stream != null) {
+			stream.write(info.bytes);
+			stream.flush();
+		}
+		else if (!gdef.filename.equals(IN_MEMORY_IMAGE)) {
+			FileOutputStream file = new FileOutputStream(gdef.filename);
+			try {
+				file.write(info.bytes);
+			}
+			finally {
+				file.close();
+			}
 		}
 	}
 
@@ -221,28 +295,37 @@ public class RrdGraph implements RrdGraphConstants {
 		worker.clip(im.xorigin + 1, im.yorigin - gdef.height - 1, gdef.width - 1, gdef.height + 2);
 		double areazero = mapper.ytr((im.minval > 0.0) ? im.minval : (im.maxval < 0.0) ? im.maxval : 0.0);
 		double[] x = xtr(dproc.getTimestamps()), lastY = null;
+		// with several points per pixel column, only the points making a difference are drawn
+		Downsampler downsampler = x.length > 4 * im.xsize ? new Downsampler(x) : null;
 		// draw line, area and stack
 		for (PlotElement plotElement : gdef.plotElements) {
 			if (plotElement instanceof SourcedPlotElement) {
 				SourcedPlotElement source = (SourcedPlotElement) plotElement;
 				double[] y = ytr(source.getValues());
+				double[] xDraw = x, yDraw = y, lastYDraw = lastY;
+				if (downsampler != null) {
+					int[] indexes = lastY != null && source instanceof Stack ? downsampler.select(lastY, y) : downsampler.select(y);
+					xDraw = downsampler.getX(indexes);
+					yDraw = Downsampler.pick(y, indexes);
+					lastYDraw = lastY != null ? Downsampler.pick(lastY, indexes) : null;
+				}
 				if (source instanceof Line) {
-					worker.drawPolyline(x, y, source.color, new BasicStroke(((Line) source).width));
+					worker.drawPolyline(xDraw, yDraw, source.color, new BasicStroke(((Line) source).width));
 				}
 				else if (source instanceof Area) {
-					worker.fillPolygon(x, areazero, y, source.color);
+					worker.fillPolygon(xDraw, areazero, yDraw, source.color);
 				}
 				else if (source instanceof Stack) {
 					Stack stack = (Stack) source;
 					float width = stack.getParentLineWidth();
 					if (width >= 0F) {
 						// line
-						worker.drawPolyline(x, y, stack.color, new BasicStroke(width));
+						worker.drawPolyline(xDraw, yDraw, stack.color, new BasicStroke(width));
 					}
 					else {
 						// area
-						worker.fillPolygon(x, lastY, y, stack.color);
-						worker.drawPolyline(x, lastY, stack.getParentColor(), new BasicStroke(0));
+						worker.fillPolygon(xDraw, lastYDraw, yDraw, stack.color);
+						worker.drawPolyline(xDraw, lastYDraw, stack.getParentColor(), new BasicStroke(0));
 					}
 				}
 				else {
@@ -544,7 +627,7 @@ public class RrdGraph implements RrdGraphConstants {
 
 	private boolean lazyCheck() {
 		// redraw if lazy option is not set or file does not exist
-		if (!gdef.lazy || !Util.fileExists(gdef.filename)) {
+		if (!gdef.lazy || stream != null || !Util.fileExists(gdef.filename)) {
 			return false; // 'false' means 'redraw'
 		}
 		// redraw if not enough time has passed
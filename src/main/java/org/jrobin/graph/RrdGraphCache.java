@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.graph;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Paint;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jrobin.core.RrdException;
+
+/**
+ * In-memory cache of rendered graphs. A graph definition is rendered again only if it differs from
+ * a cached one or if the last archive update time of one of its RRD files changed; otherwise the
+ * cached {@link RrdGraphInfo} is returned, and its image is written to the graph file if the graph
+ * is not an in-memory one. The cache keeps at most the given number of bytes, evicting the least
+ * recently used graphs first.<p>
+ * <p/>
+ * Start and end times are part of the definition: align them to the RRD step so that graphs
+ * requested within the same step are shared. Lazy graphs, graphs with custom
+ * ({@link org.jrobin.data.Plottable}) sources, graphs with CDEF expressions using NOW, TIME,
+ * LTIME or RANDOM and graphs painted with other paints than plain colors are never cached.<p>
+ * <p/>
+ * Each request opens the RRD files of the graph to read their last archive update times. Use
+ * {@link RrdGraphDef#setPoolUsed(boolean)} so that files are opened once through the
+ * {@link org.jrobin.core.RrdDbPool} rather than on every request.<p>
+ * <p/>
+ * Cached {@link RrdGraphInfo} objects are shared between callers and must not be modified.
+ * The cache may be used from several threads.
+ */
+public class RrdGraphCache {
+	private final long m_maxBytes;
+	private final LinkedHashMap<String, Entry> m_entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private long m_byteCount = 0;
+	private long m_hitCount = 0;
+	private long m_missCount = 0;
+
+	/**
+	 * Creates a cache holding at most the given number of bytes of images and definitions.
+	 *
+	 * @param maxBytes Maximum size of the cache in bytes
+	 */
+	public RrdGraphCache(final long maxBytes) {
+		m_maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the graph for the given definition, rendering it only if no up-to-date graph is cached.
+	 *
+	 * @param gdef Graph definition
+	 * @return Graph information (width, height, filename, image bytes, etc...)
+	 * @throws IOException  Thrown in case of I/O error
+	 * @throws RrdException Thrown in case of JRobin related error
+	 */
+	public RrdGraphInfo getRrdGraphInfo(final RrdGraphDef gdef) throws IOException, RrdException {
+		final String key = gdef.lazy ? null : getKey(gdef);
+		if (key == null) {
+			return new RrdGraph(gdef).getRrdGraphInfo();
+		}
+		final String updateTimes = getUpdateTimes(gdef);
+		RrdGraphInfo info = null;
+		synchronized (this) {
+			final Entry entry = m_entries.get(key);
+			if (entry != null && entry.updateTimes.equals(updateTimes)) {
+				m_hitCount++;
+				info = entry.info;
+			}
+			else {
+				m_missCount++;
+			}
+		}
+		if (info != null) {
+			writeImage(info);
+			return info;
+		}
+		// rendered without holding the lock, concurrent misses on the same graph may render it twice
+		info = new RrdGraph(gdef).getRrdGraphInfo();
+		put(key, new Entry(updateTimes, info, 2L * key.length() + info.getByteCount()));
+		return info;
+	}
+
+	private static String getKey(final RrdGraphDef gdef) {
+		final Key key = new Key();
+		gdef.addToKey(key);
+		return key.get();
+	}
+
+	private static String getUpdateTimes(final RrdGraphDef gdef) throws IOException, RrdException {
+		final StringBuilder updateTimes = new StringBuilder();
+		for (final Source source : gdef.sources) {
+			if (source instanceof Def) {
+				updateTimes.append(((Def) source).getLastArchiveUpdateTime(gdef.poolUsed)).append(' ');
+			}
+		}
+		return updateTimes.toString();
+	}
+
+	private static void writeImage(final RrdGraphInfo info) throws IOException {
+		if (info.bytes != null && !info.filename.equals(RrdGraphConstants.IN_MEMORY_IMAGE)) {
+			final FileOutputStream out = new FileOutputStream(info.filename);
+			try {
+				out.write(info.bytes);
+			}
+			finally {
+				out.close();
+			}
+		}
+	}
+
+	private synchronized void put(final String key, final Entry entry) {
+		final Entry previous = m_entries.remove(key);
+		if (previous != null) {
+			m_byteCount -= previous.byteCount;
+		}
+		if (entry.byteCount > m_maxBytes) {
+			return;
+		}
+		m_entries.put(key, entry);
+		m_byteCount += entry.byteCount;
+		final Iterator<Map.Entry<String, Entry>> eldest = m_entries.entrySet().iterator();
+		while (m_byteCount > m_maxBytes) {
+			m_byteCount -= eldest.next().getValue().byteCount;
+			eldest.remove();
+		}
+	}
+
+	/**
+	 * Removes all graphs from the cache.
+	 */
+	public synchronized void clear() {
+		m_entries.clear();
+		m_byteCount = 0;
+	}
+
+	/**
+	 * Returns the maximum size of the cache.
+	 *
+	 * @return Maximum size in bytes
+	 */
+	public long getMaxBytes() {
+		return m_maxBytes;
+	}
+
+	/**
+	 * Returns the current size of the cache.
+	 *
+	 * @return Size of cached images and definitions in bytes
+	 */
+	public synchronized long getByteCount() {
+		return m_byteCount;
+	}
+
+	/**
+	 * Returns the number of cached graphs.
+	 *
+	 * @return Number of cached graphs
+	 */
+	public synchronized int getGraphCount() {
+		return m_entries.size();
+	}
+
+	/**
+	 * Returns the number of graphs returned from the cache.
+	 *
+	 * @return Number of cache hits
+	 */
+	public synchronized long getHitCount() {
+		return m_hitCount;
+	}
+
+	/**
+	 * Returns the number of cacheable graphs which had to be rendered.
+	 *
+	 * @return Number of cache misses
+	 */
+	public synchronized long getMissCount() {
+		return m_missCount;
+	}
+
+	private static final class Entry {
+		final String updateTimes;
+		final RrdGraphInfo info;
+		final long byteCount;
+
+		Entry(final String updateTimes, final RrdGraphInfo info, final long byteCount) {
+			this.updateTimes = updateTimes;
+			this.info = info;
+			this.byteCount = byteCount;
+		}
+	}
+
+	/**
+	 * Key describing everything a graph definition draws, built by the definition and its elements.
+	 */
+	static final class Key {
+		private final StringBuilder m_buffer = new StringBuilder();
+		private boolean m_cacheable = true;
+
+		void add(final Object... values) {
+			for (final Object value : values) {
+				if (value == null) {
+					m_buffer.append("-;");
+					continue;
+				}
+				final String text;
+				if (value instanceof Color) {
+					text = Integer.toHexString(((Color) value).getRGB());
+				}
+				else if (value instanceof Font) {
+					final Font font = (Font) value;
+					m_cacheable &= !font.isTransformed();
+					text = font.getName() + "/" + font.getStyle() + "/" + font.getSize2D();
+				}
+				else if (value instanceof Paint) {
+					// gradients and textures have no value based description
+					m_cacheable = false;
+					continue;
+				}
+				else {
+					text = value.toString();
+				}
+				// length prefixed, so that values cannot run into each other
+				m_buffer.append(text.length()).append(':').append(text).append(';');
+			}
+		}
+
+		// images are drawn into the graph, they are described by their path and modification time
+		void addFile(final String path) {
+			add(path, path == null ? null : new File(path).lastModified());
+		}
+
+		void setUncacheable() {
+			m_cacheable = false;
+		}
+
+		String get() {
+			return m_cacheable ? m_buffer.toString() : null;
+		}
+	}
+}
@@ -242,6 +242,10 @@ public interface RrdGraphConstants {
 	 * Default image quality, used only for jpeg graphs
 	 */
 	float DEFAULT_IMAGE_QUALITY = 0.8F; // only for jpegs, not used for png/gif
+	/**
+	 * Default PNG compression level, -1 leaves it to the image writer
+	 */
+	int DEFAULT_PNG_COMPRESSION_LEVEL = -1;
 	/**
 	 * Default value base
 	 */
@@ -78,6 +78,7 @@ public class RrdGraphDef implements RrdGraphConstants {
     String imageInfo = null; // ok
     String imageFormat = DEFAULT_IMAGE_FORMAT; // ok
     float imageQuality = DEFAULT_IMAGE_QUALITY; // ok
+    int pngCompressionLevel = DEFAULT_PNG_COMPRESSION_LEVEL; // ok
     String backgroundImage = null; // ok
     String overlayImage = null; // ok
     String unit = null; // ok
@@ -1159,6 +1160,17 @@ public class RrdGraphDef implements RrdGraphConstants {
         this.imageQuality = imageQuality;
     }
 
+    /**
+     * Sets the deflate compression level of PNG images. Lower levels encode faster but create
+     * bigger files. Only honored by image writers supporting explicit compression (Java 9 and later).
+     *
+     * @param pngCompressionLevel 0 (no compression) to 9 (best compression), or -1 for the
+     *                            default level of the image writer
+     */
+    public void setPngCompressionLevel(int pngCompressionLevel) {
+        this.pngCompressionLevel = pngCompressionLevel;
+    }
+
     /**
      * Controls if the chart area of the image should be antialiased or not.
      *
@@ -1218,4 +1230,35 @@ public class RrdGraphDef implements RrdGraphConstants {
         }
         return false;
     }
+
+    void addToKey(RrdGraphCache.Key key) {
+        key.add(antiAliasing, filename, startTime, endTime);
+        if (timeAxisSetting != null) {
+            key.add(timeAxisSetting.secPerPix, timeAxisSetting.minorUnit, timeAxisSetting.minorUnitCount,
+                    timeAxisSetting.majorUnit, timeAxisSetting.majorUnitCount, timeAxisSetting.labelUnit,
+                    timeAxisSetting.labelUnitCount, timeAxisSetting.labelSpan, timeAxisSetting.format);
+        }
+        if (valueAxisSetting != null) {
+            key.add(valueAxisSetting.gridStep, valueAxisSetting.labelFactor);
+        }
+        key.add(altYGrid, noMinorGrid, altYMrtg, altAutoscale, altAutoscaleMax, unitsExponent, unitsLength,
+                verticalLabel, width, height, interlaced, imageInfo, imageFormat, imageQuality,
+                pngCompressionLevel);
+        key.addFile(backgroundImage);
+        key.addFile(overlayImage);
+        key.add(unit, signature, minValue, maxValue, rigid, base, logarithmic);
+        key.add((Object[]) colors);
+        key.add(noLegend, onlyGraph, forceRulesLegend, title, step);
+        key.add((Object[]) fonts);
+        key.add(drawXGrid, drawYGrid, firstDayOfWeek, showSignature, fontDir);
+        for (Source source : sources) {
+            source.addToKey(key);
+        }
+        for (CommentText comment : comments) {
+            comment.addToKey(key);
+        }
+        for (PlotElement plotElement : plotElements) {
+            plotElement.addToKey(key);
+        }
+    }
 }
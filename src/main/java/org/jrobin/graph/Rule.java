@@ -29,4 +29,9 @@ class Rule extends PlotElement {
 		this.legend = legend;
 		this.width = width;
 	}
+
+	void addToKey(RrdGraphCache.Key key) {
+		super.addToKey(key);
+		key.add(width);
+	}
 }
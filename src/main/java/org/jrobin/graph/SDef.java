@@ -32,4 +32,8 @@ class SDef extends Source {
 	void requestData(DataProcessor dproc) {
 		dproc.addDatasource(name, defName, consolFun);
 	}
+
+	void addToKey(RrdGraphCache.Key key) {
+		key.add("SDEF", name, defName, consolFun);
+	}
 }
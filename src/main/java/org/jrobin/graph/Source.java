@@ -28,4 +28,9 @@ abstract class Source {
 	}
 
 	abstract void requestData(DataProcessor dproc);
+
+	// sources which cannot be described by a key, like plottables, are not cached
+	void addToKey(RrdGraphCache.Key key) {
+		key.setUncacheable();
+	}
 }
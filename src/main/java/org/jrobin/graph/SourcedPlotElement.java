@@ -48,4 +48,9 @@ class SourcedPlotElement extends PlotElement {
 	double getMaxValue() {
 		return Util.max(values);
 	}
+
+	void addToKey(RrdGraphCache.Key key) {
+		super.addToKey(key);
+		key.add(srcName);
+	}
 }
@@ -55,4 +55,9 @@ class Stack extends SourcedPlotElement {
 	Paint getParentColor() {
 		return parent.color;
 	}
+
+	void addToKey(RrdGraphCache.Key key) {
+		super.addToKey(key);
+		key.add(parent.srcName);
+	}
 }
@@ -31,4 +31,9 @@ class VRule extends Rule {
 	void setLegendVisibility(long minval, long maxval, boolean forceLegend) {
 		legend.enabled &= (forceLegend || (timestamp >= minval && timestamp <= maxval));
 	}
+
+	void addToKey(RrdGraphCache.Key key) {
+		super.addToKey(key);
+		key.add(timestamp);
+	}
 }
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.cmd;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jrobin.core.RrdException;
+import org.jrobin.graph.RrdGraphInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs update, xport and graph commands on separate files from several threads. Results of
+ * concurrent commands are compared with the same commands run alone.
+ */
+public class RrdCommanderTest {
+	private static final long START = 1000000000L;
+	private static final long STEP = 60;
+	private static final int UPDATES = 1000;
+	// an xport and a graph are run after this number of updates
+	private static final int QUERY_INTERVAL = 250;
+
+	private boolean m_standardOutUsed;
+	private int m_threadCount;
+
+	@Before
+	public void setUp() {
+		m_standardOutUsed = RrdCommander.isStandardOutUsed();
+		RrdCommander.setStandardOutUsed(false);
+		m_threadCount = Math.max(Runtime.getRuntime().availableProcessors(), 4);
+		new File("target").mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		RrdCommander.setStandardOutUsed(m_standardOutUsed);
+		for (int i = 0; i < m_threadCount; i++) {
+			new File(getPath(i)).delete();
+		}
+	}
+
+	private static String getPath(final int index) {
+		return "target/commander-" + index + ".jrb";
+	}
+
+	private static String getXportCommand(final int index) {
+		return "xport --start " + START + " --end " + (START + UPDATES * STEP) + " --step " + STEP + " --maxrows " + (UPDATES + 1) +
+				" DEF:in=" + getPath(index) + ":in:AVERAGE CDEF:total=in,8,* XPORT:in XPORT:total";
+	}
+
+	private static String getGraphCommand(final int index) {
+		return "graph - --start " + START + " --end " + (START + UPDATES * STEP) +
+				" DEF:in=" + getPath(index) + ":in:AVERAGE PRINT:in:MAX:%10.4lf PRINT:in:AVERAGE:%10.4lf LINE1:in#FF0000";
+	}
+
+	// creates and updates the file, returns the results of the last xport and graph
+	private static Object[] run(final int index) throws Exception {
+		RrdCommander.execute("create " + getPath(index) + " --start " + START + " --step " + STEP +
+				" DS:in:GAUGE:" + (2 * STEP) + ":U:U RRA:AVERAGE:0.5:1:" + UPDATES);
+		Object xport = null;
+		Object graph = null;
+		for (int i = 1; i <= UPDATES; i++) {
+			final long time = START + i * STEP;
+			assertEquals(time, RrdCommander.execute("update " + getPath(index) + " " + time + ":" + (index * 1000 + i % 100)));
+			if (i % QUERY_INTERVAL == 0) {
+				xport = RrdCommander.execute(getXportCommand(index));
+				graph = RrdCommander.execute(getGraphCommand(index));
+			}
+		}
+		assertEquals(START + UPDATES * STEP, RrdCommander.execute("last " + getPath(index)));
+		return new Object[] { xport, graph };
+	}
+
+	private void runThreads(final int threadCount, final Object[][] results) throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final Thread[] threads = new Thread[threadCount];
+		for (int t = 0; t < threadCount; t++) {
+			final int index = t;
+			threads[t] = new Thread("commander-" + t) {
+				public void run() {
+					try {
+						start.await();
+						results[index] = RrdCommanderTest.run(index);
+					}
+					catch (final Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		start.countDown();
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+	}
+
+	@Test
+	public void testConcurrentCommands() throws Exception {
+		final Object[][] results = new Object[m_threadCount][];
+		runThreads(m_threadCount, results);
+		for (int t = 0; t < m_threadCount; t++) {
+			assertEquals(RrdCommander.execute(getXportCommand(t)), results[t][0]);
+			final RrdGraphInfo expected = (RrdGraphInfo) RrdCommander.execute(getGraphCommand(t));
+			final RrdGraphInfo actual = (RrdGraphInfo) results[t][1];
+			assertEquals(Arrays.asList(expected.getPrintLines()), Arrays.asList(actual.getPrintLines()));
+		}
+	}
+
+	@Test
+	public void testUnknownCommand() throws Exception {
+		try {
+			RrdCommander.execute("rrdtool resize target/commander-0.jrb");
+			fail("Unknown command should be rejected");
+		}
+		catch (final RrdException e) {
+			assertEquals("Unknown RRDTool command: rrdtool resize target/commander-0.jrb", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.convertor;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jrobin.core.Archive;
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.jrrd.RRDatabaseTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConvertorTest {
+	private static final int FILE_COUNT = 6;
+
+	private final List<File> m_files = new ArrayList<File>();
+	private final List<String> m_events = Collections.synchronizedList(new ArrayList<String>());
+
+	@Before
+	public void setUp() throws Exception {
+		new File("target").mkdirs();
+		for (int i = 0; i < FILE_COUNT; i++) {
+			final File file = new File("target/convertor-" + i + ".rrd");
+			RRDatabaseTest.writeDatabase(file, i % 2 == 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+			m_files.add(file);
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (final File file : m_files) {
+			file.delete();
+			new File(Convertor.getDestPath(file.getPath())).delete();
+		}
+	}
+
+	private String[] getPaths() {
+		final String[] paths = new String[m_files.size()];
+		for (int i = 0; i < paths.length; i++) {
+			paths[i] = m_files.get(i).getPath();
+		}
+		return paths;
+	}
+
+	private Convertor createConvertor() {
+		final Convertor convertor = new Convertor();
+		convertor.setThreadCount(3);
+		convertor.setListener(new ConvertorListener() {
+			public void fileConverted(final String sourcePath, final String destPath, final long millis) {
+				m_events.add("converted " + new File(sourcePath).getName());
+			}
+
+			public void fileSkipped(final String sourcePath, final String destPath) {
+				m_events.add("skipped " + new File(sourcePath).getName());
+			}
+
+			public void fileFailed(final String sourcePath, final Exception e) {
+				m_events.add("failed " + new File(sourcePath).getName());
+			}
+		});
+		return convertor;
+	}
+
+	@Test
+	public void testConvertAll() throws Exception {
+		final Convertor convertor = createConvertor();
+		convertor.convertAll(getPaths());
+		assertEquals(FILE_COUNT, convertor.getGoodCount());
+		assertEquals(0, convertor.getBadCount());
+		assertEquals(FILE_COUNT, m_events.size());
+		for (final File file : m_files) {
+			final String destPath = Convertor.getDestPath(file.getPath());
+			assertFalse(new File(destPath + ".tmp").exists());
+			final RrdDb rrdDb = new RrdDb(destPath, true);
+			try {
+				assertEquals(2, rrdDb.getArcCount());
+				// the current row of the first archive is 3, its oldest row is 4
+				final Archive archive = rrdDb.getArchive(0);
+				for (int ds = 0; ds < 2; ds++) {
+					final double[] values = archive.getRobin(ds).getValues();
+					assertEquals(10, values.length);
+					for (int i = 0; i < values.length; i++) {
+						assertEquals(RRDatabaseTest.getValue(0, (4 + i) % 10, ds), values[i], 0);
+					}
+				}
+			}
+			finally {
+				rrdDb.close();
+			}
+		}
+	}
+
+	@Test
+	public void testResume() throws Exception {
+		final Convertor convertor = createConvertor();
+		assertTrue(convertor.convertFile(m_files.get(0).getPath()));
+		convertor.setResume(true);
+		m_events.clear();
+		convertor.convertAll(getPaths());
+		assertEquals(FILE_COUNT - 1, convertor.getGoodCount());
+		assertEquals(1, convertor.getSkippedCount());
+		assertTrue(m_events.contains("skipped convertor-0.rrd"));
+		// a newer RRDTool file is converted again
+		final File source = m_files.get(0);
+		source.setLastModified(new File(Convertor.getDestPath(source.getPath())).lastModified() + 2000);
+		assertTrue(convertor.convertFile(source.getPath()));
+	}
+
+	@Test
+	public void testFailures() throws Exception {
+		final Convertor convertor = createConvertor();
+		convertor.convertAll(new String[] { "target/convertor-missing.rrd", getPaths()[0] });
+		assertEquals(1, convertor.getGoodCount());
+		assertEquals(1, convertor.getBadCount());
+		assertTrue(m_events.contains("failed convertor-missing.rrd"));
+	}
+
+	@Test
+	public void testResumeMissingSource() throws Exception {
+		final Convertor convertor = createConvertor();
+		convertor.setResume(true);
+		convertor.convertAll(new String[] { "target/convertor-missing.rrd" });
+		assertEquals(0, convertor.getSkippedCount());
+		assertEquals(1, convertor.getBadCount());
+		assertTrue(m_events.contains("failed convertor-missing.rrd"));
+	}
+}
@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.core;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class RrdBackendTest {
+	private static final int LENGTH = 20000;
+
+	@Test
+	public void testFileBackend() throws Exception {
+		checkPrimitives(RrdFileBackendFactory.NAME);
+	}
+
+	@Test
+	public void testNioBackend() throws Exception {
+		checkPrimitives(RrdNioBackendFactory.NAME);
+	}
+
+	@Test
+	public void testSharedNioBackend() throws Exception {
+		checkPrimitives(RrdSharedNioBackendFactory.NAME);
+	}
+
+	@Test
+	public void testSharedNioMapping() throws Exception {
+		final RrdSharedNioBackendFactory factory = (RrdSharedNioBackendFactory) RrdBackendFactory.getFactory(RrdSharedNioBackendFactory.NAME);
+		new File("target").mkdirs();
+		final String path = "target/backend-shared.jrb";
+		new File(path).delete();
+		final RrdBackend writer = factory.open(path, false);
+		writer.setLength(LENGTH);
+		// a reader opened through a different path string shares the mapping
+		final RrdBackend reader = factory.open(new File(path).getAbsolutePath(), true);
+		assertEquals(1, factory.getMappedFileCount());
+		assertEquals(LENGTH, reader.getLength());
+		writer.writeDouble(800, Math.E);
+		assertEquals(Math.E, reader.readDouble(800), 0.0);
+		writer.close();
+		assertEquals(1, factory.getMappedFileCount());
+		assertEquals(Math.E, reader.readDouble(800), 0.0);
+		reader.close();
+		assertEquals(0, factory.getMappedFileCount());
+		try {
+			reader.readDouble(800);
+			fail("Closed backend should not be readable");
+		}
+		catch (final IOException e) {
+			// expected
+		}
+
+		// a read-only mapping is upgraded when a writer comes along
+		final RrdBackend first = factory.open(path, true);
+		final RrdBackend second = factory.open(path, false);
+		second.writeLong(16, 42L);
+		assertEquals(42L, first.readLong(16));
+		first.close();
+		second.close();
+		assertEquals(0, factory.getMappedFileCount());
+	}
+
+	@Test
+	public void testSyncManager() throws Exception {
+		final SyncManager syncManager = new SyncManager(1);
+		new File("target").mkdirs();
+		final String path = "target/backend-sync.jrb";
+		new File(path).delete();
+		checkSync(new RrdNioBackend(path, false, syncManager), syncManager);
+		syncManager.shutdown();
+		assertNull(syncManager.getTimer());
+	}
+
+	@Test
+	public void testSharedNioSyncManager() throws Exception {
+		final RrdSharedNioBackendFactory factory = new RrdSharedNioBackendFactory();
+		final SyncManager syncManager = factory.getSyncManager();
+		syncManager.setSyncPeriod(1);
+		new File("target").mkdirs();
+		final String path = "target/backend-shared-sync.jrb";
+		new File(path).delete();
+		checkSync(factory.open(path, false), syncManager);
+	}
+
+	// the written file is synced once by the background timer, and unregistered when closed
+	private void checkSync(final RrdBackend backend, final SyncManager syncManager) throws Exception {
+		try {
+			backend.setLength(LENGTH);
+			assertEquals(1, syncManager.getFileCount());
+			assertNotNull(syncManager.getTimer());
+			backend.writeDouble(800, Math.PI);
+			final long timeout = System.currentTimeMillis() + 5000;
+			while (syncManager.getSyncCount() == 0 && System.currentTimeMillis() < timeout) {
+				Thread.sleep(50);
+			}
+			assertEquals(1, syncManager.getSyncCount());
+			assertTrue(syncManager.getMaxSyncTime() >= syncManager.getAverageSyncTime());
+			// a file which is not written again is not synced again
+			Thread.sleep(1500);
+			assertEquals(1, syncManager.getSyncCount());
+		}
+		finally {
+			backend.close();
+		}
+		assertEquals(0, syncManager.getFileCount());
+		assertNull(syncManager.getTimer());
+	}
+
+	@Test
+	public void testNioByteBufferBackend() throws Exception {
+		checkPrimitives(RrdNioByteBufferBackendFactory.NAME);
+	}
+
+	@Test
+	public void testMemoryBackend() throws Exception {
+		checkPrimitives(RrdMemoryBackendFactory.NAME);
+	}
+
+	@Test
+	public void testDefaultImplementation() throws Exception {
+		checkPrimitives(RrdJRobin14FileBackendFactory.NAME);
+	}
+
+	/**
+	 * Writes primitives through the given backend and checks the stored bytes against
+	 * the big-endian layout produced by java.nio, then reads them back.
+	 */
+	private void checkPrimitives(final String factoryName) throws Exception {
+		new File("target").mkdirs();
+		final String path = "target/backend-" + factoryName + ".jrb";
+		new File(path).delete();
+		final RrdBackend backend = RrdBackendFactory.getFactory(factoryName).open(path, false);
+		try {
+			backend.setLength(LENGTH);
+			final ByteBuffer expected = ByteBuffer.allocate(LENGTH);
+
+			backend.writeInt(0, 0xCAFEBABE);
+			expected.putInt(0, 0xCAFEBABE);
+			backend.writeLong(4, -1234567890123L);
+			expected.putLong(4, -1234567890123L);
+			backend.writeDouble(12, Math.PI);
+			expected.putDouble(12, Math.PI);
+			// more values than fit in a single file backend buffer
+			final int count = 2000;
+			backend.writeDouble(20, Double.NaN, count);
+			for (int i = 0; i < count; i++) {
+				expected.putDouble(20 + 8 * i, Double.NaN);
+			}
+			final double[] values = new double[count + 2];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = i * 1.5 - 100;
+			}
+			backend.writeDouble(16020, values, 1, 400);
+			for (int i = 0; i < 400; i++) {
+				expected.putDouble(16020 + 8 * i, values[i + 1]);
+			}
+
+			assertArrayEquals(expected.array(), backend.readAll());
+
+			assertEquals(0xCAFEBABE, backend.readInt(0));
+			assertEquals(-1234567890123L, backend.readLong(4));
+			assertEquals(Math.PI, backend.readDouble(12), 0.0);
+			final double[] nans = new double[count];
+			backend.readDouble(20, nans, 0, count);
+			for (final double nan : nans) {
+				assertTrue(Double.isNaN(nan));
+			}
+			final double[] read = new double[402];
+			backend.readDouble(16020, read, 2, 400);
+			for (int i = 0; i < 400; i++) {
+				assertEquals(values[i + 1], read[i + 2], 0.0);
+			}
+		}
+		finally {
+			backend.close();
+		}
+	}
+}
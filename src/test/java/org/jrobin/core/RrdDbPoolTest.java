@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.core;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class RrdDbPoolTest {
+	private static final int FILE_COUNT = 10;
+
+	private RrdDbPool m_pool;
+	private String[] m_paths = new String[FILE_COUNT];
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		if (!RrdBackendFactory.isInstanceCreated()) {
+			RrdBackendFactory.setDefaultFactory("FILE");
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		m_pool = RrdDbPool.getInstance();
+		new File("target").mkdirs();
+		for (int i = 0; i < FILE_COUNT; i++) {
+			m_paths[i] = "target/pool-" + i + ".jrb";
+			final RrdDef def = new RrdDef(m_paths[i], 1000000000L, 300);
+			def.addDatasource("test", "GAUGE", 600, Double.NaN, Double.NaN);
+			def.addArchive("AVERAGE", 0.5, 1, 100);
+			new RrdDb(def).close();
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		m_pool.setIdleCaching(false);
+		m_pool.setCapacity(RrdDbPool.INITIAL_CAPACITY);
+	}
+
+	@Test
+	public void testSameReference() throws Exception {
+		final RrdDb first = m_pool.requestRrdDb(m_paths[0]);
+		final RrdDb second = m_pool.requestRrdDb(m_paths[0]);
+		assertSame(first, second);
+		assertEquals(1, m_pool.getOpenFileCount());
+		m_pool.release(first);
+		assertFalse(first.isClosed());
+		m_pool.release(second);
+		assertTrue(first.isClosed());
+		assertEquals(0, m_pool.getOpenFileCount());
+	}
+
+	@Test(expected = RrdException.class)
+	public void testReleaseNotRequested() throws Exception {
+		final RrdDb rrdDb = new RrdDb(m_paths[0], true);
+		try {
+			m_pool.release(rrdDb);
+		}
+		finally {
+			rrdDb.close();
+		}
+	}
+
+	@Test
+	public void testBlocksWhenFull() throws Exception {
+		m_pool.setCapacity(1);
+		final RrdDb first = m_pool.requestRrdDb(m_paths[0]);
+		final CountDownLatch done = new CountDownLatch(1);
+		final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+		final Thread thread = new Thread() {
+			public void run() {
+				try {
+					m_pool.release(m_pool.requestRrdDb(m_paths[1]));
+				}
+				catch (Exception e) {
+					failure.set(e);
+				}
+				done.countDown();
+			}
+		};
+		thread.start();
+		// hits on open files must not wait for the blocked request
+		m_pool.release(m_pool.requestRrdDb(m_paths[0]));
+		assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+		m_pool.release(first);
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertNull(failure.get());
+		assertEquals(0, m_pool.getOpenFileCount());
+	}
+
+	@Test
+	public void testIdleCaching() throws Exception {
+		m_pool.setIdleCaching(true);
+		final RrdDb first = m_pool.requestRrdDb(m_paths[0]);
+		m_pool.release(first);
+		assertFalse(first.isClosed());
+		assertEquals(1, m_pool.getIdleFileCount());
+		final long hits = m_pool.getPoolHitsCount();
+		final RrdDb second = m_pool.requestRrdDb(m_paths[0]);
+		assertSame(first, second);
+		assertEquals(hits + 1, m_pool.getPoolHitsCount());
+		assertEquals(0, m_pool.getIdleFileCount());
+		m_pool.release(second);
+		m_pool.setIdleCaching(false);
+		assertTrue(first.isClosed());
+		assertEquals(0, m_pool.getOpenFileCount());
+	}
+
+	@Test
+	public void testEvictsIdleWhenFull() throws Exception {
+		m_pool.setCapacity(2);
+		m_pool.setIdleCaching(true);
+		final long evictions = m_pool.getEvictionCount();
+		final RrdDb[] dbs = new RrdDb[3];
+		for (int i = 0; i < dbs.length; i++) {
+			dbs[i] = m_pool.requestRrdDb(m_paths[i]);
+			m_pool.release(dbs[i]);
+		}
+		// the least recently released file makes room for the third one
+		assertTrue(dbs[0].isClosed());
+		assertFalse(dbs[1].isClosed());
+		assertFalse(dbs[2].isClosed());
+		assertEquals(evictions + 1, m_pool.getEvictionCount());
+		assertEquals(2, m_pool.getOpenFileCount());
+		assertTrue(m_pool.getAverageOpenTime() > 0);
+		m_pool.setIdleCaching(false);
+		assertEquals(0, m_pool.getOpenFileCount());
+	}
+
+	@Test
+	public void testIdleCachingBlocksWhenAllUsed() throws Exception {
+		m_pool.setCapacity(1);
+		m_pool.setIdleCaching(true);
+		final RrdDb first = m_pool.requestRrdDb(m_paths[0]);
+		final CountDownLatch done = new CountDownLatch(1);
+		final Thread thread = new Thread() {
+			public void run() {
+				try {
+					m_pool.release(m_pool.requestRrdDb(m_paths[1]));
+				}
+				catch (Exception e) {
+					// checked below
+				}
+				done.countDown();
+			}
+		};
+		thread.start();
+		assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+		m_pool.release(first);
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertTrue(first.isClosed());
+		assertEquals(1, m_pool.getIdleFileCount());
+	}
+
+	@Test
+	public void testConcurrentRequests() throws Exception {
+		runConcurrentRequests();
+	}
+
+	@Test
+	public void testConcurrentRequestsWithIdleCaching() throws Exception {
+		m_pool.setIdleCaching(true);
+		runConcurrentRequests();
+		assertTrue(m_pool.getOpenFileCount() <= 4);
+		m_pool.setIdleCaching(false);
+		assertEquals(0, m_pool.getOpenFileCount());
+	}
+
+	private void runConcurrentRequests() throws Exception {
+		m_pool.setCapacity(4);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			final int offset = t;
+			threads[t] = new Thread() {
+				public void run() {
+					try {
+						for (int i = 0; i < 200; i++) {
+							final RrdDb rrdDb = m_pool.requestRrdDb(m_paths[(offset + i) % FILE_COUNT]);
+							assertFalse(rrdDb.isClosed());
+							rrdDb.getLastUpdateTime();
+							m_pool.release(rrdDb);
+						}
+					}
+					catch (Throwable e) {
+						failure.set(e);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		assertNull(failure.get());
+		if (!m_pool.isIdleCaching()) {
+			assertEquals(0, m_pool.getOpenFileCount());
+		}
+	}
+}
@@ -0,0 +1,493 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.core;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class RrdDbTest {
+	private static final long START = 1000000000L;
+	private static final long STEP = 60;
+	private static final int SAMPLES = 5000;
+
+	private RrdDb createRrdDb(final String path) throws Exception {
+		return createRrdDb(path, RrdBackendFactory.getFactory(RrdMemoryBackendFactory.NAME));
+	}
+
+	private RrdDb createRrdDb(final String path, final RrdBackendFactory factory) throws Exception {
+		final RrdDef def = new RrdDef(path, START, STEP);
+		def.addDatasource("gauge", "GAUGE", 2 * STEP, Double.NaN, Double.NaN);
+		def.addDatasource("counter", "COUNTER", 2 * STEP, 0, Double.NaN);
+		def.addDatasource("derive", "DERIVE", 2 * STEP, Double.NaN, Double.NaN);
+		def.addDatasource("absolute", "ABSOLUTE", 2 * STEP, 0, 1000);
+		def.addArchive("AVERAGE", 0.5, 1, 500);
+		def.addArchive("MIN", 0.5, 5, 300);
+		def.addArchive("MAX", 0.5, 7, 300);
+		def.addArchive("LAST", 0.5, 12, 300);
+		return new RrdDb(def, factory);
+	}
+
+	private long[] createTimes() {
+		final long[] times = new long[SAMPLES];
+		long time = START;
+		for (int i = 0; i < SAMPLES; i++) {
+			// irregular steps with an occasional gap longer than the heartbeat
+			time += (i % 97 == 0) ? 7 * STEP : 13 + (i * 31) % 90;
+			times[i] = time;
+		}
+		return times;
+	}
+
+	private double[][] createValues() {
+		final double[][] values = new double[SAMPLES][];
+		for (int i = 0; i < SAMPLES; i++) {
+			final double nan = (i % 41 == 0) ? Double.NaN : 0;
+			values[i] = new double[] { Math.sin(i / 10.0) * 100 + nan, i * 1000.0 + nan, (i % 300) * 5.0, i % 50 };
+		}
+		return values;
+	}
+
+	@Test
+	public void testStoreBatchMatchesSingleUpdates() throws Exception {
+		final long[] times = createTimes();
+		final double[][] values = createValues();
+		final RrdDb single = createRrdDb("batch-single");
+		final RrdDb batch = createRrdDb("batch-batch");
+		try {
+			for (int i = 0; i < SAMPLES; i++) {
+				single.createSample(times[i]).setValues(values[i]).update();
+			}
+			// two batches, to check that state is carried over between them
+			final int split = SAMPLES / 3;
+			final long[] firstTimes = new long[split];
+			final double[][] firstValues = new double[split][];
+			System.arraycopy(times, 0, firstTimes, 0, split);
+			System.arraycopy(values, 0, firstValues, 0, split);
+			final long[] secondTimes = new long[SAMPLES - split];
+			final double[][] secondValues = new double[SAMPLES - split][];
+			System.arraycopy(times, split, secondTimes, 0, SAMPLES - split);
+			System.arraycopy(values, split, secondValues, 0, SAMPLES - split);
+			batch.storeBatch(firstTimes, firstValues);
+			batch.storeBatch(secondTimes, secondValues);
+
+			assertEquals(times[SAMPLES - 1], batch.getLastUpdateTime());
+			assertArrayEquals(single.getBytes(), batch.getBytes());
+		}
+		finally {
+			single.close();
+			batch.close();
+		}
+	}
+
+	@Test
+	public void testGapMatchesStepUpdates() throws Exception {
+		final RrdDb steps = createGapRrdDb("gap-steps");
+		final RrdDb gap = createGapRrdDb("gap-gap");
+		try {
+			// a misaligned first update, then 3000 steps of the same values
+			final long first = START + 17;
+			final double[] values = { 2.5, Double.NaN };
+			steps.createSample(first).setValues(values).update();
+			gap.createSample(first).setValues(values).update();
+			for (int i = 1; i <= 3000; i++) {
+				steps.createSample(first + i * STEP).setValues(values).update();
+			}
+			gap.createSample(first + 3000 * STEP).setValues(values).update();
+			// robin pointers may differ after a gap longer than an archive, so compare fetched data
+			for (int i = 0; i < steps.getArcCount(); i++) {
+				final Archive archive = steps.getArchive(i);
+				final long end = archive.getEndTime();
+				final long start = end - (archive.getRows() - 1) * archive.getArcStep();
+				final FetchData expected = steps.createFetchRequest(archive.getConsolFun(), start, end, archive.getArcStep()).fetchData();
+				final FetchData actual = gap.createFetchRequest(archive.getConsolFun(), start, end, archive.getArcStep()).fetchData();
+				assertArrayEquals(expected.getTimestamps(), actual.getTimestamps());
+				for (int ds = 0; ds < values.length; ds++) {
+					assertArrayEquals(expected.getValues(ds), actual.getValues(ds), 0.0);
+					assertEquals(archive.getArcState(ds).getAccumValue(), gap.getArchive(i).getArcState(ds).getAccumValue(), 0.0);
+					assertEquals(archive.getArcState(ds).getNanSteps(), gap.getArchive(i).getArcState(ds).getNanSteps());
+				}
+			}
+		}
+		finally {
+			steps.close();
+			gap.close();
+		}
+	}
+
+	private RrdDb createGapRrdDb(final String path) throws Exception {
+		final RrdDef def = new RrdDef(path, START, STEP);
+		def.addDatasource("known", "GAUGE", 10000 * STEP, Double.NaN, Double.NaN);
+		def.addDatasource("unknown", "GAUGE", 10000 * STEP, Double.NaN, Double.NaN);
+		def.addArchive("AVERAGE", 0.5, 1, 500);
+		def.addArchive("MIN", 0.5, 5, 300);
+		def.addArchive("MAX", 0.5, 7, 300);
+		def.addArchive("LAST", 0.5, 12, 300);
+		def.addArchive("AVERAGE", 0.5, 288, 10);
+		return new RrdDb(def, RrdBackendFactory.getFactory(RrdMemoryBackendFactory.NAME));
+	}
+
+	@Test
+	public void testFetchIntoSuppliedArrays() throws Exception {
+		final RrdDb rrdDb = createRrdDb("fetch-buffers");
+		try {
+			rrdDb.storeBatch(createTimes(), createValues());
+			// starts before the archive, ends after the last update
+			final long end = rrdDb.getLastUpdateTime() + 10 * STEP;
+			final long start = end - 600 * STEP;
+			final FetchData expected = rrdDb.createFetchRequest("AVERAGE", start, end).fetchData();
+			final int rows = expected.getRowCount();
+			final double[][] values = { null, new double[rows + 5], new double[3], new double[rows] };
+			final double[] longer = values[1];
+			Arrays.fill(longer, 42);
+			final FetchData actual = rrdDb.createFetchRequest("AVERAGE", start, end).fetchData(values);
+			assertSame(values, actual.getValues());
+			assertSame(longer, actual.getValues(1));
+			assertEquals(rows, values[0].length);
+			assertEquals(rows, values[2].length);
+			assertEquals(42, longer[rows], 0.0);
+			assertEquals(rows, actual.getRowCount());
+			assertEquals(expected.getStep(), actual.getStep());
+			assertEquals(expected.getFirstTimestamp(), actual.getFirstTimestamp());
+			assertEquals(expected.getLastTimestamp(), actual.getLastTimestamp());
+			assertArrayEquals(expected.getTimestamps(), actual.getTimestamps());
+			for (int i = 0; i < values.length; i++) {
+				assertArrayEquals(expected.getValues(i), Arrays.copyOf(values[i], rows), 0.0);
+			}
+			assertTrue(Double.isNaN(values[0][0]));
+			assertTrue(Double.isNaN(values[0][rows - 1]));
+			assertEquals(expected.getAggregate("gauge", "AVERAGE"), actual.getAggregate("gauge", "AVERAGE"), 0.0);
+			assertEquals(expected.getAggregate("counter", "MAX"), actual.getAggregate("counter", "MAX"), 0.0);
+
+			// a filtered fetch needs one array per fetched datasource
+			final FetchRequest request = rrdDb.createFetchRequest("AVERAGE", start, end);
+			request.setFilter("gauge");
+			try {
+				request.fetchData(values);
+				fail("Fetch should fail when the number of arrays does not match");
+			}
+			catch (final RrdException e) {
+				// expected
+			}
+			assertArrayEquals(expected.getValues(0), request.fetchData(new double[1][]).getValues(0), 0.0);
+		}
+		finally {
+			rrdDb.close();
+		}
+	}
+
+	@Test
+	public void testFetchCursorMatchesFetchData() throws Exception {
+		final RrdDb rrdDb = createRrdDb("fetch-cursor");
+		try {
+			rrdDb.storeBatch(createTimes(), createValues());
+			final long end = rrdDb.getLastUpdateTime() + 10 * STEP;
+			final long start = end - 600 * STEP;
+			final FetchData expected = rrdDb.createFetchRequest("AVERAGE", start, end).fetchData();
+			final FetchCursor cursor = rrdDb.createFetchRequest("AVERAGE", start, end).fetchCursor(64);
+			assertEquals(expected.getRowCount(), cursor.getTotalRowCount());
+			assertEquals(expected.getFirstTimestamp(), cursor.getFirstTimestamp());
+			assertEquals(expected.getStep(), cursor.getStep());
+			assertArrayEquals(expected.getDsNames(), cursor.getDsNames());
+			int row = 0;
+			while (cursor.next()) {
+				assertTrue(cursor.getRowCount() <= 64);
+				for (int i = 0; i < cursor.getRowCount(); i++, row++) {
+					assertEquals(expected.getTimestamps()[row], cursor.getTimestamp(i));
+					for (int j = 0; j < cursor.getColumnCount(); j++) {
+						assertEquals(expected.getValues(j)[row], cursor.getValue(j, i), 0.0);
+					}
+				}
+			}
+			assertEquals(expected.getRowCount(), row);
+			assertEquals(0, cursor.getRowCount());
+			assertFalse(cursor.next());
+
+			// the streamed XML export is the same as the one of the fetched data
+			final FetchRequest request = rrdDb.createFetchRequest("MAX", start, end);
+			request.setFilter(new String[] { "derive", "gauge" });
+			final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			request.fetchCursor(7).exportXml(stream);
+			assertEquals(request.fetchData().exportXml(), stream.toString());
+		}
+		finally {
+			rrdDb.close();
+		}
+	}
+
+	private static void assertSummaryMatches(final RrdDb rrdDb, final String consolFun, final long start, final long end) throws Exception {
+		final FetchData fetchData = rrdDb.createFetchRequest(consolFun, start, end).fetchData();
+		final FetchSummary summary = rrdDb.createFetchRequest(consolFun, start, end).fetchSummary();
+		assertEquals(fetchData.getStep(), summary.getStep());
+		for (final String dsName : summary.getDsNames()) {
+			for (final String cf : new String[] { "MIN", "MAX", "AVERAGE", "TOTAL", "FIRST", "LAST", "STDEV" }) {
+				final double expected = fetchData.getAggregate(dsName, cf);
+				final double delta = Math.abs(expected) * (cf.equals("STDEV") ? 1e-6 : 1e-9);
+				assertEquals(dsName + " " + cf + " " + start + "-" + end, expected, summary.getAggregate(dsName, cf), delta);
+			}
+		}
+	}
+
+	@Test
+	public void testFetchSummaryMatchesFetchData() throws Exception {
+		// the index is kept by backends which allow caching only
+		checkFetchSummary(createRrdDb("fetch-summary"));
+		final File file = new File("target/fetch-summary.rrd");
+		file.getParentFile().mkdirs();
+		try {
+			checkFetchSummary(createRrdDb(file.getPath(), RrdBackendFactory.getFactory(RrdNioBackendFactory.NAME)));
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	private void checkFetchSummary(final RrdDb rrdDb) throws Exception {
+		try {
+			final long[] times = createTimes();
+			final double[][] values = createValues();
+			rrdDb.storeBatch(times, values);
+			final long last = rrdDb.getLastUpdateTime();
+			final long[][] spans = {
+					{ last - 400 * STEP, last },
+					{ last - 399 * STEP + 17, last - 3 * STEP - 5 },
+					{ last - 1000 * STEP, last + 50 * STEP },
+					{ last - 10 * STEP, last - 9 * STEP },
+					{ last - 5 * STEP - 1, last - 5 * STEP + 1 },
+			};
+			for (final long[] span : spans) {
+				assertSummaryMatches(rrdDb, "AVERAGE", span[0], span[1]);
+				assertSummaryMatches(rrdDb, "MIN", span[0], span[1]);
+			}
+			// the index is kept up to date as values are archived
+			final long[] moreTimes = new long[500];
+			for (int i = 0; i < moreTimes.length; i++) {
+				moreTimes[i] = last + (i + 1) * 37;
+			}
+			final double[][] moreValues = new double[moreTimes.length][];
+			System.arraycopy(values, 0, moreValues, 0, moreValues.length);
+			rrdDb.storeBatch(moreTimes, moreValues);
+			rrdDb.getArchive(0).getRobin(0).setValue(499, 1e6);
+			for (final long[] span : spans) {
+				assertSummaryMatches(rrdDb, "AVERAGE", span[0] + 300 * STEP, span[1] + 300 * STEP);
+			}
+			final FetchRequest request = rrdDb.createFetchRequest("AVERAGE", last - 100 * STEP, last);
+			request.setFilter("gauge");
+			assertArrayEquals(new String[] { "gauge" }, request.fetchSummary().getDsNames());
+			assertEquals(101, request.fetchSummary().getRowCount());
+		}
+		finally {
+			rrdDb.close();
+		}
+	}
+
+	@Test
+	public void testFetchSummaryThroughSharedBackend() throws Exception {
+		final File file = new File("target/fetch-summary-shared.rrd");
+		file.getParentFile().mkdirs();
+		try {
+			for (final String factoryName : new String[] { RrdSharedNioBackendFactory.NAME, RrdMemoryBackendFactory.NAME }) {
+				final RrdBackendFactory factory = RrdBackendFactory.getFactory(factoryName);
+				final RrdDb writer = createRrdDb(file.getPath(), factory);
+				final RrdDb reader = new RrdDb(file.getPath(), factory);
+				try {
+					final long[] times = createTimes();
+					final double[][] values = createValues();
+					writer.storeBatch(times, values);
+					final long last = writer.getLastUpdateTime();
+					assertSummaryMatches(reader, "AVERAGE", last - 400 * STEP, last);
+					// values archived through the writer are seen by the summaries of the reader
+					writer.getArchive(0).getRobin(0).setValue(450, 1e6);
+					assertEquals(factoryName, 1e6,
+							reader.createFetchRequest("AVERAGE", last - 400 * STEP, last).fetchSummary().getAggregate("gauge", "MAX"), 0);
+					assertSummaryMatches(reader, "AVERAGE", last - 400 * STEP, last);
+				}
+				finally {
+					reader.close();
+					writer.close();
+					if (factory instanceof RrdMemoryBackendFactory) {
+						((RrdMemoryBackendFactory) factory).delete(file.getPath());
+					}
+				}
+			}
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testFetchSummaryStdevOfLargeValues() throws Exception {
+		final File file = new File("target/fetch-summary-stdev.rrd");
+		file.getParentFile().mkdirs();
+		final RrdDb rrdDb = createRrdDb(file.getPath(), RrdBackendFactory.getFactory(RrdNioBackendFactory.NAME));
+		try {
+			final long[] times = new long[SAMPLES];
+			final double[][] values = new double[SAMPLES][];
+			for (int i = 0; i < SAMPLES; i++) {
+				times[i] = START + (i + 1) * STEP;
+				values[i] = new double[] { 1e8 + (i % 7) * 0.001, Double.NaN, Double.NaN, Double.NaN };
+			}
+			rrdDb.storeBatch(times, values);
+			final long last = rrdDb.getLastUpdateTime();
+			final long start = last - 400 * STEP;
+			// the rows summarized are those ending after the start of the request
+			final FetchData fetchData = rrdDb.createFetchRequest("AVERAGE", start, last).fetchData();
+			final long[] timestamps = fetchData.getTimestamps();
+			final double[] gauge = fetchData.getValues("gauge");
+			int count = 0;
+			double sum = 0;
+			for (int i = 0; i < gauge.length; i++) {
+				if (timestamps[i] > start && !Double.isNaN(gauge[i])) {
+					count++;
+					sum += gauge[i] - 1e8;
+				}
+			}
+			final double mean = 1e8 + sum / count;
+			double deviations = 0;
+			for (int i = 0; i < gauge.length; i++) {
+				if (timestamps[i] > start && !Double.isNaN(gauge[i])) {
+					deviations += (gauge[i] - mean) * (gauge[i] - mean);
+				}
+			}
+			final double expected = Math.sqrt(deviations / count);
+			assertTrue(count > 300);
+			// twice, to summarize from the index built by the first request
+			for (int i = 0; i < 2; i++) {
+				final FetchSummary summary = rrdDb.createFetchRequest("AVERAGE", start, last).fetchSummary();
+				assertEquals(count, summary.getValueCount("gauge"));
+				assertEquals(expected, summary.getAggregate("gauge", "STDEV"), expected * 1e-6);
+			}
+		}
+		finally {
+			rrdDb.close();
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testStoreBatchRejectsInvalidBatch() throws Exception {
+		final RrdDb rrdDb = createRrdDb("batch-invalid");
+		try {
+			final byte[] before = rrdDb.getBytes();
+			final long[] times = { START + 60, START + 120, START + 120 };
+			final double[][] values = { { 1, 2, 3, 4 }, { 1, 2, 3, 4 }, { 1, 2, 3, 4 } };
+			try {
+				rrdDb.storeBatch(times, values);
+				fail("Non increasing timestamps should be rejected");
+			}
+			catch (final RrdException e) {
+				// expected
+			}
+			try {
+				rrdDb.storeBatch(new long[] { START + 60 }, new double[][] { { 1, 2 } });
+				fail("Missing values should be rejected");
+			}
+			catch (final RrdException e) {
+				// expected
+			}
+			assertArrayEquals(before, rrdDb.getBytes());
+		}
+		finally {
+			rrdDb.close();
+		}
+	}
+
+	@Test
+	public void testWriteBack() throws Exception {
+		final long[] times = createTimes();
+		final double[][] values = createValues();
+		final RrdDb writeThrough = createRrdDb("writeback-through");
+		final RrdDb writeBack = createRrdDb("writeback-back");
+		try {
+			writeBack.setWriteBack(true);
+			for (int i = 0; i < 10; i++) {
+				writeThrough.createSample(times[i]).setValues(values[i]).update();
+				writeBack.createSample(times[i]).setValues(values[i]).update();
+			}
+			assertEquals(writeThrough.getLastUpdateTime(), writeBack.getLastUpdateTime());
+			assertArrayEquals(writeThrough.getLastDatasourceValues(), writeBack.getLastDatasourceValues(), 0.0);
+			// only archived values reached the backend so far
+			assertEquals(START, getStoredLastUpdateTime(writeBack));
+			assertFalse(Arrays.equals(writeThrough.getRrdBackend().readAll(), writeBack.getRrdBackend().readAll()));
+			writeBack.sync();
+			assertArrayEquals(writeThrough.getRrdBackend().readAll(), writeBack.getRrdBackend().readAll());
+
+			writeBack.setWriteBackInterval(1);
+			for (int i = 10; i < SAMPLES; i++) {
+				writeThrough.createSample(times[i]).setValues(values[i]).update();
+				writeBack.createSample(times[i]).setValues(values[i]).update();
+			}
+			assertArrayEquals(writeThrough.getBytes(), writeBack.getBytes());
+			writeBack.setWriteBack(false);
+			assertFalse(writeBack.isWriteBack());
+			assertArrayEquals(writeThrough.getRrdBackend().readAll(), writeBack.getRrdBackend().readAll());
+		}
+		finally {
+			writeThrough.close();
+			writeBack.close();
+		}
+	}
+
+	@Test
+	public void testImportXmlDump() throws Exception {
+		final long[] times = createTimes();
+		final double[][] values = createValues();
+		final RrdDef def = new RrdDef("import-source", START, STEP);
+		def.addDatasource("gauge", "GAUGE", 2 * STEP, Double.NaN, Double.NaN);
+		def.addDatasource("counter", "COUNTER", 2 * STEP, 0, Double.NaN);
+		def.addDatasource("derive", "DERIVE", 2 * STEP, Double.NaN, Double.NaN);
+		def.addDatasource("absolute", "ABSOLUTE", 2 * STEP, 0, 1000);
+		// more rows than one block of the streaming importer
+		def.addArchive("AVERAGE", 0.5, 1, 3000);
+		def.addArchive("MAX", 0.5, 7, 300);
+		final RrdBackendFactory factory = RrdBackendFactory.getFactory(RrdMemoryBackendFactory.NAME);
+		final RrdDb source = new RrdDb(def, factory);
+		final File xmlFile = new File("target/import.xml");
+		xmlFile.getParentFile().mkdirs();
+		try {
+			for (int i = 0; i < SAMPLES; i++) {
+				source.createSample(times[i]).setValues(values[i]).update();
+			}
+			source.dumpXml(xmlFile.getPath());
+			final RrdDb restored = new RrdDb("import-restored", RrdDb.PREFIX_XML + xmlFile.getPath(), factory);
+			try {
+				assertEquals(source.getXml(), restored.getXml());
+			}
+			finally {
+				restored.close();
+			}
+		}
+		finally {
+			source.close();
+			xmlFile.delete();
+		}
+	}
+
+	private long getStoredLastUpdateTime(final RrdDb rrdDb) throws Exception {
+		// header layout: signature, step, dsCount, arcCount, lastUpdateTime
+		final int offset = RrdPrimitive.RRD_PRIM_SIZES[RrdPrimitive.RRD_STRING] + RrdPrimitive.RRD_PRIM_SIZES[RrdPrimitive.RRD_LONG] +
+				2 * RrdPrimitive.RRD_PRIM_SIZES[RrdPrimitive.RRD_INT];
+		return ByteBuffer.wrap(rrdDb.getRrdBackend().readAll()).getLong(offset);
+	}
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class RrdDefTemplateTest {
+	private static final String TEMPLATE =
+			"<rrd_def>\n" +
+			"  <path>${path}</path>\n" +
+			"  <start>1000000000</start>\n" +
+			"  <step>${step}</step>\n" +
+			"  <datasource><name>in</name><type>COUNTER</type><heartbeat>600</heartbeat><min>0</min><max>U</max></datasource>\n" +
+			"  <datasource><name>out</name><type>COUNTER</type><heartbeat>600</heartbeat><min>0</min><max>U</max></datasource>\n" +
+			"  <archive><cf>AVERAGE</cf><xff>0.5</xff><steps>1</steps><rows>${rows}</rows></archive>\n" +
+			"  <archive><cf>MAX</cf><xff>0.5</xff><steps>12</steps><rows>${rows}</rows></archive>\n" +
+			"</rrd_def>";
+
+	@Test
+	public void testCompiledTemplate() throws Exception {
+		final RrdDefTemplate template = new RrdDefTemplate(TEMPLATE);
+		template.setVariable("path", "target/template.jrb");
+		template.setVariable("step", 300);
+		template.setVariable("rows", 600);
+		final RrdDef expected = template.getRrdDef();
+		assertEquals(2, expected.getDsCount());
+		assertEquals(2, expected.getArcCount());
+
+		final CompiledRrdDefTemplate compiled = template.compile();
+		final TemplateVariables variables = compiled.createVariables();
+		variables.setVariable("path", "target/template.jrb");
+		variables.setVariable("step", 300L);
+		variables.setVariable("rows", 600);
+		variables.setVariable("unused", "ignored");
+		assertEquals(expected.dump(), compiled.getRrdDef(variables).dump());
+
+		variables.clearValues();
+		try {
+			compiled.getRrdDef(variables);
+			fail("Missing variable should be rejected");
+		}
+		catch (final IllegalArgumentException e) {
+			assertEquals("No mapping found for template variable ${path}", e.getMessage());
+		}
+	}
+}
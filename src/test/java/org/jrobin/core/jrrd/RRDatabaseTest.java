@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.core.jrrd;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.jrobin.core.RrdException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RRDatabaseTest {
+
+	private static final int DS_COUNT = 2;
+	private static final int PDP_STEP = 300;
+	private static final long LAST_UPDATE = 1000002990L;
+	// cf, pdp count, row count, current row
+	private static final Object[][] ARCHIVES = {
+			{"AVERAGE", 1, 10, 3},
+			{"MAX", 5, 4, 0}
+	};
+
+	private final File file = new File("target/test-database.rrd");
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	public static double getValue(int archive, int row, int ds) {
+		return archive * 1000 + row * 10 + ds;
+	}
+
+	/**
+	 * Writes a version 3 rrdtool file with 8-byte alignment, laid out as it is read by RRDatabase.
+	 * Also used by other tests which need a native rrdtool file.
+	 */
+	public static void writeDatabase(File file, ByteOrder order) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(8192).order(order);
+		putString(buffer, "RRD", 4);
+		putString(buffer, "0003", 5);
+		align(buffer, 8);
+		buffer.putDouble(Constants.FLOAT_COOKIE);
+		putInt(buffer, DS_COUNT);
+		putInt(buffer, ARCHIVES.length);
+		putInt(buffer, PDP_STEP);
+		buffer.position(buffer.position() + 80);
+		for (int ds = 0; ds < DS_COUNT; ds++) {
+			putString(buffer, "ds" + ds, Constants.DS_NAM_SIZE);
+			putString(buffer, "GAUGE", Constants.DST_SIZE);
+			putInt(buffer, 600);
+			buffer.putDouble(Double.NaN);
+			buffer.putDouble(Double.NaN);
+			buffer.position(buffer.position() + 56);
+		}
+		for (Object[] archive : ARCHIVES) {
+			putString(buffer, (String) archive[0], Constants.CF_NAM_SIZE);
+			putInt(buffer, (Integer) archive[2]);
+			putInt(buffer, (Integer) archive[1]);
+			buffer.putDouble(0.5);
+			buffer.position(buffer.position() + 72);
+		}
+		putInt(buffer, (int) LAST_UPDATE);
+		putInt(buffer, 0);
+		for (int ds = 0; ds < DS_COUNT; ds++) {
+			putString(buffer, "U", Constants.LAST_DS_LEN);
+			align(buffer, 8);
+			putInt(buffer, 0);
+			buffer.putDouble(0);
+			buffer.position(buffer.position() + 64);
+		}
+		for (int i = 0; i < ARCHIVES.length * DS_COUNT; i++) {
+			buffer.putDouble(Double.NaN);
+			putInt(buffer, 0);
+			buffer.position(buffer.position() + 64);
+		}
+		for (Object[] archive : ARCHIVES) {
+			putInt(buffer, (Integer) archive[3]);
+		}
+		for (int archive = 0; archive < ARCHIVES.length; archive++) {
+			for (int row = 0; row < (Integer) ARCHIVES[archive][2]; row++) {
+				for (int ds = 0; ds < DS_COUNT; ds++) {
+					buffer.putDouble(getValue(archive, row, ds));
+				}
+			}
+		}
+		FileOutputStream outputStream = new FileOutputStream(file);
+		outputStream.write(buffer.array(), 0, buffer.position());
+		outputStream.close();
+	}
+
+	private static void putString(ByteBuffer buffer, String value, int length) {
+		byte[] bytes = new byte[length];
+		System.arraycopy(value.getBytes(), 0, bytes, 0, value.length());
+		buffer.put(bytes);
+	}
+
+	private static void putInt(ByteBuffer buffer, int value) {
+		align(buffer, 8);
+		buffer.putLong(value);
+	}
+
+	private static void align(ByteBuffer buffer, int boundary) {
+		buffer.position((buffer.position() + boundary - 1) / boundary * boundary);
+	}
+
+	private void checkDatabase() throws IOException, RrdException {
+		RRDatabase database = new RRDatabase(file);
+		try {
+			Assert.assertEquals(LAST_UPDATE * 1000, database.getLastUpdate().getTime());
+
+			for (int archive = 0; archive < ARCHIVES.length; archive++) {
+				int rowCount = (Integer) ARCHIVES[archive][2];
+				int currentRow = (Integer) ARCHIVES[archive][3];
+				double[][] values = database.getArchive(archive).getValues();
+				for (int i = 0; i < rowCount; i++) {
+					for (int ds = 0; ds < DS_COUNT; ds++) {
+						Assert.assertEquals(getValue(archive, (currentRow + 1 + i) % rowCount, ds), values[ds][i], 0);
+					}
+				}
+			}
+
+			// two rows before and one row after the AVERAGE archive
+			long archiveStart = LAST_UPDATE - LAST_UPDATE % PDP_STEP - 9 * PDP_STEP;
+			DataChunk chunk = database.getData(ConsolidationFunctionType.AVERAGE,
+					archiveStart - 2 * PDP_STEP, archiveStart + 10 * PDP_STEP, PDP_STEP);
+			Assert.assertEquals(archiveStart - 2 * PDP_STEP, chunk.getStartTime());
+			Assert.assertEquals(PDP_STEP, chunk.getStep());
+			double[][] data = chunk.getData();
+			Assert.assertEquals(13, data.length);
+			for (int row = 0; row < data.length; row++) {
+				int i = row - 2;
+				for (int ds = 0; ds < DS_COUNT; ds++) {
+					if (i < 0 || i >= 10) {
+						Assert.assertTrue(Double.isNaN(data[row][ds]));
+					}
+					else {
+						Assert.assertEquals(getValue(0, (3 + 1 + i) % 10, ds), data[row][ds], 0);
+					}
+				}
+			}
+		}
+		finally {
+			database.close();
+		}
+	}
+
+	@Test
+	public void testLittleEndianDatabase() throws IOException, RrdException {
+		writeDatabase(file, ByteOrder.LITTLE_ENDIAN);
+		checkDatabase();
+	}
+
+	@Test
+	public void testBigEndianDatabase() throws IOException, RrdException {
+		writeDatabase(file, ByteOrder.BIG_ENDIAN);
+		checkDatabase();
+	}
+
+	@Test
+	public void testInvalidPeriod() throws IOException, RrdException {
+		writeDatabase(file, ByteOrder.LITTLE_ENDIAN);
+		RRDatabase database = new RRDatabase(file);
+		try {
+			database.getData(ConsolidationFunctionType.AVERAGE, LAST_UPDATE, LAST_UPDATE - PDP_STEP, PDP_STEP);
+			Assert.fail("Expected an RrdException");
+		}
+		catch (RrdException e) {
+			// start after end
+		}
+		finally {
+			database.close();
+		}
+	}
+}
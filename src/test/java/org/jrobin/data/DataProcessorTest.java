@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.data;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdDef;
+import org.jrobin.core.RrdException;
+import org.jrobin.core.Sample;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class DataProcessorTest {
+	private static final long START = 1000000000L;
+	private static final long STEP = 300;
+	private static final int FILES = 10;
+
+	private static ExecutorService s_executor;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		new File("target").mkdirs();
+		for (int i = 0; i < FILES; i++) {
+			final RrdDef def = new RrdDef(getPath(i), START, STEP);
+			def.addDatasource("in", "GAUGE", 2 * STEP, Double.NaN, Double.NaN);
+			def.addDatasource("out", "GAUGE", 2 * STEP, Double.NaN, Double.NaN);
+			def.addArchive("AVERAGE", 0.5, 1, 1000);
+			def.addArchive("MAX", 0.5, 6, 200);
+			final RrdDb rrdDb = new RrdDb(def);
+			final Sample sample = rrdDb.createSample();
+			for (int t = 1; t <= 1000; t++) {
+				sample.setTime(START + t * STEP);
+				sample.setValue("in", i * 1000 + t);
+				sample.setValue("out", Math.sin(t / 10.0) * i);
+				sample.update();
+			}
+			rrdDb.close();
+		}
+		s_executor = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		s_executor.shutdown();
+		for (int i = 0; i < FILES; i++) {
+			new File(getPath(i)).delete();
+		}
+	}
+
+	private static String getPath(final int i) {
+		return "target/data-processor-" + i + ".jrb";
+	}
+
+	private DataProcessor createDataProcessor() throws RrdException {
+		final DataProcessor dp = new DataProcessor(START + 100 * STEP, START + 900 * STEP);
+		final StringBuilder sum = new StringBuilder();
+		for (int i = 0; i < FILES; i++) {
+			dp.addDatasource("in" + i, getPath(i), "in", "AVERAGE");
+			// same file through another path, fetched together with the datasource above
+			dp.addDatasource("out" + i, new File(getPath(i)).getAbsolutePath(), "out", "AVERAGE");
+			dp.addDatasource("max" + i, getPath(i), "in", "MAX");
+			sum.append(i == 0 ? "in0" : ",in" + i + ",+");
+		}
+		dp.addDatasource("sum", sum.toString());
+		return dp;
+	}
+
+	@Test
+	public void testExecutorMatchesCallingThread() throws Exception {
+		final DataProcessor serial = createDataProcessor();
+		serial.processData();
+		final DataProcessor parallel = createDataProcessor();
+		parallel.setExecutor(s_executor);
+		assertSame(s_executor, parallel.getExecutor());
+		parallel.processData();
+
+		assertArrayEquals(serial.getTimestamps(), parallel.getTimestamps());
+		assertEquals(serial.getLastRrdArchiveUpdateTime(), parallel.getLastRrdArchiveUpdateTime());
+		for (final String name : serial.getSourceNames()) {
+			assertArrayEquals(serial.getValues(name), parallel.getValues(name), 0.0);
+		}
+		final double[] sum = parallel.getValues("sum");
+		for (int row = 0; row < sum.length; row++) {
+			double expected = 0;
+			for (int i = 0; i < FILES; i++) {
+				expected += parallel.getValues("in" + i)[row];
+			}
+			assertEquals(expected, sum[row], 1e-6);
+		}
+	}
+
+	@Test
+	public void testExecutorReportsFetchErrors() throws Exception {
+		final DataProcessor dp = createDataProcessor();
+		dp.addDatasource("missing", "target/data-processor-missing.jrb", "in", "AVERAGE");
+		dp.setExecutor(s_executor);
+		try {
+			dp.processData();
+			fail("Processing should fail for a missing file");
+		}
+		catch (final IOException e) {
+			// expected
+		}
+	}
+}
@@ -19,6 +19,9 @@ package org.jrobin.data;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+import java.util.Random;
+
 import org.jrobin.core.RrdException;
 import org.junit.Test;
 
@@ -163,4 +166,87 @@ public class PercentileDefTest {
 
     }
 
+    // the percentile as it was computed by sorting all included values
+    private static double sortedPercentile(double[] values, double percentile, boolean includenan) {
+        double[] included = new double[values.length];
+        int count = 0;
+        for (double value : values) {
+            if (!Double.isNaN(value) || includenan) {
+                included[count++] = value;
+            }
+        }
+        if (count > 1) {
+            Arrays.sort(included, 0, count);
+            count -= (int) Math.ceil(count * (100.0 - percentile) / 100.0);
+            if (count > 0) {
+                return included[count - 1];
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Selected percentiles must be the same as the ones found by sorting, for several percentiles
+     * asked at once, with duplicates, signed zeros and unknown values
+     * @throws RrdException
+     */
+    @Test
+    public void testSelectionMatchesSorting() throws RrdException {
+        Random random = new Random(42);
+        double[] percentiles = { 95, 5, 50, 99.9, 95, 100, 0.01, 75 };
+        for (int size : new int[] { 2, 3, 17, 1000, 20000 }) {
+            long[] timestamps = new long[size];
+            double[] values = new double[size];
+            for (int i = 0; i < size; i++) {
+                timestamps[i] = i + 1;
+                int kind = random.nextInt(10);
+                values[i] = kind == 0 ? Double.NaN : kind == 1 ? -0.0 : kind == 2 ? 0.0 : kind == 3 ? 7 : random.nextGaussian() * 100;
+            }
+            for (boolean includenan : new boolean[] { false, true }) {
+                Aggregator aggregator = new Aggregator(timestamps, values.clone());
+                double[] results = aggregator.getPercentiles(0, size, percentiles, includenan);
+                for (int i = 0; i < percentiles.length; i++) {
+                    double expected = sortedPercentile(values, percentiles[i], includenan);
+                    assertEquals("size " + size + ", " + percentiles[i] + "%", 0, Double.compare(expected, results[i]));
+                }
+            }
+            // sorted values are the worst case of a naive selection
+            double[] sorted = values.clone();
+            Arrays.sort(sorted);
+            double[] results = new Aggregator(timestamps, sorted).getPercentiles(0, size, percentiles, false);
+            for (int i = 0; i < percentiles.length; i++) {
+                assertEquals(0, Double.compare(sortedPercentile(values, percentiles[i], false), results[i]));
+            }
+        }
+    }
+
+    /**
+     * Percentiles of the same source are computed together by the data processor
+     * @throws RrdException
+     */
+    @Test
+    public void testSeveralPercentileDefs() throws Exception {
+        final long start = 1000000000L;
+        DataProcessor dataProcessor = new DataProcessor(start, start + 6000);
+        dataProcessor.setStep(60);
+        dataProcessor.addDatasource("bar", new Plottable() {
+            public double getValue(long timestamp) {
+                return (timestamp * 7919) % 1000;
+            }
+        });
+        dataProcessor.addDatasource("p90", "bar", 90);
+        dataProcessor.addDatasource("p50", "bar", 50);
+        dataProcessor.addDatasource("p90bis", "bar", 90);
+        dataProcessor.processData();
+        double p90 = dataProcessor.getPercentile("bar", 90);
+        double p50 = dataProcessor.getPercentile("bar", 50);
+        assertTrue(p50 < p90);
+        assertEquals(p90, dataProcessor.getValues("p90")[0], 0.0);
+        assertEquals(p50, dataProcessor.getValues("p50")[0], 0.0);
+        assertEquals(p90, dataProcessor.getValues("p90bis")[0], 0.0);
+        assertArrayEquals(new double[] { p90, p50, dataProcessor.getPercentile("bar", 100) },
+                dataProcessor.getPercentiles("bar", new double[] { 90, 50, 100 }), 0.0);
+    }
+
+
 }
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.data;
+
+import static org.junit.Assert.*;
+
+import org.jrobin.core.RrdException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RpnCalculatorTest {
+	private static final long START = 1000000000L;
+	private static final int ROWS = 500;
+
+	private DataProcessor m_dataProcessor;
+
+	@Before
+	public void setUp() throws Exception {
+		m_dataProcessor = new DataProcessor(START, START + ROWS * 60L);
+		m_dataProcessor.setStep(60);
+		m_dataProcessor.setPixelCount(ROWS);
+		m_dataProcessor.addDatasource("a", new Plottable() {
+			public double getValue(final long timestamp) {
+				final long t = (timestamp - START) / 60;
+				return t % 17 == 0 ? Double.NaN : t % 23 == 0 ? Double.POSITIVE_INFINITY : Math.sin(t / 10.0) * 100;
+			}
+		});
+		m_dataProcessor.addDatasource("b", new Plottable() {
+			public double getValue(final long timestamp) {
+				final long t = (timestamp - START) / 60;
+				return t % 13 == 0 ? Double.NaN : t % 7 - 3;
+			}
+		});
+		m_dataProcessor.processData();
+	}
+
+	private void assertCompiledMatchesInterpreted(final String expression) throws RrdException {
+		final RpnCalculator compiled = new RpnCalculator(expression, "c", m_dataProcessor);
+		assertNotNull(expression, compiled.compile());
+		final double[] expected = new RpnCalculator(expression, "c", m_dataProcessor).interpretValues();
+		final double[] actual = compiled.calculateValues();
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expression + " at " + i, Double.doubleToLongBits(expected[i]), Double.doubleToLongBits(actual[i]));
+		}
+	}
+
+	@Test
+	public void testCompiledMatchesInterpreted() throws RrdException {
+		final String[] expressions = {
+				"a", "5", "a,b,+", "a,b,-", "b,a,-", "a,b,*", "a,b,/", "a,b,%", "a,b,ATAN2", "a,b,POW",
+				"a,b,LT", "a,b,LE", "a,b,GT", "a,b,GE", "a,b,EQ", "a,b,NE", "a,b,MIN", "a,b,MAX",
+				"a,b,AND", "a,b,OR", "a,b,XOR", "a,b,ADDNAN", "b,a,ADDNAN",
+				"a,SIN", "a,COS", "a,ATAN", "a,LOG", "a,EXP", "a,FLOOR", "a,CEIL", "a,ROUND", "a,ABS",
+				"a,SQRT", "a,UN", "a,ISINF", "a,SIGN", "a,DEG2RAD", "a,RAD2DEG",
+				"TIME,YEAR", "TIME,MONTH", "TIME,DATE", "TIME,HOUR", "TIME,MINUTE", "TIME,SECOND", "TIME,WEEK",
+				"TIME", "LTIME,TIME,-", "COUNT", "STEP", "PI,E,*", "INF,NEGINF,+", "UNKN,a,+",
+				"a,UN,0,a,IF", "a,-50,50,LIMIT", "b,UN,a,b,IF",
+				"a,b,DUP,*,+", "a,b,EXC,-", "a,b,POP", "a,b,a,3,REV,-,-", "a,b,1,3,AVG", "a,b,2,AVG,a,+",
+				"a,DUP,DUP,*,*,DUP,+", "1024,1024,*,a,*", "2,3,+,a,b,+,*,8,/",
+				"a,8,*,b,a,+,+,DUP,UN,0,EXC,IF,100,*,b,MAX,1024,/"
+		};
+		for (final String expression : expressions) {
+			assertCompiledMatchesInterpreted(expression);
+		}
+	}
+
+	@Test
+	public void testOrderDependentOperatorsAreInterpreted() throws RrdException {
+		final String[] expressions = { "a,PREV,+", "PREV(a),b,+", "a,120,TREND", "a,120,TRENDNAN",
+				"a,b,2,SORT,-", "a,b,COUNT,AVG" };
+		for (final String expression : expressions) {
+			assertNull(expression, new RpnCalculator(expression, "c", m_dataProcessor).compile());
+		}
+	}
+
+	@Test
+	public void testBadExpressionsFailLikeInterpreter() throws RrdException {
+		final String[] expressions = { "a,b", "a,+", "DUP", "a,b,c" };
+		for (final String expression : expressions) {
+			String expected = null;
+			try {
+				new RpnCalculator(expression, "c", m_dataProcessor).interpretValues();
+			}
+			catch (final RrdException e) {
+				expected = e.getMessage();
+			}
+			try {
+				new RpnCalculator(expression, "c", m_dataProcessor).calculateValues();
+				fail(expression + " should fail");
+			}
+			catch (final RrdException e) {
+				assertEquals(expected, e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.graph;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class DownsamplerTest {
+	@Test
+	public void testKeepsColumnExtremes() {
+		// three pixel columns of four points each
+		final double[] x = { 0, 0.2, 0.5, 0.9, 1, 1.1, 1.5, 1.9, 2, 2.1, 2.5, 2.9 };
+		final double[] y = { 5, 9, 1, 4, 7, 7, 7, 7, 3, 2, 8, 6 };
+		final Downsampler downsampler = new Downsampler(x);
+		final int[] indexes = downsampler.select(y);
+		assertEquals(Arrays.toString(new int[] { 0, 1, 2, 3, 4, 7, 8, 9, 10, 11 }), Arrays.toString(indexes));
+		assertArrayEquals(new double[] { 0, 0.2, 0.5, 0.9, 1, 1.9, 2, 2.1, 2.5, 2.9 }, downsampler.getX(indexes), 0.0);
+		assertArrayEquals(new double[] { 5, 9, 1, 4, 7, 7, 3, 2, 8, 6 }, Downsampler.pick(y, indexes), 0.0);
+	}
+
+	@Test
+	public void testUnknownValuesSplitColumns() {
+		final double[] x = new double[10];
+		final double[] y = { 1, 2, 3, Double.NaN, Double.NaN, Double.NaN, 4, 5, 6, 7 };
+		final double[] bottom = { 0, 0, 0, 0, 0, 0, 0, 1, 0, 0 };
+		final Downsampler downsampler = new Downsampler(x);
+		// path ends and starts around the unknown values are kept
+		assertEquals(Arrays.toString(new int[] { 0, 2, 3, 5, 6, 9 }), Arrays.toString(downsampler.select(y)));
+		// extremes of both edges of a stacked area are kept
+		assertEquals(Arrays.toString(new int[] { 0, 2, 3, 5, 6, 7, 9 }), Arrays.toString(downsampler.select(bottom, y)));
+	}
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.graph;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.io.File;
+
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdDef;
+import org.jrobin.data.Plottable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RrdGraphCacheTest {
+	private static final long START = 1000000000L;
+	private static final long STEP = 60;
+	private static final int ROWS = 1000;
+
+	private final String m_path = "target/graph-cache.jrb";
+	private long m_time;
+
+	@Before
+	public void setUp() throws Exception {
+		new File("target").mkdirs();
+		final RrdDef def = new RrdDef(m_path, START, STEP);
+		def.addDatasource("in", "GAUGE", 2 * STEP, Double.NaN, Double.NaN);
+		def.addArchive("AVERAGE", 0.5, 1, ROWS);
+		final RrdDb rrdDb = new RrdDb(def);
+		for (m_time = START + STEP; m_time < START + ROWS * STEP; m_time += STEP) {
+			rrdDb.createSample(m_time).setValue("in", Math.sin(m_time / 3000.0) * 100).update();
+		}
+		rrdDb.close();
+	}
+
+	@After
+	public void tearDown() {
+		new File(m_path).delete();
+	}
+
+	private RrdGraphDef createGraphDef(final Color color) {
+		final RrdGraphDef gdef = new RrdGraphDef();
+		gdef.setTimeSpan(START, START + ROWS * STEP);
+		gdef.datasource("in", m_path, "in", "AVERAGE");
+		gdef.datasource("double", "in,2,*");
+		gdef.line("in", color, "in");
+		gdef.area("double", Color.GREEN, "double");
+		gdef.gprint("in", "MAX", "max=%10.2lf");
+		return gdef;
+	}
+
+	@Test
+	public void testCachedUntilDefinitionOrDataChanges() throws Exception {
+		final RrdGraphCache cache = new RrdGraphCache(1024 * 1024);
+		final RrdGraphInfo first = cache.getRrdGraphInfo(createGraphDef(Color.RED));
+		assertTrue(first.getByteCount() > 0);
+		assertSame(first, cache.getRrdGraphInfo(createGraphDef(Color.RED)));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		final RrdGraphInfo blue = cache.getRrdGraphInfo(createGraphDef(Color.BLUE));
+		assertNotSame(first, blue);
+		assertEquals(2, cache.getGraphCount());
+
+		final RrdDb rrdDb = new RrdDb(m_path);
+		rrdDb.createSample(m_time).setValue("in", 1000).update();
+		rrdDb.close();
+		final RrdGraphInfo updated = cache.getRrdGraphInfo(createGraphDef(Color.RED));
+		assertNotSame(first, updated);
+		assertSame(updated, cache.getRrdGraphInfo(createGraphDef(Color.RED)));
+		// the stale graph was replaced
+		assertEquals(2, cache.getGraphCount());
+		assertEquals(2, cache.getHitCount());
+		assertEquals(3, cache.getMissCount());
+	}
+
+	@Test
+	public void testUncacheableGraphs() throws Exception {
+		final RrdGraphCache cache = new RrdGraphCache(1024 * 1024);
+		final RrdGraphDef plottable = createGraphDef(Color.RED);
+		plottable.datasource("custom", new Plottable() {
+			public double getValue(final long timestamp) {
+				return timestamp % 100;
+			}
+		});
+		plottable.line("custom", Color.BLACK, "custom");
+		cache.getRrdGraphInfo(plottable);
+		final RrdGraphDef gradient = createGraphDef(Color.RED);
+		gradient.setColor(RrdGraphConstants.COLOR_BACK, new GradientPaint(0, 0, Color.WHITE, 10, 10, Color.GRAY));
+		cache.getRrdGraphInfo(gradient);
+		// values of these operators change between renderings of the same definition
+		for (final String rpn : new String[] { "in,NOW,+", "TIME,60,%", "in,RANDOM,*" }) {
+			final RrdGraphDef timed = createGraphDef(Color.RED);
+			timed.datasource("timed", rpn);
+			timed.line("timed", Color.BLACK, "timed");
+			cache.getRrdGraphInfo(timed);
+		}
+		assertEquals(0, cache.getGraphCount());
+		assertEquals(0, cache.getMissCount());
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() throws Exception {
+		final RrdGraphCache probe = new RrdGraphCache(Long.MAX_VALUE);
+		probe.getRrdGraphInfo(createGraphDef(Color.RED));
+		// room for two graphs of about the same size
+		final RrdGraphCache cache = new RrdGraphCache(probe.getByteCount() * 5 / 2);
+		final RrdGraphInfo red = cache.getRrdGraphInfo(createGraphDef(Color.RED));
+		cache.getRrdGraphInfo(createGraphDef(Color.BLUE));
+		assertSame(red, cache.getRrdGraphInfo(createGraphDef(Color.RED)));
+		cache.getRrdGraphInfo(createGraphDef(Color.YELLOW));
+		assertEquals(2, cache.getGraphCount());
+		assertTrue(cache.getByteCount() <= cache.getMaxBytes());
+		// blue was the least recently used graph
+		assertSame(red, cache.getRrdGraphInfo(createGraphDef(Color.RED)));
+		final long misses = cache.getMissCount();
+		cache.getRrdGraphInfo(createGraphDef(Color.BLUE));
+		assertEquals(misses + 1, cache.getMissCount());
+	}
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.graph;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jrobin.core.TemplateVariables;
+import org.junit.Test;
+
+public class RrdGraphDefTemplateTest {
+	private static final String TEMPLATE =
+			"<rrd_graph_def>\n" +
+			"  <span><start>${start}</start><end>${end}</end></span>\n" +
+			"  <options>\n" +
+			"    <title>Traffic of ${host}</title>\n" +
+			"    <width>${width}</width>\n" +
+			"    <colors>\n" +
+			"      <back>${back}</back>\n" +
+			"      <canvas>#FFFFFF</canvas>\n" +
+			"    </colors>\n" +
+			"    <time_grid>\n" +
+			"      <show_grid>true</show_grid>\n" +
+			"      <minor_grid_unit>hour</minor_grid_unit><minor_grid_unit_count>1</minor_grid_unit_count>\n" +
+			"      <major_grid_unit>day</major_grid_unit><major_grid_unit_count>1</major_grid_unit_count>\n" +
+			"      <label_unit>day</label_unit><label_unit_count>1</label_unit_count>\n" +
+			"      <label_span>0</label_span><label_format>dd</label_format>\n" +
+			"    </time_grid>\n" +
+			"  </options>\n" +
+			"  <datasources>\n" +
+			"    <!-- one file per host -->\n" +
+			"    <def><name>in</name><rrd>${host}.rrd</rrd><source>in</source><cf>AVERAGE</cf></def>\n" +
+			"    <cdef><name>bits</name><rpn>in,8,*</rpn></cdef>\n" +
+			"  </datasources>\n" +
+			"  <graph>\n" +
+			"    <area><datasource>bits</datasource><color>#00FF00</color><legend>in</legend></area>\n" +
+			"    <line><datasource>in</datasource><width>2</width></line>\n" +
+			"    <gprint><datasource>bits</datasource><cf>MAX</cf><format>max=%5.2lf</format></gprint>\n" +
+			"    <comment>${host}</comment>\n" +
+			"  </graph>\n" +
+			"</rrd_graph_def>";
+
+	private static String getKey(final RrdGraphDef gdef) {
+		final RrdGraphCache.Key key = new RrdGraphCache.Key();
+		gdef.addToKey(key);
+		return key.get();
+	}
+
+	private static RrdGraphDef createGraphDef(final CompiledRrdGraphDefTemplate template, final int index) throws Exception {
+		final TemplateVariables variables = template.createVariables();
+		variables.setVariable("start", 1000000000L + index);
+		variables.setVariable("end", 1000086400L + index);
+		variables.setVariable("host", "host" + index);
+		variables.setVariable("width", 400 + index);
+		variables.setVariable("back", new Color(index, 0, 0));
+		return template.getRrdGraphDef(variables);
+	}
+
+	@Test
+	public void testCompiledTemplate() throws Exception {
+		final RrdGraphDefTemplate template = new RrdGraphDefTemplate(TEMPLATE);
+		final CompiledRrdGraphDefTemplate compiled = template.compile();
+		assertEquals("[start, end, host, width, back]", Arrays.asList(compiled.getVariables()).toString());
+
+		template.setVariable("start", 1000000007L);
+		template.setVariable("end", 1000086407L);
+		template.setVariable("host", "host7");
+		template.setVariable("width", 407);
+		template.setVariable("back", new Color(7, 0, 0));
+		final RrdGraphDef gdef = template.getRrdGraphDef();
+		assertEquals("Traffic of host7", gdef.title);
+		assertEquals(407, gdef.width);
+		assertEquals(new Color(7, 0, 0), gdef.colors[RrdGraphConstants.COLOR_BACK]);
+		assertEquals(getKey(gdef), getKey(createGraphDef(compiled, 7)));
+	}
+
+	@Test
+	public void testMissingVariable() throws Exception {
+		final CompiledRrdGraphDefTemplate compiled = new RrdGraphDefTemplate(TEMPLATE).compile();
+		final TemplateVariables variables = compiled.createVariables();
+		variables.setVariable("start", 1000000000L);
+		variables.setVariable("end", 1000086400L);
+		try {
+			compiled.getRrdGraphDef(variables);
+			fail("Missing variable should be rejected");
+		}
+		catch (final IllegalArgumentException e) {
+			assertEquals("No mapping found for template variable ${host}", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testConcurrentDefinitions() throws Exception {
+		final CompiledRrdGraphDefTemplate compiled = new RrdGraphDefTemplate(TEMPLATE).compile();
+		final String[] expected = new String[50];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = getKey(createGraphDef(compiled, i));
+		}
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				public void run() {
+					try {
+						for (int n = 0; n < 200; n++) {
+							final int index = n % expected.length;
+							assertEquals(expected[index], getKey(createGraphDef(compiled, index)));
+						}
+					}
+					catch (final Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.graph;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import org.jrobin.data.Plottable;
+import org.junit.After;
+import org.junit.Test;
+
+public class RrdGraphTest {
+	private static final long START = 1000000000L;
+	private static final long END = START + 60000;
+
+	private final String m_imagePath = "target/graph.png";
+
+	@After
+	public void tearDown() {
+		new File(m_imagePath).delete();
+	}
+
+	// no RRD file needed, only image output is tested
+	private RrdGraphDef createGraphDef() {
+		final RrdGraphDef gdef = new RrdGraphDef();
+		gdef.setTimeSpan(START, END);
+		gdef.setImageFormat("png");
+		gdef.datasource("in", new Plottable() {
+			public double getValue(final long timestamp) {
+				return Math.sin(timestamp / 3000.0) * 100;
+			}
+		});
+		gdef.area("in", Color.GREEN, "in");
+		gdef.print("in", "MAX", "%10.2lf");
+		return gdef;
+	}
+
+	@Test
+	public void testStreamedImage() throws Exception {
+		final byte[] expected = new RrdGraph(createGraphDef()).getRrdGraphInfo().getBytes();
+
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		final RrdGraphInfo info = new RrdGraph(createGraphDef(), stream).getRrdGraphInfo();
+		assertNull(info.getBytes());
+		assertEquals(1, info.getPrintLines().length);
+		assertTrue(Arrays.equals(expected, stream.toByteArray()));
+
+		final ByteArrayOutputStream channel = new ByteArrayOutputStream();
+		new RrdGraph(createGraphDef(), Channels.newChannel(channel));
+		assertTrue(Arrays.equals(expected, channel.toByteArray()));
+
+		final ByteArrayOutputStream retained = new ByteArrayOutputStream();
+		final byte[] bytes = new RrdGraph(createGraphDef(), retained, true).getRrdGraphInfo().getBytes();
+		assertTrue(Arrays.equals(expected, bytes));
+		assertTrue(Arrays.equals(expected, retained.toByteArray()));
+	}
+
+	@Test
+	public void testImageFileOverwritten() throws Exception {
+		new File("target").mkdirs();
+		final RrdGraphDef big = createGraphDef();
+		big.setFilename(m_imagePath);
+		big.setWidth(800);
+		new RrdGraph(big);
+		final RrdGraphDef small = createGraphDef();
+		small.setFilename(m_imagePath);
+		final byte[] bytes = new RrdGraph(small).getRrdGraphInfo().getBytes();
+		assertEquals(bytes.length, new File(m_imagePath).length());
+	}
+
+	@Test
+	public void testPngCompressionLevel() throws Exception {
+		final RrdGraphDef fast = createGraphDef();
+		fast.setPngCompressionLevel(0);
+		final RrdGraphDef best = createGraphDef();
+		best.setPngCompressionLevel(9);
+		final int fastSize = new RrdGraph(fast).getRrdGraphInfo().getByteCount();
+		final int bestSize = new RrdGraph(best).getRrdGraphInfo().getByteCount();
+		// writers without explicit compression support ignore the level
+		assertTrue(fastSize >= bestSize);
+	}
+}
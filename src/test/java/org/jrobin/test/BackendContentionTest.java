@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2001-2005 Sasa Markovic and Ciaran Treanor.
+ * Copyright (c) 2011 The OpenNMS Group, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package org.jrobin.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jrobin.core.RrdBackendFactory;
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdDef;
+import org.jrobin.core.RrdMemoryBackendFactory;
+import org.jrobin.core.RrdNioByteBufferBackendFactory;
+import org.jrobin.core.Sample;
+import org.junit.Test;
+
+/**
+ * Concurrent updates on in-memory backends: every thread updates its own set of RRDs, which
+ * must not interfere with each other. Throughput is measured by SampleUpdateBenchmark, run with
+ * several threads.
+ */
+public class BackendContentionTest {
+	private static final int RRDS_PER_THREAD = 20;
+	private static final int UPDATES_PER_RRD = 2000;
+	private static final long START = 1000000000L;
+	private static final long STEP = 60;
+
+	@Test
+	public void testMemoryBackendThreads() throws Exception {
+		runThreads(RrdBackendFactory.getFactory(RrdMemoryBackendFactory.NAME), "memory:", getThreadCount());
+	}
+
+	@Test
+	public void testNioByteBufferBackendThreads() throws Exception {
+		runThreads(RrdBackendFactory.getFactory(RrdNioByteBufferBackendFactory.NAME), "target/contention-", getThreadCount());
+	}
+
+	private static int getThreadCount() {
+		return Math.max(Runtime.getRuntime().availableProcessors(), 4);
+	}
+
+	private void runThreads(final RrdBackendFactory factory, final String prefix, final int threadCount) throws Exception {
+		final List<RrdDb[]> dbs = new ArrayList<RrdDb[]>();
+		for (int t = 0; t < threadCount; t++) {
+			final RrdDb[] threadDbs = new RrdDb[RRDS_PER_THREAD];
+			for (int i = 0; i < RRDS_PER_THREAD; i++) {
+				final RrdDef def = new RrdDef(prefix + t + "-" + i + ".jrb", START, STEP);
+				def.addDatasource("in", "COUNTER", 2 * STEP, 0, Double.NaN);
+				def.addDatasource("out", "GAUGE", 2 * STEP, 0, Double.NaN);
+				def.addArchive("AVERAGE", 0.5, 1, 600);
+				def.addArchive("MAX", 0.5, 5, 600);
+				threadDbs[i] = new RrdDb(def, factory);
+			}
+			dbs.add(threadDbs);
+		}
+		final CountDownLatch startSignal = new CountDownLatch(1);
+		final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+		final Thread[] threads = new Thread[threadCount];
+		for (int t = 0; t < threadCount; t++) {
+			final RrdDb[] threadDbs = dbs.get(t);
+			threads[t] = new Thread() {
+				public void run() {
+					try {
+						startSignal.await();
+						for (int u = 1; u <= UPDATES_PER_RRD; u++) {
+							for (final RrdDb db : threadDbs) {
+								final Sample sample = db.createSample(START + u * STEP);
+								sample.setValue(0, u * 100D);
+								sample.setValue(1, u);
+								sample.update();
+							}
+						}
+					}
+					catch (final Exception e) {
+						failure.set(e);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		startSignal.countDown();
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+		for (final RrdDb[] threadDbs : dbs) {
+			for (final RrdDb db : threadDbs) {
+				assertEquals(START + UPDATES_PER_RRD * STEP, db.getLastUpdateTime());
+				assertEquals((double) UPDATES_PER_RRD, db.getLastDatasourceValue("out"), 0.0);
+				db.close();
+			}
+		}
+	}
+}